@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * run benchmarks with results in machine readable form.
+ * <p>
+ * accepts the JMH command line options (e.g. a benchmark regex or "-f 1"). unless defined otherwise ("-rf", "-rff")
+ * results are written as JSON to "jmh-result.json" in the working directory, compare these files to detect regressions.
+ */
+public class BenchMain {
+
+    /** default result file */
+    public static final String RESULT_FILE = "jmh-result.json";
+
+    private BenchMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            builder.result(RESULT_FILE);
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openkex.server.backend.BlockStoreApi;
+import org.openkex.server.backend.BlockStoreFileImpl;
+import org.openkex.server.backend.BlockStoreMemoryImpl;
+import org.openkex.tools.RandomTool;
+import org.openkex.tools.Validate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * block store write and read
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockStoreBenchmark {
+
+    // blocks written in setup, read by index
+    private static final int READ_BLOCKS = 1000;
+    // blocks written per iteration (store is recreated for each iteration)
+    private static final int WRITE_BLOCKS = 1000;
+
+    @Param({"memory", "file"})
+    protected String type;
+
+    @Param({"1024", "65536"})
+    protected int blockSize;
+
+    private File directory;
+    private BlockStoreApi store;
+    private byte[] data;
+    private long nextRound;
+    private long readRound;
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        data = new RandomTool(4711).getBytes(blockSize);
+        if (type.equals("file")) {
+            directory = Files.createTempDirectory("kex-bench").toFile();
+            store = new BlockStoreFileImpl(directory.getPath());
+        }
+        else {
+            store = new BlockStoreMemoryImpl();
+        }
+        for (nextRound = 0; nextRound < READ_BLOCKS; nextRound++) {
+            store.writeBlock(nextRound, data);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        store = null;
+        if (directory != null) {
+            deleteDirectory(directory);
+            directory = null;
+        }
+    }
+
+    /**
+     * time of {@value #WRITE_BLOCKS} writes, limits the size of the store
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = WRITE_BLOCKS)
+    @Measurement(iterations = 10, batchSize = WRITE_BLOCKS)
+    public boolean write() throws Exception {
+        return store.writeBlock(nextRound++, data);
+    }
+
+    @Benchmark
+    public byte[] read() throws Exception {
+        readRound = (readRound + 7) % READ_BLOCKS;
+        return store.readBlock(readRound);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        Validate.notNull(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteDirectory(file);
+            }
+            else {
+                Validate.isTrue(file.delete(), "failed to delete file: " + file.getPath());
+            }
+        }
+        Validate.isTrue(directory.delete(), "failed to delete directory: " + directory.getPath());
+    }
+}
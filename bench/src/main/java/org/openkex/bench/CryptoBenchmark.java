@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.keystore.api.KeyStore;
+import org.openkex.keystore.api.KeyStoreTool;
+import org.openkex.keystore.api.PublicKey;
+import org.openkex.keystore.api.VerifyRequest;
+import org.openkex.keystore.memory.JavaMemoryKeyStore;
+import org.openkex.tools.RandomTool;
+import org.openkex.tools.crypto.ECCTool;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ECDSA (secp256k1) sign and verify
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    private KeyPair pair;
+    private byte[] message;
+    private byte[] signature;
+    private byte[] rawSignature;
+    private byte[] point;
+    private List<VerifyRequest> batch;
+
+    @Setup
+    public void setup() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        pair = ECCTool.generate(ECCTool.CURVE_SECP256K1);
+        message = random.getBytes(200);
+        signature = ECCTool.sign(message, pair.getPrivate());
+        rawSignature = ECCTool.decodeDerSignature(signature);
+        point = ECCTool.encodeCurvePoint(pair.getPublic(), ECCTool.CURVE_SECP256K1, true);
+
+        KeyStore store = new JavaMemoryKeyStore();
+        batch = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            // some keys repeat (like server keys)
+            String keyId = "key" + (i % 8);
+            PublicKey key = store.getPublicKey(keyId);
+            if (key == null) {
+                key = store.generateKey(SignatureAlgorithm.ECDSA_SECP256K1, keyId);
+            }
+            byte[] batchMessage = random.getBytes(200);
+            batch.add(new VerifyRequest(key.getAlgorithm(), key.getPublicKey(), batchMessage, store.sign(keyId, batchMessage)));
+        }
+    }
+
+    @Benchmark
+    public byte[] sign() throws Exception {
+        return ECCTool.sign(message, pair.getPrivate());
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        return ECCTool.verify(message, signature, pair.getPublic());
+    }
+
+    @Benchmark
+    public boolean verifyRawSignature() throws Exception {
+        return ECCTool.verifyRawSignature(message, rawSignature, pair.getPublic());
+    }
+
+    @Benchmark
+    public java.security.PublicKey decodePoint() throws Exception {
+        return ECCTool.getPublicKeyFromCurvePoint(point, ECCTool.CURVE_SECP256K1);
+    }
+
+    @Benchmark
+    public byte[] encodeRawSignature() throws Exception {
+        return ECCTool.encodeRawSignature(rawSignature);
+    }
+
+    @Benchmark
+    public boolean keyStoreToolVerify() throws Exception {
+        return KeyStoreTool.verify(SignatureAlgorithm.ECDSA_SECP256K1, point, message, rawSignature);
+    }
+
+    /**
+     * verify of {@value #BATCH_SIZE} signatures in parallel
+     */
+    @Benchmark
+    public BitSet keyStoreToolVerifyAll() throws Exception {
+        return KeyStoreTool.verifyAll(batch);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openkex.tools.RandomTool;
+import org.openkex.tools.merkle.MerkleAccumulator;
+import org.openkex.tools.merkle.MerkleTree;
+import org.openkex.tools.merkle.MerkleTreeCompact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * merkle tree construction and proves (object and compact implementation)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MerkleBenchmark {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final int MULTI_PROVE_SIZE = 100;
+
+    /** number of leaves */
+    @Param({"1000", "100000"})
+    protected int size;
+
+    private List<byte[]> hashes;
+    private MerkleTree tree;
+    private MerkleTreeCompact compactTree;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        hashes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hashes.add(random.getBytes(32));
+        }
+        tree = new MerkleTree(hashes, ALGORITHM);
+        compactTree = new MerkleTreeCompact(hashes, ALGORITHM);
+    }
+
+    @Benchmark
+    public byte[] build() {
+        return new MerkleTree(hashes, ALGORITHM).getRootHash();
+    }
+
+    @Benchmark
+    public List<MerkleTree.Prove> prove() {
+        index = (index + 7919) % size;
+        return tree.getProveList(index);
+    }
+
+    @Benchmark
+    public byte[] buildCompact() {
+        return new MerkleTreeCompact(hashes, ALGORITHM, null).getRootHash();
+    }
+
+    @Benchmark
+    public byte[] buildCompactParallel() {
+        return new MerkleTreeCompact(hashes, ALGORITHM, ForkJoinPool.commonPool()).getRootHash();
+    }
+
+    /**
+     * one prove for {@value #MULTI_PROVE_SIZE} leaves
+     */
+    @Benchmark
+    public MerkleTreeCompact.MultiProve multiProve() {
+        index = (index + 7919) % size;
+        int[] indices = new int[MULTI_PROVE_SIZE];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = (index + i * 31) % size;
+        }
+        return compactTree.getMultiProve(indices);
+    }
+
+    @Benchmark
+    public byte[] accumulate() {
+        MerkleAccumulator accumulator = new MerkleAccumulator(ALGORITHM);
+        for (byte[] hash : hashes) {
+            accumulator.append(hash);
+        }
+        return accumulator.getRootHash();
+    }
+
+    @Benchmark
+    public List<MerkleTree.Prove> proveCompact() {
+        index = (index + 7919) % size;
+        return compactTree.getProveList(index);
+    }
+}
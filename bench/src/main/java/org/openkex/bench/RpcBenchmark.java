@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openkex.client.api.ClientApi;
+import org.openkex.client.proxy.ServerProxy;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.Statements;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.serializer.SerializeService;
+import org.openkex.server.api.ServerApi;
+import org.openkex.server.rpc.RpcClient;
+import org.openkex.server.rpc.RpcServerProxy;
+import org.openkex.server.undertow.UndertowRunner;
+import org.openkex.tools.RandomTool;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * remote calls of server api over loopback, hessian (http) and protobuf rpc (nio).
+ * <p>
+ * both transports are served by {@link UndertowRunner} (hessian servlet and rpc server) with a fixed api implementation.
+ * <p>
+ * latency of single caller (average time) and throughput of concurrent callers sharing one proxy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RpcBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int HTTP_PORT = 8180;
+    private static final int RPC_PORT = 8190;
+
+    @Param({"hessian", "rpc"})
+    protected String transport;
+
+    @Param({"10"})
+    protected int statementCount;
+
+    private UndertowRunner runner;
+    private RpcClient rpcClient;
+    private ServerApi proxy;
+
+    @Setup
+    public void setup() throws Exception {
+        StaticApi api = new StaticApi(statementCount);
+        runner = new UndertowRunner("bench", HTTP_PORT, api, api, RPC_PORT);
+        runner.run();
+        if (transport.equals("rpc")) {
+            SerializeService serializer = new ProtobufCodecSerializer();
+            rpcClient = new RpcClient(new InetSocketAddress("localhost", RPC_PORT), serializer);
+            proxy = new RpcServerProxy(rpcClient);
+        }
+        else {
+            proxy = new ServerProxy("http://localhost:" + HTTP_PORT + "/api/server");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (rpcClient != null) {
+            rpcClient.close();
+        }
+        runner.stop();
+    }
+
+    @Benchmark
+    public byte[] signature() throws Exception {
+        return proxy.getSignature(4711);
+    }
+
+    @Benchmark
+    public List<SignedStatements> statements() throws Exception {
+        return proxy.newStatements(4711);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(THREADS)
+    public byte[] signatureConcurrent() throws Exception {
+        return proxy.getSignature(4711);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(THREADS)
+    public List<SignedStatements> statementsConcurrent() throws Exception {
+        return proxy.newStatements(4711);
+    }
+
+    // fixed answers, measures transport only (server api is measured)
+    private static class StaticApi implements ServerApi, ClientApi {
+
+        private List<SignedStatements> statements = new ArrayList<>();
+        private byte[] signature;
+
+        StaticApi(int count) {
+            RandomTool random = new RandomTool(4711);
+            for (int i = 0; i < count; i++) {
+                StatementClaimKexId claim = new StatementClaimKexId(SignatureAlgorithm.ECDSA_SECP256K1, random.getBytes(33));
+                Statements content = new Statements(123456789L + i, 1500000000L, random.getBytes(32), 4711, claim, null, null);
+                statements.add(new SignedStatements(content, random.getBytes(64)));
+            }
+            signature = random.getBytes(64);
+        }
+
+        @Override
+        public List<SignedStatements> newStatements(long roundNr) throws Exception {
+            return statements;
+        }
+
+        @Override
+        public byte[] getHash(long roundNr) throws Exception {
+            return signature;
+        }
+
+        @Override
+        public byte[] getSignature(long roundNr) throws Exception {
+            return signature;
+        }
+
+        @Override
+        public List<SignedStatements> getConfirmedStatements(long roundNr) throws Exception {
+            return statements;
+        }
+
+        @Override
+        public byte[] getSessionChallenge(long kexId) throws Exception {
+            return signature;
+        }
+
+        @Override
+        public byte[] startKexSession(long kexId, byte[] signature) throws Exception {
+            return this.signature;
+        }
+
+        @Override
+        public long submitStatement(SignedStatements statement, byte[] authToken) throws Exception {
+            return 0;
+        }
+
+        @Override
+        public List<SignedStatements> getStatements(long kexId) throws Exception {
+            return statements;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.Statements;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.serializer.ProtobufSerializer;
+import org.openkex.serializer.SerializeService;
+import org.openkex.tools.RandomTool;
+
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * protobuf serialization of statements, jackson based and hand written codec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"jackson", "codec"})
+    protected String serializerType;
+
+    private SerializeService serializer;
+    private SignedStatements statements;
+    private byte[] serialized;
+    private MessageDigest digest;
+
+    @Setup
+    public void setup() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        serializer = serializerType.equals("codec") ? new ProtobufCodecSerializer() : new ProtobufSerializer();
+        StatementClaimKexId claim = new StatementClaimKexId(SignatureAlgorithm.ECDSA_SECP256K1, random.getBytes(33));
+        Statements content = new Statements(123456789L, 1500000000L, random.getBytes(32), 4711, claim, null, null);
+        statements = new SignedStatements(content, random.getBytes(64));
+        serialized = serializer.serialize(statements);
+        digest = MessageDigest.getInstance("SHA-256");
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return serializer.serialize(statements);
+    }
+
+    @Benchmark
+    public byte[] hashArray() throws Exception {
+        return digest.digest(serializer.serialize(statements));
+    }
+
+    @Benchmark
+    public byte[] hashStream() throws Exception {
+        serializer.serialize(statements, digest);
+        return digest.digest();
+    }
+
+    @Benchmark
+    public SignedStatements deserialize() throws Exception {
+        return serializer.deserialize(serialized, SignedStatements.class);
+    }
+}
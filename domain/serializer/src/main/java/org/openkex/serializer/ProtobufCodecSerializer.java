@@ -0,0 +1,648 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.serializer;
+
+import org.openkex.dto.ClientTokenInfo;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementAttributes;
+import org.openkex.dto.StatementCertificateOwner;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.StatementPublicAccountOwner;
+import org.openkex.dto.Statements;
+import org.openkex.tools.Validate;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * hand written protocol buffer codec for the DTOs of org.openkex.dto.
+ * <p>
+ * reads and writes the wire format directly without reflection or schema parsing, the output is identical to {@link ProtobufSerializer}
+ * (primitive fields are always written, null fields and empty byte arrays are skipped, fields in order of number).
+ * the message layouts follow the proto files, a change of a proto file requires a change of this class.
+ * <p>
+ * the jackson generator (2.9.1) writes uint64 values in range [2^35, 2^42) with a redundant trailing byte (varint not minimal),
+ * this codec writes the same bytes as the encoding is hashed and signed. the reader accepts both encodings.
+ * <p>
+ * unknown fields are skipped when reading, repeated fields overwrite the previous value.
+ */
+public class ProtobufCodecSerializer implements SerializeService {
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH = 2;
+    private static final int WIRE_FIXED32 = 5;
+
+    // range of uint64 values with redundant varint byte (see class comment)
+    private static final long PADDED_MIN = 1L << 35;
+    private static final long PADDED_MAX = 1L << 42;
+
+    // fits a signed statement, grows on demand
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private static final ThreadLocal<Output> OUTPUT = ThreadLocal.withInitial(() -> new Output(new byte[INITIAL_BUFFER_SIZE]));
+
+    private static final SignatureAlgorithm[] ALGORITHMS = SignatureAlgorithm.values();
+    private static final StatementCertificateOwner.CertificateType[] CERTIFICATE_TYPES = StatementCertificateOwner.CertificateType.values();
+    private static final StatementPublicAccountOwner.Type[] ACCOUNT_TYPES = StatementPublicAccountOwner.Type.values();
+    private static final StatementAttributes.Type[] ATTRIBUTE_TYPES = StatementAttributes.Type.values();
+
+    private static final MessageCodec<StatementClaimKexId> CLAIM_KEX_ID = new MessageCodec<StatementClaimKexId>() {
+        @Override
+        int size(StatementClaimKexId value) {
+            return sizeEnum(1, value.getAlgorithm()) + sizeBytes(2, value.getKey());
+        }
+
+        @Override
+        void write(StatementClaimKexId value, Output out) {
+            out.writeEnum(1, value.getAlgorithm());
+            out.writeBytes(2, value.getKey());
+        }
+
+        @Override
+        StatementClaimKexId read(Input in) throws Exception {
+            StatementClaimKexId value = new StatementClaimKexId();
+            while (in.hasMore()) {
+                int tag = in.readTag();
+                switch (tag >>> 3) {
+                    case 1:
+                        value.setAlgorithm(in.readEnum(tag, ALGORITHMS));
+                        break;
+                    case 2:
+                        value.setKey(in.readBytes(tag));
+                        break;
+                    default:
+                        in.skip(tag);
+                }
+            }
+            return value;
+        }
+    };
+
+    private static final MessageCodec<StatementCertificateOwner> CERTIFICATE_OWNER = new MessageCodec<StatementCertificateOwner>() {
+        @Override
+        int size(StatementCertificateOwner value) {
+            return sizeEnum(1, value.getType()) + sizeBytes(2, value.getCertificate()) + sizeBytes(3, value.getSignature());
+        }
+
+        @Override
+        void write(StatementCertificateOwner value, Output out) {
+            out.writeEnum(1, value.getType());
+            out.writeBytes(2, value.getCertificate());
+            out.writeBytes(3, value.getSignature());
+        }
+
+        @Override
+        StatementCertificateOwner read(Input in) throws Exception {
+            StatementCertificateOwner value = new StatementCertificateOwner();
+            while (in.hasMore()) {
+                int tag = in.readTag();
+                switch (tag >>> 3) {
+                    case 1:
+                        value.setType(in.readEnum(tag, CERTIFICATE_TYPES));
+                        break;
+                    case 2:
+                        value.setCertificate(in.readBytes(tag));
+                        break;
+                    case 3:
+                        value.setSignature(in.readBytes(tag));
+                        break;
+                    default:
+                        in.skip(tag);
+                }
+            }
+            return value;
+        }
+    };
+
+    private static final MessageCodec<StatementPublicAccountOwner> PUBLIC_ACCOUNT_OWNER = new MessageCodec<StatementPublicAccountOwner>() {
+        @Override
+        int size(StatementPublicAccountOwner value) {
+            return sizeEnum(1, value.getType()) + sizeString(2, value.getAccountId());
+        }
+
+        @Override
+        void write(StatementPublicAccountOwner value, Output out) {
+            out.writeEnum(1, value.getType());
+            out.writeString(2, value.getAccountId());
+        }
+
+        @Override
+        StatementPublicAccountOwner read(Input in) throws Exception {
+            StatementPublicAccountOwner value = new StatementPublicAccountOwner();
+            while (in.hasMore()) {
+                int tag = in.readTag();
+                switch (tag >>> 3) {
+                    case 1:
+                        value.setType(in.readEnum(tag, ACCOUNT_TYPES));
+                        break;
+                    case 2:
+                        value.setAccountId(in.readString(tag));
+                        break;
+                    default:
+                        in.skip(tag);
+                }
+            }
+            return value;
+        }
+    };
+
+    private static final MessageCodec<StatementAttributes> ATTRIBUTES = new MessageCodec<StatementAttributes>() {
+        @Override
+        int size(StatementAttributes value) {
+            return sizeEnum(1, value.getType()) + sizeString(2, value.getValue()) + sizeBytes(3, value.getMaskedValue());
+        }
+
+        @Override
+        void write(StatementAttributes value, Output out) {
+            out.writeEnum(1, value.getType());
+            out.writeString(2, value.getValue());
+            out.writeBytes(3, value.getMaskedValue());
+        }
+
+        @Override
+        StatementAttributes read(Input in) throws Exception {
+            StatementAttributes value = new StatementAttributes();
+            while (in.hasMore()) {
+                int tag = in.readTag();
+                switch (tag >>> 3) {
+                    case 1:
+                        value.setType(in.readEnum(tag, ATTRIBUTE_TYPES));
+                        break;
+                    case 2:
+                        value.setValue(in.readString(tag));
+                        break;
+                    case 3:
+                        value.setMaskedValue(in.readBytes(tag));
+                        break;
+                    default:
+                        in.skip(tag);
+                }
+            }
+            return value;
+        }
+    };
+
+    private static final MessageCodec<Statements> STATEMENTS = new MessageCodec<Statements>() {
+        @Override
+        int size(Statements value) {
+            return sizeUint64(1, value.getIssuerKexId()) +
+                    sizeUint64(2, value.getSignatureDate()) +
+                    sizeBytes(3, value.getPreviousHash()) +
+                    sizeUint64(4, value.getPreviousRound()) +
+                    sizeMessage(5, value.getClaimKexId(), CLAIM_KEX_ID) +
+                    sizeMessage(6, value.getCertificateOwner(), CERTIFICATE_OWNER) +
+                    sizeMessage(7, value.getPublicAccountOwner(), PUBLIC_ACCOUNT_OWNER);
+        }
+
+        @Override
+        void write(Statements value, Output out) {
+            out.writeUint64(1, value.getIssuerKexId());
+            out.writeUint64(2, value.getSignatureDate());
+            out.writeBytes(3, value.getPreviousHash());
+            out.writeUint64(4, value.getPreviousRound());
+            out.writeMessage(5, value.getClaimKexId(), CLAIM_KEX_ID);
+            out.writeMessage(6, value.getCertificateOwner(), CERTIFICATE_OWNER);
+            out.writeMessage(7, value.getPublicAccountOwner(), PUBLIC_ACCOUNT_OWNER);
+        }
+
+        @Override
+        Statements read(Input in) throws Exception {
+            Statements value = new Statements();
+            while (in.hasMore()) {
+                int tag = in.readTag();
+                switch (tag >>> 3) {
+                    case 1:
+                        value.setIssuerKexId(in.readUint64(tag));
+                        break;
+                    case 2:
+                        value.setSignatureDate(in.readUint64(tag));
+                        break;
+                    case 3:
+                        value.setPreviousHash(in.readBytes(tag));
+                        break;
+                    case 4:
+                        value.setPreviousRound(in.readUint64(tag));
+                        break;
+                    case 5:
+                        value.setClaimKexId(in.readMessage(tag, CLAIM_KEX_ID));
+                        break;
+                    case 6:
+                        value.setCertificateOwner(in.readMessage(tag, CERTIFICATE_OWNER));
+                        break;
+                    case 7:
+                        value.setPublicAccountOwner(in.readMessage(tag, PUBLIC_ACCOUNT_OWNER));
+                        break;
+                    default:
+                        in.skip(tag);
+                }
+            }
+            return value;
+        }
+    };
+
+    private static final MessageCodec<SignedStatements> SIGNED_STATEMENTS = new MessageCodec<SignedStatements>() {
+        @Override
+        int size(SignedStatements value) {
+            return sizeMessage(1, value.getStatements(), STATEMENTS) + sizeBytes(2, value.getSignatureBytes());
+        }
+
+        @Override
+        void write(SignedStatements value, Output out) {
+            out.writeMessage(1, value.getStatements(), STATEMENTS);
+            out.writeBytes(2, value.getSignatureBytes());
+        }
+
+        @Override
+        SignedStatements read(Input in) throws Exception {
+            SignedStatements value = new SignedStatements();
+            while (in.hasMore()) {
+                int tag = in.readTag();
+                switch (tag >>> 3) {
+                    case 1:
+                        value.setStatements(in.readMessage(tag, STATEMENTS));
+                        break;
+                    case 2:
+                        value.setSignatureBytes(in.readBytes(tag));
+                        break;
+                    default:
+                        in.skip(tag);
+                }
+            }
+            return value;
+        }
+    };
+
+    private static final MessageCodec<ClientTokenInfo> CLIENT_TOKEN_INFO = new MessageCodec<ClientTokenInfo>() {
+        @Override
+        int size(ClientTokenInfo value) {
+            return sizeUint64(1, value.getKexId()) + sizeUint64(2, value.getExpiryTime());
+        }
+
+        @Override
+        void write(ClientTokenInfo value, Output out) {
+            out.writeUint64(1, value.getKexId());
+            out.writeUint64(2, value.getExpiryTime());
+        }
+
+        @Override
+        ClientTokenInfo read(Input in) throws Exception {
+            // immutable, no setters
+            long kexId = 0;
+            long expiryTime = 0;
+            while (in.hasMore()) {
+                int tag = in.readTag();
+                switch (tag >>> 3) {
+                    case 1:
+                        kexId = in.readUint64(tag);
+                        break;
+                    case 2:
+                        expiryTime = in.readUint64(tag);
+                        break;
+                    default:
+                        in.skip(tag);
+                }
+            }
+            return new ClientTokenInfo(kexId, expiryTime);
+        }
+    };
+
+    private static final Map<Class, MessageCodec> CODECS;
+
+    static {
+        Map<Class, MessageCodec> codecs = new HashMap<>();
+        codecs.put(ClientTokenInfo.class, CLIENT_TOKEN_INFO);
+        codecs.put(SignedStatements.class, SIGNED_STATEMENTS);
+        codecs.put(StatementAttributes.class, ATTRIBUTES);
+        codecs.put(StatementCertificateOwner.class, CERTIFICATE_OWNER);
+        codecs.put(StatementClaimKexId.class, CLAIM_KEX_ID);
+        codecs.put(StatementPublicAccountOwner.class, PUBLIC_ACCOUNT_OWNER);
+        codecs.put(Statements.class, STATEMENTS);
+        CODECS = Collections.unmodifiableMap(codecs);
+    }
+
+    @Override
+    public byte[] serialize(Object obj) throws Exception {
+        MessageCodec<Object> codec = getCodec(obj.getClass());
+        byte[] bytes = new byte[codec.size(obj)];
+        Output out = new Output(bytes);
+        codec.write(obj, out);
+        Validate.isTrue(out.pos == bytes.length, "size mismatch");
+        return bytes;
+    }
+
+    @Override
+    public void serialize(Object obj, OutputStream out) throws Exception {
+        Output output = serializeToBuffer(obj);
+        out.write(output.buffer, 0, output.pos);
+    }
+
+    @Override
+    public void serialize(Object obj, MessageDigest digest) throws Exception {
+        Output output = serializeToBuffer(obj);
+        digest.update(output.buffer, 0, output.pos);
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuffer buffer) throws Exception {
+        MessageCodec<Object> codec = getCodec(obj.getClass());
+        int size = codec.size(obj);
+        if (buffer.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        if (buffer.hasArray()) {
+            // write in place
+            Output out = new Output(buffer.array());
+            out.pos = buffer.arrayOffset() + buffer.position();
+            codec.write(obj, out);
+            buffer.position(buffer.position() + size);
+        }
+        else {
+            Output output = serializeToBuffer(obj);
+            buffer.put(output.buffer, 0, output.pos);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> type) throws Exception {
+        MessageCodec<Object> codec = getCodec(type);
+        return type.cast(codec.read(new Input(bytes)));
+    }
+
+    @Override
+    public void warmUp() {
+        // nothing to load
+    }
+
+    private Output serializeToBuffer(Object obj) throws Exception {
+        MessageCodec<Object> codec = getCodec(obj.getClass());
+        int size = codec.size(obj);
+        Output out = OUTPUT.get();
+        if (out.buffer.length < size) {
+            out.buffer = new byte[Math.max(size, out.buffer.length * 2)];
+        }
+        out.pos = 0;
+        codec.write(obj, out);
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MessageCodec<Object> getCodec(Class type) throws Exception {
+        MessageCodec<Object> codec = CODECS.get(type);
+        if (codec == null) {
+            throw new Exception("unsupported type: " + type.getName());
+        }
+        return codec;
+    }
+
+    private static int sizeVarint(long value) {
+        // 7 bits per byte, at least one byte
+        return value == 0 ? 1 : (70 - Long.numberOfLeadingZeros(value)) / 7;
+    }
+
+    private static int sizeTag(int field) {
+        return sizeVarint(field << 3);
+    }
+
+    private static int sizeUint64(int field, long value) {
+        return sizeTag(field) + sizeVarint(value) + (isPadded(value) ? 1 : 0);
+    }
+
+    private static boolean isPadded(long value) {
+        return value >= PADDED_MIN && value < PADDED_MAX;
+    }
+
+    private static int sizeEnum(int field, Enum value) {
+        return value == null ? 0 : sizeTag(field) + sizeVarint(value.ordinal());
+    }
+
+    private static int sizeBytes(int field, byte[] value) {
+        return value == null || value.length == 0 ? 0 : sizeLengthDelimited(field, value.length);
+    }
+
+    // strings are rare, encoded again on write
+    private static int sizeString(int field, String value) {
+        return value == null ? 0 : sizeLengthDelimited(field, value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static int sizeLengthDelimited(int field, int length) {
+        return sizeTag(field) + sizeVarint(length) + length;
+    }
+
+    private static <T> int sizeMessage(int field, T value, MessageCodec<T> codec) {
+        if (value == null) {
+            return 0;
+        }
+        int size = codec.size(value);
+        return sizeTag(field) + sizeVarint(size) + size;
+    }
+
+    // size, write and read of a message type, enum values are written as ordinal (matches the proto files)
+    private abstract static class MessageCodec<T> {
+
+        abstract int size(T value);
+
+        abstract void write(T value, Output out);
+
+        abstract T read(Input in) throws Exception;
+    }
+
+    // writes to array, the caller ensures the size
+    private static final class Output {
+
+        private byte[] buffer;
+        private int pos;
+
+        private Output(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[pos++] = (byte) value;
+        }
+
+        private void writeTag(int field, int wireType) {
+            writeVarint(field << 3 | wireType);
+        }
+
+        private void writeUint64(int field, long value) {
+            writeTag(field, WIRE_VARINT);
+            writeVarint(value);
+            if (isPadded(value)) {
+                buffer[pos - 1] |= 0x80;
+                buffer[pos++] = 0;
+            }
+        }
+
+        private void writeEnum(int field, Enum value) {
+            if (value != null) {
+                writeTag(field, WIRE_VARINT);
+                writeVarint(value.ordinal());
+            }
+        }
+
+        // empty arrays are skipped like null (but empty strings are written)
+        private void writeBytes(int field, byte[] value) {
+            if (value != null && value.length != 0) {
+                writeLengthDelimited(field, value);
+            }
+        }
+
+        private void writeString(int field, String value) {
+            if (value != null) {
+                writeLengthDelimited(field, value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void writeLengthDelimited(int field, byte[] value) {
+            writeTag(field, WIRE_LENGTH);
+            writeVarint(value.length);
+            System.arraycopy(value, 0, buffer, pos, value.length);
+            pos += value.length;
+        }
+
+        private <T> void writeMessage(int field, T value, MessageCodec<T> codec) {
+            if (value != null) {
+                writeTag(field, WIRE_LENGTH);
+                writeVarint(codec.size(value));
+                codec.write(value, this);
+            }
+        }
+    }
+
+    // reads from array, nested messages limit the readable range
+    private static final class Input {
+
+        private byte[] buffer;
+        private int pos;
+        private int limit;
+
+        private Input(byte[] buffer) {
+            this.buffer = buffer;
+            this.limit = buffer.length;
+        }
+
+        private boolean hasMore() {
+            return pos < limit;
+        }
+
+        private long readVarint() throws Exception {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= limit) {
+                    throw new Exception("truncated varint at position " + pos);
+                }
+                byte b = buffer[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new Exception("malformed varint at position " + pos);
+        }
+
+        private int readTag() throws Exception {
+            long tag = readVarint();
+            if (tag >>> 3 == 0 || tag > Integer.MAX_VALUE) {
+                throw new Exception("invalid tag: " + tag);
+            }
+            return (int) tag;
+        }
+
+        private int readLength() throws Exception {
+            long length = readVarint();
+            if (length < 0 || length > limit - pos) {
+                throw new Exception("invalid length " + length + " at position " + pos);
+            }
+            return (int) length;
+        }
+
+        private void checkWireType(int tag, int wireType) throws Exception {
+            if ((tag & 7) != wireType) {
+                throw new Exception("wrong wire type " + (tag & 7) + " of field " + (tag >>> 3));
+            }
+        }
+
+        private long readUint64(int tag) throws Exception {
+            checkWireType(tag, WIRE_VARINT);
+            return readVarint();
+        }
+
+        private <E extends Enum<E>> E readEnum(int tag, E[] values) throws Exception {
+            checkWireType(tag, WIRE_VARINT);
+            long value = readVarint();
+            if (value < 0 || value >= values.length) {
+                throw new Exception("invalid value " + value + " of field " + (tag >>> 3));
+            }
+            return values[(int) value];
+        }
+
+        private byte[] readBytes(int tag) throws Exception {
+            checkWireType(tag, WIRE_LENGTH);
+            int length = readLength();
+            byte[] value = Arrays.copyOfRange(buffer, pos, pos + length);
+            pos += length;
+            return value;
+        }
+
+        private String readString(int tag) throws Exception {
+            checkWireType(tag, WIRE_LENGTH);
+            int length = readLength();
+            String value = new String(buffer, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        private <T> T readMessage(int tag, MessageCodec<T> codec) throws Exception {
+            checkWireType(tag, WIRE_LENGTH);
+            int length = readLength();
+            int outerLimit = limit;
+            limit = pos + length;
+            T value = codec.read(this);
+            limit = outerLimit;
+            return value;
+        }
+
+        private void skip(int tag) throws Exception {
+            switch (tag & 7) {
+                case WIRE_VARINT:
+                    readVarint();
+                    break;
+                case WIRE_FIXED64:
+                    skipBytes(8);
+                    break;
+                case WIRE_LENGTH:
+                    int length = readLength();
+                    pos += length;
+                    break;
+                case WIRE_FIXED32:
+                    skipBytes(4);
+                    break;
+                default:
+                    throw new Exception("unsupported wire type " + (tag & 7) + " of field " + (tag >>> 3));
+            }
+        }
+
+        private void skipBytes(int count) throws Exception {
+            if (count > limit - pos) {
+                throw new Exception("truncated field at position " + pos);
+            }
+            pos += count;
+        }
+    }
+}
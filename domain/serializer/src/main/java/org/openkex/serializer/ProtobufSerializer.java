@@ -6,37 +6,69 @@
  */
 package org.openkex.serializer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
 import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
 import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import org.openkex.dto.ClientTokenInfo;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementAttributes;
+import org.openkex.dto.StatementCertificateOwner;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.StatementPublicAccountOwner;
+import org.openkex.dto.Statements;
 import org.openkex.tools.Validate;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * this serializer uses jackson to serialize objects according to protocol buffer schema files.
  * <p>
  * schema is loaded at runtime, it avoids native dependency to "protoc" and  compiling against generated classes.
  * the performance compared to generated protoc variant is fair (2-3x slower)
+ * <p>
+ * writer and reader are created once per class (immutable, thread safe), {@link #warmUp()} creates them for all DTOs.
  */
 public class ProtobufSerializer implements SerializeService {
 
+    /** message classes of package org.openkex.dto (completeness is checked by test) */
+    public static final List<Class> DTO_CLASSES = Collections.unmodifiableList(Arrays.asList(
+            ClientTokenInfo.class,
+            SignedStatements.class,
+            StatementAttributes.class,
+            StatementCertificateOwner.class,
+            StatementClaimKexId.class,
+            StatementPublicAccountOwner.class,
+            Statements.class
+    ));
+
     private static final String PROTO_FILE_ENCODING = "utf-8";
+    // fits a signed statement, grows on demand
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private static final ThreadLocal<SerializeBuffer> BUFFER = ThreadLocal.withInitial(() -> new SerializeBuffer(INITIAL_BUFFER_SIZE));
 
     private ProtobufMapper mapper;
-    private HashMap<Class, ProtobufSchema> schemaMap;
+    // used concurrently (e.g. parallel validation)
+    private ConcurrentHashMap<Class, Codec> codecMap;
 
     public ProtobufSerializer() {
-        schemaMap = new HashMap<>();
+        codecMap = new ConcurrentHashMap<>();
         mapper = new ProtobufMapper();
+        // caller owns the stream
+        mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
         // requires artifact: com.fasterxml.jackson.module:jackson-module-afterburner
         // approx 20% speed up (not significant, not critical)
@@ -113,26 +145,68 @@ public class ProtobufSerializer implements SerializeService {
         return new String(baos.toByteArray(), PROTO_FILE_ENCODING);
     }
 
-    private ProtobufSchema getSchema(Class clazz) throws Exception {
-        ProtobufSchema schema = schemaMap.get(clazz);
-        if (schema == null) {
-            schema = loadSchema(clazz);
-            schemaMap.put(clazz, schema);
+    private Codec getCodec(Class clazz) throws Exception {
+        Codec codec = codecMap.get(clazz);
+        if (codec == null) {
+            // concurrent load is possible, first one wins
+            ProtobufSchema schema = loadSchema(clazz);
+            // writerFor/readerFor resolve the root (de)serializer once
+            codec = new Codec(mapper.writerFor(clazz).with(schema), mapper.readerFor(clazz).with(schema));
+            Codec existing = codecMap.putIfAbsent(clazz, codec);
+            if (existing != null) {
+                codec = existing;
+            }
+        }
+        return codec;
+    }
+
+    @Override
+    public void warmUp() throws Exception {
+        for (Class clazz : DTO_CLASSES) {
+            getCodec(clazz);
         }
-        return schema;
     }
 
     @Override
     public byte[] serialize(Object obj) throws Exception {
-        ProtobufSchema schema = getSchema(obj.getClass());
-        ObjectWriter writer = mapper.writer(schema);
-        return writer.writeValueAsBytes(obj);
+        return getCodec(obj.getClass()).writer.writeValueAsBytes(obj);
+    }
+
+    @Override
+    public void serialize(Object obj, OutputStream out) throws Exception {
+        getCodec(obj.getClass()).writer.writeValue(out, obj);
+    }
+
+    @Override
+    public void serialize(Object obj, MessageDigest digest) throws Exception {
+        serializeToBuffer(obj).writeTo(digest);
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuffer buffer) throws Exception {
+        serializeToBuffer(obj).writeTo(buffer);
+    }
+
+    private SerializeBuffer serializeToBuffer(Object obj) throws Exception {
+        SerializeBuffer buffer = BUFFER.get();
+        buffer.reset();
+        serialize(obj, buffer);
+        return buffer;
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> type) throws Exception {
-        ProtobufSchema schema = getSchema(type);
-        ObjectReader r = mapper.readerFor(type).with(schema);
-        return r.readValue(bytes);
+        return getCodec(type).reader.readValue(bytes);
+    }
+
+    private static final class Codec {
+
+        private final ObjectWriter writer;
+        private final ObjectReader reader;
+
+        private Codec(ObjectWriter writer, ObjectReader reader) {
+            this.writer = writer;
+            this.reader = reader;
+        }
     }
 }
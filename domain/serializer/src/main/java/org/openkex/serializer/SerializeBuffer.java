@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.serializer;
+
+import org.openkex.tools.Validate;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * growing byte buffer, meant to be reused (e.g. per thread) to avoid an array per serialized object.
+ * <p>
+ * in contrast to {@link java.io.ByteArrayOutputStream} the content is accessible without copy and methods are not synchronized.
+ */
+public class SerializeBuffer extends OutputStream {
+
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * create buffer
+     *
+     * @param initialSize initial capacity in bytes
+     */
+    public SerializeBuffer(int initialSize) {
+        Validate.isTrue(initialSize > 0, "invalid initial size: " + initialSize);
+        buffer = new byte[initialSize];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(size + 1);
+        buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(size + len);
+        System.arraycopy(b, off, buffer, size, len);
+        size += len;
+    }
+
+    /**
+     * discard content, keeps capacity
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return backing array (no copy), content is in range [0, size)
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return copy of content
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * @param digest digest to update with content
+     */
+    public void writeTo(MessageDigest digest) {
+        digest.update(buffer, 0, size);
+    }
+
+    /**
+     * @param target buffer to put content to
+     */
+    public void writeTo(ByteBuffer target) {
+        target.put(buffer, 0, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            Validate.isTrue(capacity > 0, "buffer size overflow");
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+}
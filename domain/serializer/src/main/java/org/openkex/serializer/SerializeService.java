@@ -6,6 +6,10 @@
  */
 package org.openkex.serializer;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
 /**
  * interface for serializer.
  * <p>
@@ -22,6 +26,33 @@ public interface SerializeService {
      */
     byte[] serialize(Object obj) throws Exception;
 
+    /**
+     * write object to stream, the stream is not closed
+     *
+     * @param obj input object
+     * @param out output stream (e.g. a reused {@link SerializeBuffer})
+     * @throws Exception in case of serializer problem
+     */
+    void serialize(Object obj, OutputStream out) throws Exception;
+
+    /**
+     * update digest with serialized object, uses a buffer per thread instead of a byte array per object
+     *
+     * @param obj input object
+     * @param digest digest to update
+     * @throws Exception in case of serializer problem
+     */
+    void serialize(Object obj, MessageDigest digest) throws Exception;
+
+    /**
+     * put serialized object to buffer, uses a buffer per thread instead of a byte array per object
+     *
+     * @param obj input object
+     * @param buffer target buffer, position is advanced
+     * @throws Exception in case of serializer problem (e.g. buffer overflow)
+     */
+    void serialize(Object obj, ByteBuffer buffer) throws Exception;
+
     /**
      * convert byte array to object of type T
      *
@@ -32,4 +63,11 @@ public interface SerializeService {
      * @throws Exception in case of serializer problem
      */
     <T> T deserialize(byte[] bytes, Class<T> type) throws Exception;
+
+    /**
+     * prepare serializer for all known types, avoids setup cost on first use
+     *
+     * @throws Exception in case of serializer problem
+     */
+    void warmUp() throws Exception;
 }
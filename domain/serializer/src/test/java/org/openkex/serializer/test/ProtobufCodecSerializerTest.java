@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.serializer.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.dto.ClientTokenInfo;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementAttributes;
+import org.openkex.dto.StatementCertificateOwner;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.StatementPublicAccountOwner;
+import org.openkex.dto.Statements;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.serializer.ProtobufSerializer;
+import org.openkex.serializer.SerializeBuffer;
+import org.openkex.serializer.SerializeService;
+import org.openkex.tools.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class ProtobufCodecSerializerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProtobufCodecSerializerTest.class);
+
+    private SerializeService jackson = new ProtobufSerializer();
+    private SerializeService codec = new ProtobufCodecSerializer();
+
+    @Test
+    public void testCrossRandom() throws Exception {
+        Random random = new Random(4711);
+        for (int i = 0; i < 2000; i++) {
+            for (Object obj : createObjects(random)) {
+                checkCross(obj);
+            }
+        }
+    }
+
+    @Test
+    public void testCrossEdgeCases() throws Exception {
+        // empty arrays and strings, large and "negative" uint64
+        checkCross(new StatementClaimKexId(null, new byte[0]));
+        checkCross(new StatementClaimKexId(null, null));
+        checkCross(new StatementAttributes(StatementAttributes.Type.NICK_NAME, "", new byte[0]));
+        checkCross(new StatementPublicAccountOwner(StatementPublicAccountOwner.Type.TWITTER, "ü€😀"));
+        checkCross(new ClientTokenInfo(-1, Long.MAX_VALUE));
+        checkCross(new ClientTokenInfo(0, Long.MIN_VALUE));
+        // boundaries of range with redundant varint byte
+        checkCross(new ClientTokenInfo((1L << 35) - 1, 1L << 35));
+        checkCross(new ClientTokenInfo((1L << 42) - 1, 1L << 42));
+        Assert.assertArrayEquals(Hex.fromString("08" + "80808080808100" + "1000"), codec.serialize(new ClientTokenInfo(1L << 35, 0)));
+        checkCross(new Statements(0, 0, null, 0, null, null, null));
+        checkCross(new Statements(-1, 127, new byte[300], 128, new StatementClaimKexId(), new StatementCertificateOwner(),
+                new StatementPublicAccountOwner()));
+        checkCross(new SignedStatements(null, null));
+        checkCross(new SignedStatements(new Statements(), new byte[0]));
+    }
+
+    @Test
+    public void testDocumentedBytes() throws Exception {
+        // see SerializerTest.testClientTokenInfo
+        byte[] test = Hex.fromString("08" + "C1E6B0F9EDA23D" + "10" + "FFC0CACD05");
+        ClientTokenInfo info = codec.deserialize(test, ClientTokenInfo.class);
+        Assert.assertEquals(jackson.deserialize(test, ClientTokenInfo.class), info);
+        Assert.assertArrayEquals(test, codec.serialize(info));
+    }
+
+    @Test
+    public void testUnknownFields() throws Exception {
+        byte[] known = codec.serialize(new StatementClaimKexId(SignatureAlgorithm.DUMMY, new byte[] {1, 2}));
+        // field 9 varint, field 10 fixed64, field 11 length, field 12 fixed32
+        byte[] unknown = Hex.fromString("4801" + "51" + "0102030405060708" + "5A" + "03" + "010203" + "65" + "01020304");
+        byte[] combined = Arrays.copyOf(unknown, unknown.length + known.length);
+        System.arraycopy(known, 0, combined, unknown.length, known.length);
+        Assert.assertEquals(codec.deserialize(known, StatementClaimKexId.class), codec.deserialize(combined, StatementClaimKexId.class));
+    }
+
+    @Test
+    public void testInvalid() throws Exception {
+        byte[] valid = codec.serialize(createSigned(new Random(1)));
+        checkFail(Arrays.copyOf(valid, valid.length - 1), SignedStatements.class);
+        checkFail(Arrays.copyOf(valid, 1), SignedStatements.class);
+        // wrong wire type of field 1
+        checkFail(Hex.fromString("0D01020304"), StatementClaimKexId.class);
+        // invalid enum value
+        checkFail(Hex.fromString("0804"), StatementClaimKexId.class);
+        // field number 0
+        checkFail(Hex.fromString("0001"), StatementClaimKexId.class);
+        // nested length exceeds outer message
+        checkFail(Hex.fromString("0A03" + "2A05" + "0801"), SignedStatements.class);
+        // varint longer than 10 bytes
+        checkFail(Hex.fromString("08FFFFFFFFFFFFFFFFFFFF01"), ClientTokenInfo.class);
+        try {
+            codec.serialize("text");
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+    }
+
+    @Test
+    public void testSinks() throws Exception {
+        SignedStatements signed = createSigned(new Random(2));
+        byte[] expected = jackson.serialize(signed);
+
+        SerializeBuffer buffer = new SerializeBuffer(1);
+        codec.serialize(signed, buffer);
+        Assert.assertArrayEquals(expected, buffer.toByteArray());
+
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        codec.serialize(signed, md);
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(expected), md.digest());
+
+        // heap buffer with offset (written in place) and direct buffer
+        ByteBuffer heap = ByteBuffer.wrap(new byte[expected.length + 10], 3, expected.length + 7).slice();
+        heap.put((byte) 1);
+        codec.serialize(signed, heap);
+        Assert.assertEquals(expected.length + 1, heap.position());
+        Assert.assertArrayEquals(expected, Arrays.copyOfRange(heap.array(), 4, 4 + expected.length));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+        codec.serialize(signed, direct);
+        Assert.assertFalse(direct.hasRemaining());
+        direct.flip();
+        byte[] directBytes = new byte[expected.length];
+        direct.get(directBytes);
+        Assert.assertArrayEquals(expected, directBytes);
+    }
+
+    @Test
+    public void testSpeed() throws Exception {
+        SignedStatements signed = createSigned(new Random(3));
+        int repeats = 200000;
+        for (SerializeService serializer : Arrays.asList(jackson, codec)) {
+            byte[] bytes = serializer.serialize(signed);
+            long start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                bytes = serializer.serialize(signed);
+            }
+            long serialize = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                serializer.deserialize(bytes, SignedStatements.class);
+            }
+            long deserialize = System.nanoTime() - start;
+            LOG.info(serializer.getClass().getSimpleName() + " serialize " + (serialize / repeats) + "ns, deserialize " +
+                    (deserialize / repeats) + "ns");
+        }
+    }
+
+    private void checkCross(Object obj) throws Exception {
+        byte[] expected = jackson.serialize(obj);
+        byte[] encoded = codec.serialize(obj);
+        if (!Arrays.equals(expected, encoded)) {
+            Assert.fail("encoding differs for " + obj + " jackson=" + Hex.toString(expected) + " codec=" + Hex.toString(encoded));
+        }
+        // empty arrays are not written, decoded object may differ (null instead of empty)
+        Object decoded = codec.deserialize(encoded, obj.getClass());
+        Assert.assertEquals(jackson.deserialize(encoded, obj.getClass()), decoded);
+        Assert.assertArrayEquals(encoded, codec.serialize(decoded));
+    }
+
+    private void checkFail(byte[] bytes, Class type) {
+        try {
+            codec.deserialize(bytes, type);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+    }
+
+    private List<Object> createObjects(Random random) {
+        List<Object> objects = new ArrayList<>();
+        objects.add(createSigned(random));
+        objects.add(new ClientTokenInfo(random.nextLong(), random.nextInt() & 0xFFFFFFFFL));
+        objects.add(new StatementAttributes(
+                random.nextBoolean() ? null : StatementAttributes.Type.values()[random.nextInt(3)],
+                random.nextBoolean() ? null : "value" + random.nextInt(),
+                randomBytes(random, 20)));
+        return objects;
+    }
+
+    private SignedStatements createSigned(Random random) {
+        StatementClaimKexId claim = random.nextBoolean() ? null : new StatementClaimKexId(
+                SignatureAlgorithm.values()[random.nextInt(4)], randomBytes(random, 65));
+        StatementCertificateOwner certificate = random.nextInt(4) != 0 ? null : new StatementCertificateOwner(
+                StatementCertificateOwner.CertificateType.values()[random.nextInt(2)], randomBytes(random, 200), randomBytes(random, 64));
+        StatementPublicAccountOwner account = random.nextInt(4) != 0 ? null : new StatementPublicAccountOwner(
+                StatementPublicAccountOwner.Type.values()[random.nextInt(3)], "account" + random.nextInt(1000));
+        // shift varies the varint length
+        Statements statements = new Statements(random.nextLong() >>> random.nextInt(64), random.nextLong() >>> random.nextInt(64),
+                randomBytes(random, 32), random.nextInt(1000), claim, certificate, account);
+        return new SignedStatements(random.nextInt(8) == 0 ? null : statements, randomBytes(random, 64));
+    }
+
+    // null, empty or random bytes of up to max length
+    private byte[] randomBytes(Random random, int max) {
+        if (random.nextInt(4) == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[random.nextInt(max + 1)];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
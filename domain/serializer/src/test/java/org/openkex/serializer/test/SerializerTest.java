@@ -17,6 +17,7 @@ import org.openkex.dto.StatementClaimKexId;
 import org.openkex.dto.StatementPublicAccountOwner;
 import org.openkex.dto.Statements;
 import org.openkex.serializer.ProtobufSerializer;
+import org.openkex.serializer.SerializeBuffer;
 import org.openkex.serializer.SerializeService;
 import org.openkex.tools.Hex;
 import org.openkex.tools.NumberByteConverter;
@@ -25,6 +26,19 @@ import org.openkex.tools.RandomTool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.IntStream;
+
 public class SerializerTest {
 
     private static final Logger LOG = LoggerFactory.getLogger(SerializerTest.class);
@@ -87,6 +101,117 @@ public class SerializerTest {
         testEncodeDecode(signedStatements, serializer, true);
     }
 
+    @Test
+    public void testDtoClasses() throws Exception {
+        // all message classes of dto package are listed (enums are serialized as field)
+        List<Class> expected = new ArrayList<>();
+        for (String name : listDtoClassNames()) {
+            Class clazz = Class.forName(ClientTokenInfo.class.getPackage().getName() + "." + name);
+            if (!clazz.isEnum()) {
+                expected.add(clazz);
+            }
+        }
+        Assert.assertTrue(expected.contains(Statements.class));
+        Assert.assertEquals(new HashSet<>(expected), new HashSet<>(ProtobufSerializer.DTO_CLASSES));
+        for (Class clazz : ProtobufSerializer.DTO_CLASSES) {
+            Assert.assertNotNull("missing schema of " + clazz, clazz.getResource("/proto/" + clazz.getSimpleName() + ".proto"));
+        }
+    }
+
+    // top level classes of dto package, from class directory or jar
+    private List<String> listDtoClassNames() throws Exception {
+        String path = ClientTokenInfo.class.getPackage().getName().replace('.', '/') + "/";
+        File location = new File(ClientTokenInfo.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> files = new ArrayList<>();
+        if (location.isDirectory()) {
+            files.addAll(Arrays.asList(new File(location, path).list()));
+        }
+        else {
+            try (JarFile jar = new JarFile(location)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(path) && name.indexOf('/', path.length()) < 0) {
+                        files.add(name.substring(path.length()));
+                    }
+                }
+            }
+        }
+        List<String> names = new ArrayList<>();
+        for (String file : files) {
+            if (file.endsWith(".class") && !file.contains("$")) {
+                names.add(file.substring(0, file.length() - ".class".length()));
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void testWarmUpConcurrent() throws Exception {
+        SerializeService serializer = new ProtobufSerializer();
+        long start = System.nanoTime();
+        serializer.warmUp();
+        LOG.info("warm up took " + ((System.nanoTime() - start) / 1000000) + "ms");
+
+        RandomTool random = new RandomTool();
+        StatementClaimKexId statement = new StatementClaimKexId(SignatureAlgorithm.ED25519, random.getBytes(32));
+        Statements statements = new Statements(1234567, System.currentTimeMillis() / 1000, random.getBytes(32), 1, statement, null, null);
+        SignedStatements signedStatements = new SignedStatements(statements, random.getBytes(64));
+        byte[] expected = serializer.serialize(signedStatements);
+
+        // shared serializer used by parallel threads
+        IntStream.range(0, 10000).parallel().forEach(i -> {
+            try {
+                byte[] encoded = serializer.serialize(signedStatements);
+                Assert.assertArrayEquals(expected, encoded);
+                Assert.assertEquals(signedStatements, serializer.deserialize(encoded, SignedStatements.class));
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testSinks() throws Exception {
+        SerializeService serializer = new ProtobufSerializer();
+        RandomTool random = new RandomTool();
+        StatementClaimKexId statement = new StatementClaimKexId(SignatureAlgorithm.ED25519, random.getBytes(32));
+        Statements statements = new Statements(1234567, System.currentTimeMillis() / 1000, random.getBytes(32), 1, statement, null, null);
+        SignedStatements signedStatements = new SignedStatements(statements, random.getBytes(64));
+        byte[] expected = serializer.serialize(signedStatements);
+
+        // small initial size forces growing, content is appended
+        SerializeBuffer buffer = new SerializeBuffer(1);
+        buffer.write(7);
+        serializer.serialize(signedStatements, buffer);
+        Assert.assertEquals(expected.length + 1, buffer.size());
+        Assert.assertArrayEquals(expected, Arrays.copyOfRange(buffer.getBuffer(), 1, buffer.size()));
+        buffer.reset();
+        serializer.serialize(signedStatements, buffer);
+        Assert.assertArrayEquals(expected, buffer.toByteArray());
+
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] expectedHash = md.digest(expected);
+        serializer.serialize(signedStatements, md);
+        Assert.assertArrayEquals(expectedHash, md.digest());
+
+        int statementLength = serializer.serialize(statement).length;
+        ByteBuffer byteBuffer = ByteBuffer.allocate(expected.length + statementLength + 10);
+        serializer.serialize(signedStatements, byteBuffer);
+        serializer.serialize(statement, byteBuffer);
+        Assert.assertEquals(expected.length + statementLength, byteBuffer.position());
+        Assert.assertArrayEquals(expected, Arrays.copyOf(byteBuffer.array(), expected.length));
+
+        try {
+            serializer.serialize(signedStatements, byteBuffer);
+            Assert.fail();
+        }
+        catch (BufferOverflowException e) {
+            LOG.info("expected: " + e);
+        }
+    }
+
     private void testEncodeDecode(Object obj, SerializeService serializer, boolean log) throws Exception {
         byte[] encoded = serializer.serialize(obj);
         if (log) {
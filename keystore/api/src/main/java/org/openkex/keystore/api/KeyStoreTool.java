@@ -8,16 +8,30 @@ package org.openkex.keystore.api;
 
 import org.openkex.dto.SignatureAlgorithm;
 import org.openkex.tools.crypto.ECCTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.security.MessageDigest;
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Helper class for KeyStore
  */
 public class KeyStoreTool {
 
+    private static final Logger LOG = LoggerFactory.getLogger(KeyStoreTool.class);
+
+    // verifications per fork join task, a verification takes some 100us
+    private static final int TASK_SIZE = 16;
+
     // avoid instances
     private KeyStoreTool() {
     }
@@ -33,16 +47,33 @@ public class KeyStoreTool {
      * @throws Exception in case of encoding problems
      */
     public static boolean verify(SignatureAlgorithm algorithm, byte[] key, byte[] message, byte[] signature) throws Exception {
+        return verify(algorithm, key, message, 0, message.length, signature);
+    }
+
+    /**
+     * verify signature of a message range, avoids copy of message from a reused buffer.
+     *
+     * @param algorithm the key algorithm
+     * @param key the public key
+     * @param message buffer containing the message to verify
+     * @param offset start of message in buffer
+     * @param length length of message
+     * @param signature the signature to verify
+     * @return true if signature is valid
+     * @throws Exception in case of encoding problems
+     */
+    public static boolean verify(SignatureAlgorithm algorithm, byte[] key, byte[] message, int offset, int length, byte[] signature)
+            throws Exception {
         if (algorithm == SignatureAlgorithm.ECDSA_SECP256K1) {
-            PublicKey publicKey = ECCTool.getPublicKeyFromCurvePoint(key, algorithm.getIdentifier());
-            return ECCTool.verify(message, ECCTool.encodeRawSignature(signature), publicKey);
+            PublicKey publicKey = ECCTool.getCachedPublicKeyFromCurvePoint(key, algorithm.getIdentifier());
+            return ECCTool.verifyRawSignature(message, offset, length, signature, publicKey);
         }
         // todo: think about how to make this test code only
         else if (algorithm == SignatureAlgorithm.DUMMY) {
             // this is code duplication.
             MessageDigest md = MessageDigest.getInstance("MD5");
             md.update(key);
-            md.update(message);
+            md.update(message, offset, length);
             return Arrays.equals(signature, md.digest());
         }
         else {
@@ -50,4 +81,143 @@ public class KeyStoreTool {
         }
     }
 
+    /**
+     * verify signatures in parallel using the common fork join pool.
+     *
+     * @param requests the signatures to verify
+     * @return bit i is set if signature of request i is valid
+     * @throws Exception in case of unknown algorithm
+     * @see #verifyAll(List, ForkJoinPool)
+     */
+    public static BitSet verifyAll(List<VerifyRequest> requests) throws Exception {
+        return verifyAll(requests, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * verify signatures in parallel.
+     * <p>
+     * each distinct public key is looked up once in the shared key cache, the signature engines are reused per thread (see {@link ECCTool}).
+     * in contrast to {@link #verify} a request with encoding problems (key or signature) is reported as invalid.
+     *
+     * @param requests the signatures to verify
+     * @param pool pool for parallel verification
+     * @return bit i is set if signature of request i is valid
+     * @throws Exception in case of unknown algorithm
+     */
+    public static BitSet verifyAll(List<VerifyRequest> requests, ForkJoinPool pool) throws Exception {
+        int count = requests.size();
+        // find distinct keys
+        Map<KeyId, Integer> keyIndex = new HashMap<>();
+        List<VerifyRequest> keyRequests = new ArrayList<>();
+        int[] requestKeys = new int[count];
+        for (int i = 0; i < count; i++) {
+            VerifyRequest request = requests.get(i);
+            SignatureAlgorithm algorithm = request.getAlgorithm();
+            if (algorithm == SignatureAlgorithm.ECDSA_SECP256K1) {
+                Integer index = keyIndex.putIfAbsent(new KeyId(algorithm, request.getKey()), keyRequests.size());
+                if (index == null) {
+                    index = keyRequests.size();
+                    keyRequests.add(request);
+                }
+                requestKeys[i] = index;
+            }
+            else if (algorithm != SignatureAlgorithm.DUMMY) {
+                throw new Exception("unknown algorithm." + algorithm);
+            }
+        }
+        // decode keys
+        PublicKey[] keys = new PublicKey[keyRequests.size()];
+        pool.invoke(new ParallelTask("key decoding", new boolean[keys.length], 0, keys.length, index -> {
+            VerifyRequest request = keyRequests.get(index);
+            keys[index] = ECCTool.getCachedPublicKeyFromCurvePoint(request.getKey(), request.getAlgorithm().getIdentifier());
+            return true;
+        }));
+        // verify signatures
+        boolean[] valid = new boolean[count];
+        pool.invoke(new ParallelTask("verification", valid, 0, count, index -> {
+            VerifyRequest request = requests.get(index);
+            if (request.getAlgorithm() != SignatureAlgorithm.ECDSA_SECP256K1) {
+                return verify(request.getAlgorithm(), request.getKey(), request.getMessage(), request.getSignature());
+            }
+            PublicKey key = keys[requestKeys[index]];
+            if (key == null) {
+                // decoding failed
+                return false;
+            }
+            return ECCTool.verifyRawSignature(request.getMessage(), request.getSignature(), key);
+        }));
+        BitSet result = new BitSet(count);
+        for (int i = 0; i < count; i++) {
+            result.set(i, valid[i]);
+        }
+        return result;
+    }
+
+    // action for a single index
+    private interface IndexAction {
+
+        boolean run(int index) throws Exception;
+    }
+
+    private static class ParallelTask extends RecursiveAction {
+
+        private String name;
+        private boolean[] results;
+        private int from;
+        private int to;
+        private IndexAction action;
+
+        ParallelTask(String name, boolean[] results, int from, int to, IndexAction action) {
+            this.name = name;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParallelTask(name, results, from, middle, action), new ParallelTask(name, results, middle, to, action));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    results[i] = action.run(i);
+                }
+                catch (Exception e) {
+                    LOG.warn(name + " failed. index=" + i + " error=" + e);
+                    results[i] = false;
+                }
+            }
+        }
+    }
+
+    // public key identity (algorithm and encoding)
+    private static class KeyId {
+
+        private SignatureAlgorithm algorithm;
+        private byte[] key;
+
+        KeyId(SignatureAlgorithm algorithm, byte[] key) {
+            this.algorithm = algorithm;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof KeyId)) {
+                return false;
+            }
+            KeyId other = (KeyId) o;
+            return algorithm == other.algorithm && Arrays.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return algorithm.hashCode() * 31 + Arrays.hashCode(key);
+        }
+    }
+
 }
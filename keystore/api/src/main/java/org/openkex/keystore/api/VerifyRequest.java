@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.keystore.api;
+
+import org.openkex.dto.SignatureAlgorithm;
+
+/**
+ * signature to verify, see {@link KeyStoreTool#verifyAll(java.util.List)}
+ */
+public class VerifyRequest {
+
+    private SignatureAlgorithm algorithm;
+    private byte[] key;
+    private byte[] message;
+    private byte[] signature;
+
+    /**
+     * @param algorithm the key algorithm
+     * @param key the public key
+     * @param message the message to verify
+     * @param signature the signature to verify
+     */
+    public VerifyRequest(SignatureAlgorithm algorithm, byte[] key, byte[] message, byte[] signature) {
+        this.algorithm = algorithm;
+        this.key = key;
+        this.message = message;
+        this.signature = signature;
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public byte[] getMessage() {
+        return message;
+    }
+
+    public byte[] getSignature() {
+        return signature;
+    }
+}
@@ -119,7 +119,7 @@ public class JavaMemoryKeyStore implements KeyStore {
         if (pair == null) {
             throw new RuntimeException("found no key with id: " + keyId);
         }
-        return ECCTool.verify(message, ECCTool.encodeRawSignature(signature), pair.getPublic());
+        return ECCTool.verifyRawSignature(message, signature, pair.getPublic());
     }
 
     private PublicKey convertToPublicKey(KeyPair pair, String id) throws Exception {
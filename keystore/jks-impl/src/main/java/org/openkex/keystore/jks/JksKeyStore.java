@@ -191,8 +191,8 @@ public class JksKeyStore implements KeyStore {
         PublicKey key = getPublicKey(keyId);
         Validate.notNull(key, "found no public key with id: " + keyId);
 
-        java.security.PublicKey javaKey = ECCTool.getPublicKeyFromCurvePoint(key.getPublicKey(), key.getAlgorithm().getIdentifier());
-        return ECCTool.verify(message, ECCTool.encodeRawSignature(signature), javaKey);
+        java.security.PublicKey javaKey = ECCTool.getCachedPublicKeyFromCurvePoint(key.getPublicKey(), key.getAlgorithm().getIdentifier());
+        return ECCTool.verifyRawSignature(message, signature, javaKey);
     }
 
     private Certificate[] getFakeChain(KeyPair pair) throws Exception {
@@ -212,8 +212,9 @@ public class SmartCardHsmKeyStore implements KeyStore {
 
     public boolean verify(String keyId, byte[] message, byte[] signature) throws Exception {
         PublicKey key = getPublicKey(keyId);
-        java.security.PublicKey javaKey = ECCTool.getPublicKeyFromCurvePoint(key.getPublicKey(), SignatureAlgorithm.ECDSA_SECP256K1.getIdentifier());
-        return ECCTool.verify(message, ECCTool.encodeRawSignature(signature), javaKey);
+        java.security.PublicKey javaKey = ECCTool.getCachedPublicKeyFromCurvePoint(key.getPublicKey(),
+                SignatureAlgorithm.ECDSA_SECP256K1.getIdentifier());
+        return ECCTool.verifyRawSignature(message, signature, javaKey);
     }
 
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.keystore.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.keystore.api.KeyStore;
+import org.openkex.keystore.api.KeyStoreTool;
+import org.openkex.keystore.api.PublicKey;
+import org.openkex.keystore.api.VerifyRequest;
+import org.openkex.keystore.memory.JavaMemoryDummyKeyStore;
+import org.openkex.keystore.memory.JavaMemoryKeyStore;
+import org.openkex.tools.crypto.ECCTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+public class KeyStoreToolTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyStoreToolTest.class);
+
+    @Test
+    public void testVerifyAll() throws Exception {
+        KeyStore store = new JavaMemoryKeyStore();
+        KeyStore dummyStore = new JavaMemoryDummyKeyStore();
+        List<PublicKey> keys = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            keys.add(store.generateKey(SignatureAlgorithm.ECDSA_SECP256K1, "key" + i));
+        }
+        keys.add(dummyStore.generateKey(SignatureAlgorithm.DUMMY, "dummy"));
+
+        List<VerifyRequest> requests = new ArrayList<>();
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 100; i++) {
+            PublicKey key = keys.get(i % keys.size());
+            byte[] message = ("message " + i).getBytes("US-ASCII");
+            KeyStore signer = key.getAlgorithm() == SignatureAlgorithm.DUMMY ? dummyStore : store;
+            byte[] signature = signer.sign(key.getId(), message);
+            if (i % 7 == 0) {
+                signature[9] ^= 8;  // change one bit
+            }
+            else if (i % 11 == 0) {
+                message[3] ^= 16;  // change one bit
+            }
+            else {
+                expected.set(i);
+            }
+            requests.add(new VerifyRequest(key.getAlgorithm(), key.getPublicKey(), message, signature));
+        }
+        // encoding problems are invalid
+        PublicKey key = keys.get(0);
+        requests.add(new VerifyRequest(key.getAlgorithm(), key.getPublicKey(), new byte[10], new byte[10]));
+        requests.add(new VerifyRequest(key.getAlgorithm(), new byte[33], new byte[10], new byte[64]));
+
+        BitSet valid = KeyStoreTool.verifyAll(requests);
+        Assert.assertEquals(expected, valid);
+        // same result as single verification
+        for (int i = 0; i < 100; i++) {
+            VerifyRequest request = requests.get(i);
+            Assert.assertEquals(expected.get(i),
+                KeyStoreTool.verify(request.getAlgorithm(), request.getKey(), request.getMessage(), request.getSignature()));
+        }
+        // keys are decoded once, except the invalid key
+        long misses = ECCTool.getPublicKeyCache().getMisses();
+        Assert.assertEquals(expected, KeyStoreTool.verifyAll(requests));
+        Assert.assertEquals(misses + 1, ECCTool.getPublicKeyCache().getMisses());
+        LOG.info("key cache: " + ECCTool.getPublicKeyCache());
+
+        Assert.assertEquals(new BitSet(), KeyStoreTool.verifyAll(Collections.emptyList()));
+    }
+
+    @Test
+    public void testVerifyAllUnknown() throws Exception {
+        List<VerifyRequest> requests = new ArrayList<>();
+        requests.add(new VerifyRequest(SignatureAlgorithm.ED25519, new byte[32], new byte[10], new byte[64]));
+        try {
+            KeyStoreTool.verifyAll(requests);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected exception: " + e);
+        }
+    }
+}
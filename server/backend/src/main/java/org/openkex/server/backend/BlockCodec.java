@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import java.io.Closeable;
+
+/**
+ * compression algorithm for stored blocks.
+ * <p>
+ * a codec is closed by the store using it, {@link #close()} releases native resources.
+ */
+public interface BlockCodec extends Closeable {
+
+    /**
+     * get codec id, stored with each compressed frame
+     *
+     * @return id of codec (1 to 127)
+     */
+    byte getId();
+
+    /**
+     * compress data
+     *
+     * @param data uncompressed data
+     * @return compressed data, null if compressed data is not smaller
+     * @throws Exception in case of codec problem
+     */
+    byte[] compress(byte[] data) throws Exception;
+
+    /**
+     * decompress data
+     *
+     * @param input buffer with compressed data
+     * @param offset start of compressed data
+     * @param length length of compressed data
+     * @param output buffer for uncompressed data
+     * @param outputOffset start of uncompressed data
+     * @param outputLength length of uncompressed data
+     * @throws Exception in case of codec problem or if the uncompressed length does not match
+     */
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputOffset, int outputLength) throws Exception;
+
+    /**
+     * release resources of codec
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.tools.Validate;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * block codec using deflate (zlib format, including adler32 checksum) of the JDK.
+ * <p>
+ * deflater and inflater hold native memory that is expensive to allocate per block. idle instances are pooled
+ * (bounded by the number of processors), instances exceeding the pool and all pooled instances on {@link #close()}
+ * are ended explicitly.
+ */
+public class BlockCodecDeflateImpl implements BlockCodec {
+
+    private static final byte ID = 1;
+
+    private int level;
+    private ArrayBlockingQueue<Deflater> deflaters;
+    private ArrayBlockingQueue<Inflater> inflaters;
+    private volatile boolean closed;
+
+    /**
+     * create codec with default compression level
+     */
+    public BlockCodecDeflateImpl() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * create codec
+     *
+     * @param level compression level (0-9)
+     */
+    public BlockCodecDeflateImpl(int level) {
+        Validate.isTrue(level == Deflater.DEFAULT_COMPRESSION || (level >= 0 && level <= 9), "invalid level: " + level);
+        this.level = level;
+        int poolSize = Runtime.getRuntime().availableProcessors();
+        this.deflaters = new ArrayBlockingQueue<>(poolSize);
+        this.inflaters = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) throws Exception {
+        Deflater def = deflaters.poll();
+        if (def == null) {
+            def = new Deflater(level);
+        }
+        try {
+            def.setInput(data);
+            def.finish();
+            // output that does not fit into less than the input is useless
+            byte[] buffer = new byte[data.length];
+            int size = 0;
+            while (!def.finished() && size < buffer.length) {
+                size += def.deflate(buffer, size, buffer.length - size);
+            }
+            if (!def.finished() || size >= data.length) {
+                return null;
+            }
+            byte[] result = new byte[size];
+            System.arraycopy(buffer, 0, result, 0, size);
+            return result;
+        }
+        finally {
+            def.reset();
+            if (closed || !deflaters.offer(def)) {
+                def.end();
+            }
+        }
+    }
+
+    @Override
+    public void decompress(byte[] input, int offset, int length, byte[] output, int outputOffset, int outputLength) throws Exception {
+        Inflater inf = inflaters.poll();
+        if (inf == null) {
+            inf = new Inflater();
+        }
+        try {
+            inf.setInput(input, offset, length);
+            int size = 0;
+            while (!inf.finished() && size < outputLength) {
+                int count = inf.inflate(output, outputOffset + size, outputLength - size);
+                if (count == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    break;
+                }
+                size += count;
+            }
+            Validate.isTrue(size == outputLength, "invalid uncompressed length: " + size + " expected=" + outputLength);
+        }
+        finally {
+            inf.reset();
+            if (closed || !inflaters.offer(inf)) {
+                inf.end();
+            }
+        }
+    }
+
+    /**
+     * end pooled instances. calls running concurrently end their instance when done,
+     * the codec stays usable (without pooling).
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Deflater def;
+        while ((def = deflaters.poll()) != null) {
+            def.end();
+        }
+        Inflater inf;
+        while ((inf = inflaters.poll()) != null) {
+            inf.end();
+        }
+    }
+}
@@ -6,6 +6,8 @@
  */
 package org.openkex.server.backend;
 
+import java.nio.ByteBuffer;
+
 /**
  * stores binary blocks.
  */
@@ -14,7 +16,7 @@ public interface BlockStoreApi {
     /**
      * write block (create or update)
      *
-     * @param roundNr considered round (Note: currently round is limited to 1e12)
+     * @param roundNr considered round (Note: limited to 2^48, the range of kexIds)
      * @param blockData data to write
      * @return true in case of update (previous data was existing)
      * @throws Exception in case of storage problem
@@ -30,6 +32,15 @@ public interface BlockStoreApi {
      */
     void appendBlock(long roundNr, byte[] blockData) throws Exception;
 
+    /**
+     * check if block exists, without reading it
+     *
+     * @param roundNr considered round
+     * @return true if block is present
+     * @throws Exception in case of storage problem
+     */
+    boolean hasBlock(long roundNr) throws Exception;
+
     /**
      * read block
      *
@@ -39,6 +50,30 @@ public interface BlockStoreApi {
      */
     byte[] readBlock(long roundNr) throws Exception;
 
+    /**
+     * read block as read only buffer.
+     * <p>
+     * implementations may return a view of memory mapped or cached data (no copy),
+     * so the buffer content is only defined until the block is written again.
+     *
+     * @param roundNr considered round
+     * @return read only buffer with block data (position 0, limit is block size), null if no data is present
+     * @throws Exception in case of storage problem
+     */
+    ByteBuffer readBlockBuffer(long roundNr) throws Exception;
+
+    /**
+     * read all present blocks of a round range in ascending round order.
+     * <p>
+     * the visitor must not modify the store.
+     *
+     * @param fromRound first round (inclusive)
+     * @param toRound end of range (exclusive)
+     * @param visitor called for each block, may stop the iteration
+     * @throws Exception in case of storage problem or if thrown by visitor
+     */
+    void readBlocks(long fromRound, long toRound, BlockVisitor visitor) throws Exception;
+
     /**
      * get block count
      *
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * block store that keeps recently read blocks of another store in memory.
+ * <p>
+ * the cache is a least recently used map limited by the size of the cached blocks.
+ * the delegate store is accessed outside of the cache lock, a block read concurrently to a write
+ * of the same round is not cached (detected by a modification counter).
+ */
+public class BlockStoreCacheImpl implements BlockStoreApi, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockStoreCacheImpl.class);
+
+    private BlockStoreApi delegate;
+    private long maxCacheSize;
+
+    // access ordered, eldest entry is least recently used
+    private LinkedHashMap<Long, byte[]> cache;
+    private long cacheSize;
+    // incremented on each invalidation
+    private long modifications;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * create cache
+     *
+     * @param delegate store holding the blocks
+     * @param maxCacheSize maximum sum of cached block sizes in bytes
+     */
+    public BlockStoreCacheImpl(BlockStoreApi delegate, long maxCacheSize) {
+        LOG.info("BlockStoreCacheImpl delegate=" + delegate.getClass().getSimpleName() + " maxCacheSize=" + maxCacheSize);
+        Validate.isTrue(maxCacheSize > 0, "invalid cache size: " + maxCacheSize);
+        this.delegate = delegate;
+        this.maxCacheSize = maxCacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public long getBlockCount() throws Exception {
+        return delegate.getBlockCount();
+    }
+
+    @Override
+    public long getStoreSize() throws Exception {
+        return delegate.getStoreSize();
+    }
+
+    @Override
+    public boolean writeBlock(long roundNr, byte[] blockData) throws Exception {
+        try {
+            return delegate.writeBlock(roundNr, blockData);
+        }
+        finally {
+            invalidate(roundNr);
+        }
+    }
+
+    @Override
+    public void appendBlock(long roundNr, byte[] blockData) throws Exception {
+        try {
+            delegate.appendBlock(roundNr, blockData);
+        }
+        finally {
+            invalidate(roundNr);
+        }
+    }
+
+    @Override
+    public boolean hasBlock(long roundNr) throws Exception {
+        synchronized (this) {
+            // no access, the order of the cache is kept
+            if (cache.containsKey(roundNr)) {
+                return true;
+            }
+        }
+        return delegate.hasBlock(roundNr);
+    }
+
+    /**
+     * returns a copy, the cached array is not exposed to callers.
+     */
+    @Override
+    public byte[] readBlock(long roundNr) throws Exception {
+        byte[] data = readCached(roundNr);
+        return data == null ? null : data.clone();
+    }
+
+    /**
+     * read only view of the cached block (no copy).
+     */
+    @Override
+    public ByteBuffer readBlockBuffer(long roundNr) throws Exception {
+        byte[] data = readCached(roundNr);
+        if (data == null) {
+            return null;
+        }
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    // array owned by the cache, must not be modified or returned
+    private byte[] readCached(long roundNr) throws Exception {
+        long modification;
+        synchronized (this) {
+            byte[] data = cache.get(roundNr);
+            if (data != null) {
+                hits++;
+                return data;
+            }
+            misses++;
+            modification = modifications;
+        }
+        byte[] data = delegate.readBlock(roundNr);
+        if (data != null) {
+            add(roundNr, data, modification);
+        }
+        return data;
+    }
+
+    /**
+     * range reads are forwarded to the delegate and do not change the cache (a scan does not evict recent blocks).
+     */
+    @Override
+    public void readBlocks(long fromRound, long toRound, BlockVisitor visitor) throws Exception {
+        delegate.readBlocks(fromRound, toRound, visitor);
+    }
+
+    /**
+     * @return number of reads served from cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of reads forwarded to the delegate
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of blocks removed from cache to respect the size limit
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return sum of cached block sizes
+     */
+    public synchronized long getCacheSize() {
+        return cacheSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            cache.clear();
+            cacheSize = 0;
+        }
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    private synchronized void invalidate(long roundNr) {
+        modifications++;
+        byte[] old = cache.remove(roundNr);
+        if (old != null) {
+            cacheSize -= old.length;
+        }
+    }
+
+    private synchronized void add(long roundNr, byte[] data, long modification) {
+        if (modification != modifications || data.length > maxCacheSize) {
+            // written in the meantime or too large
+            return;
+        }
+        byte[] old = cache.put(roundNr, data);
+        if (old != null) {
+            cacheSize -= old.length;
+        }
+        cacheSize += data.length;
+        Iterator<Map.Entry<Long, byte[]>> iterator = cache.entrySet().iterator();
+        while (cacheSize > maxCacheSize) {
+            Map.Entry<Long, byte[]> eldest = iterator.next();
+            cacheSize -= eldest.getValue().length;
+            iterator.remove();
+            evictions++;
+        }
+    }
+}
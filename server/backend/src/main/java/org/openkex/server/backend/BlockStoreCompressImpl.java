@@ -0,0 +1,223 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * block store that compresses the blocks of another store.
+ * <p>
+ * a stored block is a sequence of frames: codec id(1) length(4) stored length(4) data.
+ * written and appended data get a frame each, so an append does not rewrite the existing block.
+ * frames that do not get smaller (or are very small) are stored uncompressed with codec id 0.
+ * <p>
+ * {@link #getStoreSize()} reports the logical (uncompressed) size of blocks, the size in the delegate
+ * is reported by {@link #getPhysicalStoreSize()}.
+ */
+public class BlockStoreCompressImpl implements BlockStoreApi, Closeable {
+
+    /** blocks smaller than this are not compressed */
+    public static final int DEFAULT_MIN_SIZE = 64;
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockStoreCompressImpl.class);
+
+    private static final int FRAME_HEADER_SIZE = 9;
+    private static final byte RAW_ID = 0;
+
+    private BlockStoreApi delegate;
+    private BlockCodec codec;
+    private int minSize;
+
+    // logical size, -1 until calculated on first use
+    private long storeSize = -1;
+
+    /**
+     * create store with default minimum size
+     *
+     * @param delegate store holding compressed blocks
+     * @param codec compression algorithm, closed with the store
+     * @throws Exception in case of storage problem
+     */
+    public BlockStoreCompressImpl(BlockStoreApi delegate, BlockCodec codec) throws Exception {
+        this(delegate, codec, DEFAULT_MIN_SIZE);
+    }
+
+    /**
+     * create store
+     * <p>
+     * the logical size of existing blocks is calculated from the frame headers of the delegate
+     * on the first call of {@link #getStoreSize()}, opening does not read the blocks.
+     *
+     * @param delegate store holding compressed blocks
+     * @param codec compression algorithm, closed with the store
+     * @param minSize minimum size of data to compress
+     * @throws Exception in case of storage problem
+     */
+    public BlockStoreCompressImpl(BlockStoreApi delegate, BlockCodec codec, int minSize) throws Exception {
+        LOG.info("BlockStoreCompressImpl delegate=" + delegate.getClass().getSimpleName() + " codec=" + codec.getClass().getSimpleName());
+        Validate.isTrue(codec.getId() > RAW_ID, "invalid codec id: " + codec.getId());
+        this.delegate = delegate;
+        this.codec = codec;
+        this.minSize = minSize;
+    }
+
+    @Override
+    public long getBlockCount() throws Exception {
+        return delegate.getBlockCount();
+    }
+
+    /**
+     * @return sum of the uncompressed sizes of all blocks
+     * @throws Exception in case of storage problem
+     */
+    @Override
+    public synchronized long getStoreSize() throws Exception {
+        if (storeSize < 0) {
+            // all frame headers are read once, later writes update the size
+            long[] size = new long[1];
+            delegate.readBlocks(Long.MIN_VALUE, Long.MAX_VALUE, (roundNr, blockData) -> {
+                size[0] += getLength(blockData);
+                return true;
+            });
+            storeSize = size[0];
+        }
+        return storeSize;
+    }
+
+    /**
+     * @return sum of the stored (compressed) sizes of all blocks
+     * @throws Exception in case of storage problem
+     */
+    public long getPhysicalStoreSize() throws Exception {
+        return delegate.getStoreSize();
+    }
+
+    @Override
+    public synchronized boolean writeBlock(long roundNr, byte[] blockData) throws Exception {
+        Validate.notNull(blockData);
+        if (storeSize < 0) {
+            return delegate.writeBlock(roundNr, encode(blockData));
+        }
+        ByteBuffer old = delegate.readBlockBuffer(roundNr);
+        long oldLength = old == null ? 0 : getLength(old);
+        boolean exists = delegate.writeBlock(roundNr, encode(blockData));
+        storeSize += blockData.length - oldLength;
+        return exists;
+    }
+
+    @Override
+    public synchronized void appendBlock(long roundNr, byte[] blockData) throws Exception {
+        Validate.notNull(blockData);
+        delegate.appendBlock(roundNr, encode(blockData));
+        if (storeSize >= 0) {
+            storeSize += blockData.length;
+        }
+    }
+
+    @Override
+    public boolean hasBlock(long roundNr) throws Exception {
+        return delegate.hasBlock(roundNr);
+    }
+
+    @Override
+    public synchronized byte[] readBlock(long roundNr) throws Exception {
+        ByteBuffer buffer = delegate.readBlockBuffer(roundNr);
+        if (buffer == null) {
+            return null;
+        }
+        return decode(buffer);
+    }
+
+    @Override
+    public synchronized ByteBuffer readBlockBuffer(long roundNr) throws Exception {
+        ByteBuffer buffer = delegate.readBlockBuffer(roundNr);
+        if (buffer == null) {
+            return null;
+        }
+        // single uncompressed frame: view of delegate buffer
+        int length = buffer.getInt(1);
+        if (buffer.get(0) == RAW_ID && buffer.remaining() == FRAME_HEADER_SIZE + length) {
+            buffer.position(FRAME_HEADER_SIZE);
+            return buffer.slice();
+        }
+        return ByteBuffer.wrap(decode(buffer)).asReadOnlyBuffer();
+    }
+
+    @Override
+    public synchronized void readBlocks(long fromRound, long toRound, BlockVisitor visitor) throws Exception {
+        delegate.readBlocks(fromRound, toRound,
+            (roundNr, blockData) -> visitor.visit(roundNr, ByteBuffer.wrap(decode(blockData)).asReadOnlyBuffer()));
+    }
+
+    /**
+     * close codec and delegate (if closeable)
+     */
+    @Override
+    public void close() throws IOException {
+        codec.close();
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    private byte[] encode(byte[] data) throws Exception {
+        byte[] compressed = data.length < minSize ? null : codec.compress(data);
+        byte id = codec.getId();
+        if (compressed == null || compressed.length >= data.length) {
+            compressed = data;
+            id = RAW_ID;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + compressed.length);
+        frame.put(id).putInt(data.length).putInt(compressed.length).put(compressed);
+        return frame.array();
+    }
+
+    // sum of uncompressed frame lengths
+    private long getLength(ByteBuffer buffer) {
+        long length = 0;
+        int position = buffer.position();
+        while (position < buffer.limit()) {
+            Validate.isTrue(buffer.limit() - position >= FRAME_HEADER_SIZE, "invalid frame header");
+            length += buffer.getInt(position + 1);
+            position += FRAME_HEADER_SIZE + buffer.getInt(position + 5);
+        }
+        Validate.isTrue(position == buffer.limit(), "invalid frame length");
+        return length;
+    }
+
+    private byte[] decode(ByteBuffer buffer) throws Exception {
+        long length = getLength(buffer);
+        Validate.isTrue(length <= Integer.MAX_VALUE, "block too large: " + length);
+        byte[] data = new byte[(int) length];
+        byte[] input = null;
+        int offset = 0;
+        while (buffer.hasRemaining()) {
+            byte id = buffer.get();
+            int frameLength = buffer.getInt();
+            int storedLength = buffer.getInt();
+            if (id == RAW_ID) {
+                buffer.get(data, offset, frameLength);
+            }
+            else {
+                Validate.isTrue(id == codec.getId(), "unknown codec id: " + id);
+                if (input == null || input.length < storedLength) {
+                    input = new byte[storedLength];
+                }
+                buffer.get(input, 0, storedLength);
+                codec.decompress(input, 0, storedLength, data, offset, frameLength);
+            }
+            offset += frameLength;
+        }
+        return data;
+    }
+}
@@ -12,12 +12,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 
 public class BlockStoreFileImpl implements BlockStoreApi {
 
     // path separator. working also on windows (java apis fix this)
     private static final String SEP = "/";
     private static final Logger LOG = LoggerFactory.getLogger(BlockStoreFileImpl.class);
+    // 6 byte numbers, as kexIds used as block number by StatementIndex (up to 15 digits)
+    private static final long MAX_ROUND = 1L << 48;
+    // rounds per directory of first and second level
+    private static final long LEVEL_1 = 100000000L;
+    private static final long LEVEL_2 = 10000L;
+    // minimum digits of directory and block file names, numbers of more digits extend the first level
+    private static final int DIR_WIDTH = 4;
+    private static final int FILE_WIDTH = 12;
+    // suffix of file written before rename
+    private static final String TEMP_SUFFIX = ".tmp";
     private String basePath;
 
     public BlockStoreFileImpl(String basePath) throws Exception {
@@ -53,7 +69,9 @@ public class BlockStoreFileImpl implements BlockStoreApi {
         String file = getFilePath(roundNr);
         createDirectory(file);
         boolean exists = new File(file).exists();
-        FileTool.write(blockData, file, false);
+        String temp = file + TEMP_SUFFIX;
+        FileTool.write(blockData, temp, false);
+        replace(temp, file);
         return exists;
     }
 
@@ -63,11 +81,16 @@ public class BlockStoreFileImpl implements BlockStoreApi {
 
 //        LOG.debug("writeBlock roundNr=" + roundNr + " size=" + blockData.length);
         String file = getFilePath(roundNr);
-        File data = new File(file);
-        Validate.isTrue(data.exists(), "cannot append to missing block: " + roundNr);
+        Validate.isTrue(new File(file).exists(), "cannot append to missing block: " + roundNr);
+        // in place, existing mappings do not cover the appended data
         FileTool.write(blockData, file, true);
     }
 
+    @Override
+    public boolean hasBlock(long roundNr) throws Exception {
+        return new File(getFilePath(roundNr)).exists();
+    }
+
     @Override
     public byte[] readBlock(long roundNr) throws Exception {
         String file = getFilePath(roundNr);
@@ -77,15 +100,103 @@ public class BlockStoreFileImpl implements BlockStoreApi {
         return FileTool.read(file);
     }
 
+    /**
+     * read block as memory mapped buffer (no copy to heap).
+     * <p>
+     * blocks are rewritten as new file (rename) and appended in place, so a mapping keeps the content of the time of reading.
+     * Note: the mapping is released by garbage collection only, on windows the file cannot be deleted while it is mapped.
+     */
+    @Override
+    public ByteBuffer readBlockBuffer(long roundNr) throws Exception {
+        String file = getFilePath(roundNr);
+        if (!new File(file).exists()) {
+            return null;
+        }
+        // mapping remains valid after channel is closed
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+        }
+        finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * visit blocks by walking the sorted directory levels, each block file is read sequentially.
+     */
+    @Override
+    public void readBlocks(long fromRound, long toRound, BlockVisitor visitor) throws Exception {
+        long from = Math.max(fromRound, 0);
+        long to = Math.min(toRound, MAX_ROUND);
+        if (from >= to) {
+            return;
+        }
+        // rounds of directory level: 10^8, 10^4, 1
+        for (File dir1 : listSorted(new File(basePath), DIR_WIDTH, from / LEVEL_1, (to - 1) / LEVEL_1)) {
+            long base1 = Long.parseLong(dir1.getName()) * LEVEL_1;
+            long from2 = Math.max(from - base1, 0) / LEVEL_2;
+            long to2 = Math.min(to - 1 - base1, LEVEL_1 - 1) / LEVEL_2;
+            for (File dir2 : listSorted(dir1, DIR_WIDTH, from2, to2)) {
+                long base2 = base1 + Long.parseLong(dir2.getName()) * LEVEL_2;
+                for (File file : listSorted(dir2, FILE_WIDTH, Math.max(from, base2), Math.min(to - 1, base2 + LEVEL_2 - 1))) {
+                    byte[] data = FileTool.read(file.getPath());
+                    if (!visitor.visit(Long.parseLong(file.getName()), ByteBuffer.wrap(data).asReadOnlyBuffer())) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // entries of directory with numeric name (zero padded to width) in range (inclusive), sorted by number.
+    // other entries (temp files, editor backups, ..) are skipped
+    private File[] listSorted(File dir, int width, long min, long max) {
+        File[] files = dir.listFiles(file -> {
+            String name = file.getName();
+            if (name.length() < width || name.length() > FILE_WIDTH + 3 || !isDigits(name)) {
+                return false;
+            }
+            long number = Long.parseLong(name);
+            return number >= min && number <= max && name.equals(format(number, width));
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        // longer name is larger number, string order for same length
+        Arrays.sort(files, (a, b) -> a.getName().length() != b.getName().length()
+                ? Integer.compare(a.getName().length(), b.getName().length()) : a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    private static String format(long number, int width) {
+        return String.format("%0" + width + "d", number);
+    }
+
+    private static boolean isDigits(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private String getFilePath(long roundNr) {
-        // assume 12 digits are sufficient (60s round starting 1.1.1970 -> .. year 3871
-        long maxRound = 1000000000000L;
-        Validate.isTrue(roundNr < maxRound);
-        String roundStr = String.format("%012d", roundNr);
-        // split 3 x 4digits (10000 files or directories per level)
+        Validate.isTrue(roundNr >= 0 && roundNr < MAX_ROUND, "invalid round: " + roundNr);
+        String roundStr = format(roundNr, FILE_WIDTH);
+        // split 3 x 4digits (10000 files or directories per level), first level has more digits beyond 1e12
+        int split = roundStr.length() - 8;
 
         // return basePath + File.separator + roundStr;
-        return basePath + SEP + roundStr.substring(0, 4) + SEP + roundStr.substring(4, 8) + SEP + roundStr;
+        return basePath + SEP + roundStr.substring(0, split) + SEP + roundStr.substring(split, split + 4) + SEP + roundStr;
+    }
+
+    // rename over existing file, the old file (inode) stays valid for existing mappings
+    private void replace(String temp, String file) throws Exception {
+        Files.move(new File(temp).toPath(), new File(file).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     // will create directory if required
@@ -117,7 +228,8 @@ public class BlockStoreFileImpl implements BlockStoreApi {
                 // recursive...
                 number += scanFilesRecursive(f, size);
             }
-            else {
+            else if (!f.getName().endsWith(TEMP_SUFFIX)) {
+                // temp file of interrupted write is not a block
                 if (size) {
                     number += f.length();
                 }
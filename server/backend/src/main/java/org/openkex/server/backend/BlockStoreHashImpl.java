@@ -0,0 +1,700 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * persistent block store with an on-disk hash index, for sparse keys in random order (e.g. kexIds).
+ * <p>
+ * blocks are written as records to an append-only log file. an append writes only the added data,
+ * linked to the previous record of the block. a chain of more than {@link #MAX_CHAIN} records is combined into one record.
+ * <p>
+ * the index (key to position of the last record) is an open addressing hash table in a memory mapped file,
+ * it is doubled (rehashed to a new file) at half load. no state per key is kept on the heap.
+ * <p>
+ * overwritten and combined records are dead space. if it exceeds half of the log the store is compacted:
+ * live blocks are copied to a log and index of the next generation, then the old files are deleted.
+ * <p>
+ * the index is marked clean by {@link #close()}, a restart opens it without reading the log.
+ * otherwise (crash) the index is rebuilt from the log, an incomplete record at its end is removed.
+ * written data is forced to the device by {@link #sync()} and on close.
+ */
+public class BlockStoreHashImpl implements BlockStoreApi, Closeable {
+
+    /** keys are 6 byte numbers (exclusive limit) */
+    public static final long MAX_KEY = 1L << 48;
+
+    /** maximum number of records of a block, a longer chain is combined on append */
+    public static final int MAX_CHAIN = 16;
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockStoreHashImpl.class);
+
+    // path separator. working also on windows (java apis fix this)
+    private static final String SEP = "/";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // record header: magic(4) key(8) previous(8) length(4) total(4) chain(4) crc32(4)
+    private static final int HEADER_SIZE = 36;
+    // "KEXH", zero marks the end of written data
+    private static final int RECORD_MAGIC = 0x4B455848;
+    private static final int KEY_OFFSET = 4;
+    private static final int PREVIOUS_OFFSET = 12;
+    private static final int LENGTH_OFFSET = 20;
+    private static final int TOTAL_OFFSET = 24;
+    private static final int CHAIN_OFFSET = 28;
+    private static final int CRC_OFFSET = 32;
+    private static final long NO_RECORD = -1;
+
+    // index header: magic(4) state(4) capacity(8) count(8) storeSize(8) logSize(8) deadSize(8), padded
+    private static final int INDEX_HEADER_SIZE = 64;
+    // "KEXI"
+    private static final int INDEX_MAGIC = 0x4B455849;
+    private static final int STATE_OPEN = 0;
+    private static final int STATE_CLEAN = 1;
+    // slot: key + 1 (zero marks a free slot), position of last record
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    // slots per mapping of the index file (16MB)
+    private static final int CHUNK_SHIFT = 20;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    // dead space of smaller logs is not reclaimed
+    private static final long MIN_COMPACT_SIZE = 1024 * 1024;
+
+    private String basePath;
+    private int generation;
+    private FileChannel logChannel;
+    private Table table;
+
+    private long count;
+    private long storeSize;
+    // end of log, next record is written here
+    private long logSize;
+    // size of overwritten records
+    private long deadSize;
+    private boolean closed;
+
+    /**
+     * open or create store
+     *
+     * @param basePath directory of log and index files, created if missing
+     * @throws Exception in case of storage problem
+     */
+    public BlockStoreHashImpl(String basePath) throws Exception {
+        LOG.info("BlockStoreHashImpl path=" + basePath);
+        this.basePath = basePath;
+        File base = new File(basePath);
+        if (!base.exists()) {
+            LOG.info("creating dir=" + basePath);
+            Validate.isTrue(base.mkdirs());
+        }
+        else if (!base.canWrite()) {
+            throw new RuntimeException("cannot write to: " + basePath);
+        }
+        open();
+    }
+
+    @Override
+    public synchronized long getBlockCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized long getStoreSize() {
+        return storeSize;
+    }
+
+    /**
+     * @return size of the log, including dead records
+     */
+    public synchronized long getLogSize() {
+        return logSize;
+    }
+
+    @Override
+    public synchronized boolean writeBlock(long roundNr, byte[] blockData) throws Exception {
+        Validate.notNull(blockData);
+        checkKey(roundNr);
+        long slot = findForInsert(roundNr);
+        boolean exists = table.isUsed(slot);
+        long position = writeRecord(logChannel, logSize, roundNr, NO_RECORD, blockData, blockData.length, 1);
+        logSize += HEADER_SIZE + blockData.length;
+        if (exists) {
+            ByteBuffer old = readHeader(table.getPosition(slot));
+            deadSize += getChainSize(old);
+            storeSize -= old.getInt(TOTAL_OFFSET);
+        }
+        else {
+            count++;
+        }
+        table.set(slot, roundNr, position);
+        storeSize += blockData.length;
+        compactIfWasteful();
+        return exists;
+    }
+
+    @Override
+    public synchronized void appendBlock(long roundNr, byte[] blockData) throws Exception {
+        Validate.notNull(blockData);
+        checkKey(roundNr);
+        long slot = table.find(roundNr);
+        Validate.isTrue(table.isUsed(slot), "cannot append to missing block: " + roundNr);
+        long last = table.getPosition(slot);
+        ByteBuffer header = readHeader(last);
+        int total = header.getInt(TOTAL_OFFSET);
+        int chain = header.getInt(CHAIN_OFFSET);
+        Validate.isTrue((long) total + blockData.length <= Integer.MAX_VALUE, "block too large: " + roundNr);
+        long position;
+        if (chain >= MAX_CHAIN) {
+            // combine, the old chain is dead
+            byte[] data = new byte[total + blockData.length];
+            readChain(last, data, total);
+            System.arraycopy(blockData, 0, data, total, blockData.length);
+            position = writeRecord(logChannel, logSize, roundNr, NO_RECORD, data, data.length, 1);
+            logSize += HEADER_SIZE + data.length;
+            deadSize += getChainSize(header);
+        }
+        else {
+            position = writeRecord(logChannel, logSize, roundNr, last, blockData, total + blockData.length, chain + 1);
+            logSize += HEADER_SIZE + blockData.length;
+        }
+        table.set(slot, roundNr, position);
+        storeSize += blockData.length;
+        compactIfWasteful();
+    }
+
+    @Override
+    public synchronized boolean hasBlock(long roundNr) {
+        checkKey(roundNr);
+        return table.isUsed(table.find(roundNr));
+    }
+
+    @Override
+    public synchronized byte[] readBlock(long roundNr) throws Exception {
+        checkKey(roundNr);
+        long slot = table.find(roundNr);
+        if (!table.isUsed(slot)) {
+            return null;
+        }
+        return readBlockAt(table.getPosition(slot));
+    }
+
+    /**
+     * read block to heap buffer, records of a block are not contiguous in the log.
+     */
+    @Override
+    public ByteBuffer readBlockBuffer(long roundNr) throws Exception {
+        byte[] data = readBlock(roundNr);
+        return data == null ? null : ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * the matching keys are collected by a scan of the index and sorted (the hash table has no order),
+     * the store is locked during the iteration.
+     */
+    @Override
+    public synchronized void readBlocks(long fromRound, long toRound, BlockVisitor visitor) throws Exception {
+        long[] keys = new long[16];
+        int found = 0;
+        for (long slot = 0; slot < table.capacity; slot++) {
+            if (table.isUsed(slot)) {
+                long key = table.getKey(slot);
+                if (key >= fromRound && key < toRound) {
+                    if (found == keys.length) {
+                        keys = Arrays.copyOf(keys, found * 2);
+                    }
+                    keys[found++] = key;
+                }
+            }
+        }
+        Arrays.sort(keys, 0, found);
+        for (int i = 0; i < found; i++) {
+            byte[] data = readBlockAt(table.getPosition(table.find(keys[i])));
+            if (!visitor.visit(keys[i], ByteBuffer.wrap(data).asReadOnlyBuffer())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * force written data to the device
+     *
+     * @throws IOException in case of IO errors
+     */
+    public synchronized void sync() throws IOException {
+        logChannel.force(false);
+    }
+
+    /**
+     * copy live blocks to a new log (one record per block), the old log and index are deleted.
+     * <p>
+     * done automatically if the dead space exceeds half of the log.
+     *
+     * @throws Exception in case of storage problem
+     */
+    public synchronized void compact() throws Exception {
+        int next = generation + 1;
+        FileChannel nextLog = FileChannel.open(new File(getLogPath(next)).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Table nextTable = Table.create(new File(getIndexPath(next)), table.capacity);
+        long position = 0;
+        for (long slot = 0; slot < table.capacity; slot++) {
+            if (table.isUsed(slot)) {
+                long key = table.getKey(slot);
+                byte[] data = readBlockAt(table.getPosition(slot));
+                writeRecord(nextLog, position, key, NO_RECORD, data, data.length, 1);
+                nextTable.set(nextTable.find(key), key, position);
+                position += HEADER_SIZE + data.length;
+            }
+        }
+        // new generation is complete before the old one is deleted
+        nextLog.force(true);
+        nextTable.force();
+        nextTable.writeHeader(STATE_CLEAN, count, storeSize, position, 0);
+        syncDirectory();
+
+        long oldSize = logSize;
+        table.close();
+        logChannel.close();
+        deleteGeneration(generation);
+        generation = next;
+        logChannel = nextLog;
+        table = nextTable;
+        logSize = position;
+        deadSize = 0;
+        table.writeHeader(STATE_OPEN, count, storeSize, logSize, deadSize);
+        LOG.info("compacted generation=" + generation + " log size " + oldSize + " -> " + logSize);
+    }
+
+    /**
+     * force data and mark the index clean, a restart does not read the log.
+     *
+     * @throws IOException in case of IO errors
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        logChannel.force(true);
+        // slots are forced before the header marks them valid
+        table.force();
+        table.writeHeader(STATE_CLEAN, count, storeSize, logSize, deadSize);
+        table.close();
+        logChannel.close();
+    }
+
+    private void compactIfWasteful() throws Exception {
+        if (logSize >= MIN_COMPACT_SIZE && deadSize * 2 > logSize) {
+            compact();
+        }
+    }
+
+    private static void checkKey(long key) {
+        Validate.isTrue(key >= 0 && key < MAX_KEY, "invalid key: " + key);
+    }
+
+    // slot of key, the table is grown before a new key is added
+    private long findForInsert(long key) throws IOException {
+        long slot = table.find(key);
+        if (!table.isUsed(slot) && (count + 1) * 2 > table.capacity) {
+            grow();
+            slot = table.find(key);
+        }
+        return slot;
+    }
+
+    // rehash to a table of double capacity, written as temp file and renamed
+    private void grow() throws IOException {
+        File file = new File(getIndexPath(generation));
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        Table larger = Table.create(temp, table.capacity * 2);
+        for (long slot = 0; slot < table.capacity; slot++) {
+            if (table.isUsed(slot)) {
+                long key = table.getKey(slot);
+                larger.set(larger.find(key), key, table.getPosition(slot));
+            }
+        }
+        table.close();
+        // the mapping stays valid after rename
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        table = larger;
+        LOG.debug("index capacity=" + table.capacity);
+    }
+
+    // size of all records of a chain
+    private static long getChainSize(ByteBuffer header) {
+        return (long) header.getInt(CHAIN_OFFSET) * HEADER_SIZE + header.getInt(TOTAL_OFFSET);
+    }
+
+    private byte[] readBlockAt(long position) throws IOException {
+        int total = readHeader(position).getInt(TOTAL_OFFSET);
+        byte[] data = new byte[total];
+        readChain(position, data, total);
+        return data;
+    }
+
+    // read the records of a chain backwards, the data of the last record ends at end
+    private void readChain(long position, byte[] data, int end) throws IOException {
+        long current = position;
+        int remaining = end;
+        while (current != NO_RECORD) {
+            ByteBuffer header = readHeader(current);
+            int length = header.getInt(LENGTH_OFFSET);
+            if (length > remaining) {
+                throw new IOException("invalid chain at position=" + current);
+            }
+            remaining -= length;
+            readFully(logChannel, ByteBuffer.wrap(data, remaining, length), current + HEADER_SIZE);
+            current = header.getLong(PREVIOUS_OFFSET);
+        }
+        if (remaining != 0) {
+            throw new IOException("incomplete chain at position=" + position);
+        }
+    }
+
+    private ByteBuffer readHeader(long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(logChannel, header, position);
+        if (header.getInt(0) != RECORD_MAGIC) {
+            throw new IOException("invalid record at position=" + position);
+        }
+        return header;
+    }
+
+    private static long writeRecord(FileChannel channel, long position, long key, long previous,
+                                    byte[] data, int total, int chain) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(RECORD_MAGIC).putLong(key).putLong(previous).putInt(data.length).putInt(total).putInt(chain);
+        header.putInt((int) crc.getValue());
+        header.flip();
+        writeFully(channel, new ByteBuffer[] {header, ByteBuffer.wrap(data)}, position);
+        return position;
+    }
+
+    private void open() throws Exception {
+        int[] generations = listGenerations();
+        if (generations.length == 0) {
+            generation = 0;
+        }
+        else {
+            generation = generations[generations.length - 1];
+            // newest generation is incomplete if compaction was interrupted
+            if (generations.length > 1 && !isClean(generation)) {
+                LOG.warn("removing incomplete generation=" + generation);
+                deleteGeneration(generation);
+                generation = generations[generations.length - 2];
+            }
+        }
+        deleteStaleFiles();
+        logChannel = FileChannel.open(new File(getLogPath(generation)).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!loadIndex()) {
+            rebuildIndex();
+        }
+        // a crash from now on requires a rebuild
+        table.writeHeader(STATE_OPEN, count, storeSize, logSize, deadSize);
+        LOG.info("opened generation=" + generation + " blocks=" + count + " size=" + storeSize + " log=" + logSize);
+    }
+
+    private boolean loadIndex() throws IOException {
+        File file = new File(getIndexPath(generation));
+        if (!isClean(generation)) {
+            return false;
+        }
+        try (RandomAccessFile index = new RandomAccessFile(file, "r")) {
+            index.seek(8);
+            long capacity = index.readLong();
+            index.seek(32);
+            long cleanLogSize = index.readLong();
+            if (Long.bitCount(capacity) != 1 || index.length() != INDEX_HEADER_SIZE + capacity * SLOT_SIZE
+                    || cleanLogSize != logChannel.size()) {
+                LOG.warn("index does not match log, generation=" + generation);
+                return false;
+            }
+        }
+        table = Table.open(file);
+        ByteBuffer header = table.header;
+        count = header.getLong(16);
+        storeSize = header.getLong(24);
+        logSize = header.getLong(32);
+        deadSize = header.getLong(40);
+        return true;
+    }
+
+    /**
+     * create the index by scanning all records of the log, an invalid tail is removed.
+     *
+     * @throws Exception in case of IO errors
+     */
+    private void rebuildIndex() throws Exception {
+        LOG.warn("rebuilding index of generation=" + generation);
+        table = Table.create(new File(getIndexPath(generation)), INITIAL_CAPACITY);
+        count = 0;
+        storeSize = 0;
+        deadSize = 0;
+        long size = logChannel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (offset + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(logChannel, header, offset);
+            long key = header.getLong(KEY_OFFSET);
+            long previous = header.getLong(PREVIOUS_OFFSET);
+            int length = header.getInt(LENGTH_OFFSET);
+            if (header.getInt(0) != RECORD_MAGIC || key < 0 || key >= MAX_KEY || length < 0 || offset + HEADER_SIZE + length > size) {
+                break;
+            }
+            byte[] data = new byte[length];
+            readFully(logChannel, ByteBuffer.wrap(data), offset + HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int) crc.getValue() != header.getInt(CRC_OFFSET)) {
+                break;
+            }
+            long slot = findForInsert(key);
+            boolean exists = table.isUsed(slot);
+            if (previous == NO_RECORD) {
+                if (exists) {
+                    ByteBuffer old = readHeader(table.getPosition(slot));
+                    deadSize += getChainSize(old);
+                    storeSize -= old.getInt(TOTAL_OFFSET);
+                }
+                else {
+                    count++;
+                }
+            }
+            else if (!exists || table.getPosition(slot) != previous) {
+                break;
+            }
+            table.set(slot, key, offset);
+            storeSize += length;
+            offset += HEADER_SIZE + length;
+        }
+        if (offset < size) {
+            // expected only after a crash during write
+            LOG.warn("removing invalid tail of log generation=" + generation + " offset=" + offset);
+            logChannel.truncate(offset);
+        }
+        logSize = offset;
+    }
+
+    private boolean isClean(int number) throws IOException {
+        File file = new File(getIndexPath(number));
+        if (file.length() < INDEX_HEADER_SIZE) {
+            return false;
+        }
+        try (RandomAccessFile index = new RandomAccessFile(file, "r")) {
+            return index.readInt() == INDEX_MAGIC && index.readInt() == STATE_CLEAN;
+        }
+    }
+
+    // generations with a log file, ascending
+    private int[] listGenerations() {
+        File[] files = new File(basePath).listFiles((dir, name) -> name.matches("[0-9]{6}\\" + LOG_SUFFIX));
+        if (files == null) {
+            return new int[0];
+        }
+        int[] generations = new int[files.length];
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i].getName();
+            generations[i] = Integer.parseInt(name.substring(0, name.length() - LOG_SUFFIX.length()));
+        }
+        Arrays.sort(generations);
+        return generations;
+    }
+
+    // files of other generations and temp files are left by an interrupted compaction or grow
+    private void deleteStaleFiles() throws IOException {
+        File log = new File(getLogPath(generation));
+        File index = new File(getIndexPath(generation));
+        File[] files = new File(basePath).listFiles((dir, name) -> name.matches("[0-9]{6}\\.(log|idx)(\\.tmp)?"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.equals(log) && !file.equals(index)) {
+                LOG.info("deleting stale file=" + file);
+                Files.delete(file.toPath());
+            }
+        }
+    }
+
+    private void deleteGeneration(int number) throws IOException {
+        Files.deleteIfExists(new File(getLogPath(number)).toPath());
+        Files.deleteIfExists(new File(getIndexPath(number)).toPath());
+    }
+
+    // make the entries of new files durable
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(new File(basePath).toPath(), StandardOpenOption.READ)) {
+            directory.force(true);
+        }
+        catch (IOException e) {
+            // not supported on all platforms (e.g. windows)
+            LOG.debug("directory sync failed: " + e);
+        }
+    }
+
+    private String getLogPath(int number) {
+        return basePath + SEP + String.format("%06d", number) + LOG_SUFFIX;
+    }
+
+    private String getIndexPath(int number) {
+        return basePath + SEP + String.format("%06d", number) + INDEX_SUFFIX;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new IOException("unexpected end of log at: " + current);
+            }
+            current += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers, long position) throws IOException {
+        long current = position;
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                current += channel.write(buffer, current);
+            }
+        }
+    }
+
+    /**
+     * open addressing hash table (linear probing) of key to record position in a memory mapped file.
+     * <p>
+     * the file is mapped in chunks, so the capacity is not limited by the size of a single mapping.
+     */
+    private static final class Table {
+
+        private FileChannel channel;
+        private MappedByteBuffer header;
+        private MappedByteBuffer[] chunks;
+        private long capacity;
+        private int chunkShift;
+
+        private Table(FileChannel channel, long capacity) throws IOException {
+            this.channel = channel;
+            this.capacity = capacity;
+            this.chunkShift = Math.min(Long.numberOfTrailingZeros(capacity), CHUNK_SHIFT);
+            long chunkSize = (long) SLOT_SIZE << chunkShift;
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE);
+            chunks = new MappedByteBuffer[(int) (capacity >>> chunkShift)];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, INDEX_HEADER_SIZE + i * chunkSize, chunkSize);
+            }
+        }
+
+        // new empty table, replaces an existing file
+        private static Table create(File file, long capacity) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(0);
+                raf.setLength(INDEX_HEADER_SIZE + capacity * SLOT_SIZE);
+            }
+            Table table = new Table(FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE), capacity);
+            table.header.putInt(0, INDEX_MAGIC);
+            table.header.putInt(4, STATE_OPEN);
+            table.header.putLong(8, capacity);
+            return table;
+        }
+
+        private static Table open(File file) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(16);
+            readFully(channel, header, 0);
+            return new Table(channel, header.getLong(8));
+        }
+
+        /**
+         * @param key key to find
+         * @return slot of key, or free slot to insert key
+         */
+        private long find(long key) {
+            long hash = key * HASH_MULTIPLIER;
+            long mask = capacity - 1;
+            long slot = (hash ^ (hash >>> 32)) & mask;
+            while (true) {
+                long stored = getChunk(slot).getLong(getOffset(slot));
+                if (stored == 0 || stored == key + 1) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private boolean isUsed(long slot) {
+            return getChunk(slot).getLong(getOffset(slot)) != 0;
+        }
+
+        private long getKey(long slot) {
+            return getChunk(slot).getLong(getOffset(slot)) - 1;
+        }
+
+        private long getPosition(long slot) {
+            return getChunk(slot).getLong(getOffset(slot) + 8);
+        }
+
+        private void set(long slot, long key, long position) {
+            MappedByteBuffer chunk = getChunk(slot);
+            int offset = getOffset(slot);
+            chunk.putLong(offset, key + 1);
+            chunk.putLong(offset + 8, position);
+        }
+
+        private void writeHeader(int state, long count, long storeSize, long logSize, long deadSize) {
+            header.putInt(4, state);
+            header.putLong(16, count);
+            header.putLong(24, storeSize);
+            header.putLong(32, logSize);
+            header.putLong(40, deadSize);
+            header.force();
+        }
+
+        private void force() {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+
+        private void close() throws IOException {
+            channel.close();
+        }
+
+        private MappedByteBuffer getChunk(long slot) {
+            return chunks[(int) (slot >>> chunkShift)];
+        }
+
+        private int getOffset(long slot) {
+            return (int) (slot & ((1L << chunkShift) - 1)) * SLOT_SIZE;
+        }
+    }
+}
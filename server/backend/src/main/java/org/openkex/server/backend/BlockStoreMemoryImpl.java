@@ -9,44 +9,77 @@ package org.openkex.server.backend;
 import org.openkex.tools.ByteArrayTool;
 import org.openkex.tools.Validate;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class BlockStoreMemoryImpl implements BlockStoreApi {
 
-    private HashMap<Long, byte[]> blocks;
+    // sorted for range reads
+    private TreeMap<Long, byte[]> blocks;
+    private long storeSize;
 
     public BlockStoreMemoryImpl() {
-        blocks = new HashMap<>();
+        blocks = new TreeMap<>();
     }
 
-    public long getBlockCount() {
+    public synchronized long getBlockCount() {
         return blocks.size();
     }
 
-    public long getStoreSize() {
-        long size = 0;
-        for (byte[] block : blocks.values()) {
-            size += block.length;
-        }
-        return size;
+    public synchronized long getStoreSize() {
+        return storeSize;
     }
 
     @Override
-    public boolean writeBlock(long roundNr, byte[] blockData) throws Exception {
+    public synchronized boolean writeBlock(long roundNr, byte[] blockData) throws Exception {
         Validate.notNull(blockData);
-        return blocks.put(roundNr, blockData) != null;
+        byte[] oldData = blocks.put(roundNr, blockData);
+        storeSize += blockData.length;
+        if (oldData != null) {
+            storeSize -= oldData.length;
+            return true;
+        }
+        return false;
     }
 
     @Override
-    public void appendBlock(long roundNr, byte[] blockData) throws Exception {
+    public synchronized void appendBlock(long roundNr, byte[] blockData) throws Exception {
         Validate.notNull(blockData);
         byte[] oldData = blocks.get(roundNr);
         Validate.notNull(oldData, "no block found with number=" + roundNr);
         blocks.put(roundNr, ByteArrayTool.add(oldData, blockData));
+        storeSize += blockData.length;
     }
 
     @Override
-    public byte[] readBlock(long roundNr) throws Exception {
+    public synchronized boolean hasBlock(long roundNr) throws Exception {
+        return blocks.containsKey(roundNr);
+    }
+
+    @Override
+    public synchronized byte[] readBlock(long roundNr) throws Exception {
         return blocks.get(roundNr);
     }
+
+    @Override
+    public synchronized ByteBuffer readBlockBuffer(long roundNr) throws Exception {
+        byte[] data = blocks.get(roundNr);
+        if (data == null) {
+            return null;
+        }
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    @Override
+    public synchronized void readBlocks(long fromRound, long toRound, BlockVisitor visitor) throws Exception {
+        if (fromRound >= toRound) {
+            return;
+        }
+        for (Map.Entry<Long, byte[]> entry : blocks.subMap(fromRound, toRound).entrySet()) {
+            if (!visitor.visit(entry.getKey(), ByteBuffer.wrap(entry.getValue()).asReadOnlyBuffer())) {
+                return;
+            }
+        }
+    }
 }
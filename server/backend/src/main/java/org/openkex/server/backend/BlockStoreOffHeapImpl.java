@@ -0,0 +1,348 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * memory block store that keeps the block data outside of the java heap.
+ * <p>
+ * blocks are stored in direct buffer slabs, each block gets a region of power of two capacity,
+ * so appends grow in place or move with amortized cost. released regions are kept in free lists per capacity,
+ * blocks that do not fit into half a slab get a dedicated buffer.
+ * <p>
+ * the round index is an open addressing hash table of primitive arrays (no boxing, no entry objects).
+ * the total allocated memory is limited, a write exceeding the limit fails and leaves the store unchanged.
+ */
+public class BlockStoreOffHeapImpl implements BlockStoreApi {
+
+    /** default size of a slab (1MB) */
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockStoreOffHeapImpl.class);
+
+    // smallest region is 2^6 = 64 bytes
+    private static final int MIN_SHIFT = 6;
+    // largest region is 2^30 = 1GB
+    private static final int MAX_SHIFT = 30;
+    private static final int INITIAL_TABLE_SIZE = 64;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private long memoryLimit;
+    private int slabShift;
+
+    // slabs and dedicated buffers, a region is encoded as (buffer << 32 | offset)
+    private ArrayList<ByteBuffer> buffers;
+    // indexes of freed dedicated buffers, reused by the next dedicated buffer
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int currentSlab = -1;
+    private int slabOffset;
+    // free regions per capacity shift
+    private long[][] freeRegions;
+    private int[] freeCounts;
+    private long allocatedMemory;
+
+    // hash table, a negative length marks a free slot
+    private long[] keys;
+    private long[] regions;
+    private int[] lengths;
+    private byte[] shifts;
+    private int count;
+    private long storeSize;
+
+    /**
+     * create store with default slab size
+     *
+     * @param memoryLimit maximum of allocated direct memory in bytes
+     */
+    public BlockStoreOffHeapImpl(long memoryLimit) {
+        this(memoryLimit, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * create store
+     *
+     * @param memoryLimit maximum of allocated direct memory in bytes
+     * @param slabSize size of slab buffers, must be a power of two
+     */
+    public BlockStoreOffHeapImpl(long memoryLimit, int slabSize) {
+        LOG.info("BlockStoreOffHeapImpl memoryLimit=" + memoryLimit + " slabSize=" + slabSize);
+        Validate.isTrue(Integer.bitCount(slabSize) == 1, "slab size is not a power of two: " + slabSize);
+        Validate.isTrue(slabSize >= 1 << MIN_SHIFT, "slab size too small: " + slabSize);
+        Validate.isTrue(memoryLimit > 0, "invalid memory limit: " + memoryLimit);
+        this.memoryLimit = memoryLimit;
+        this.slabShift = Integer.numberOfTrailingZeros(slabSize);
+        this.buffers = new ArrayList<>();
+        this.freeRegions = new long[slabShift][];
+        this.freeCounts = new int[slabShift];
+        initTable(INITIAL_TABLE_SIZE);
+    }
+
+    @Override
+    public synchronized long getBlockCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized long getStoreSize() {
+        return storeSize;
+    }
+
+    /**
+     * @return direct memory allocated for slabs and dedicated buffers
+     */
+    public synchronized long getAllocatedMemory() {
+        return allocatedMemory;
+    }
+
+    /**
+     * @return number of buffer slots (slabs and dedicated buffers, including freed slots)
+     */
+    public synchronized int getBufferCount() {
+        return buffers.size();
+    }
+
+    @Override
+    public synchronized boolean writeBlock(long roundNr, byte[] blockData) throws Exception {
+        Validate.notNull(blockData);
+        int shift = getShift(blockData.length);
+        int slot = findSlot(roundNr);
+        boolean exists = lengths[slot] >= 0;
+        long region;
+        if (exists && shifts[slot] == shift) {
+            // same capacity, overwrite in place
+            region = regions[slot];
+        }
+        else {
+            region = allocate(shift);
+            if (exists) {
+                release(regions[slot], shifts[slot]);
+            }
+        }
+        getView(region, 0, blockData.length).put(blockData);
+        if (exists) {
+            storeSize -= lengths[slot];
+        }
+        else {
+            keys[slot] = roundNr;
+            count++;
+        }
+        regions[slot] = region;
+        shifts[slot] = (byte) shift;
+        lengths[slot] = blockData.length;
+        storeSize += blockData.length;
+        if (count > keys.length / 2) {
+            initTable(keys.length * 2);
+        }
+        return exists;
+    }
+
+    @Override
+    public synchronized void appendBlock(long roundNr, byte[] blockData) throws Exception {
+        Validate.notNull(blockData);
+        int slot = findSlot(roundNr);
+        int oldLength = lengths[slot];
+        Validate.isTrue(oldLength >= 0, "no block found with number=" + roundNr);
+        long newLength = (long) oldLength + blockData.length;
+        Validate.isTrue(newLength <= 1 << MAX_SHIFT, "block too large: " + newLength);
+        if (newLength > 1 << shifts[slot]) {
+            // move to region of (at least) double capacity
+            int shift = getShift((int) newLength);
+            long region = allocate(shift);
+            getView(region, 0, oldLength).put(getView(regions[slot], 0, oldLength));
+            release(regions[slot], shifts[slot]);
+            regions[slot] = region;
+            shifts[slot] = (byte) shift;
+        }
+        getView(regions[slot], oldLength, blockData.length).put(blockData);
+        lengths[slot] = (int) newLength;
+        storeSize += blockData.length;
+    }
+
+    @Override
+    public synchronized boolean hasBlock(long roundNr) {
+        return lengths[findSlot(roundNr)] >= 0;
+    }
+
+    @Override
+    public synchronized byte[] readBlock(long roundNr) throws Exception {
+        int slot = findSlot(roundNr);
+        if (lengths[slot] < 0) {
+            return null;
+        }
+        byte[] data = new byte[lengths[slot]];
+        getView(regions[slot], 0, data.length).get(data);
+        return data;
+    }
+
+    /**
+     * read block as view of the direct buffer (no copy to heap).
+     */
+    @Override
+    public synchronized ByteBuffer readBlockBuffer(long roundNr) throws Exception {
+        int slot = findSlot(roundNr);
+        if (lengths[slot] < 0) {
+            return null;
+        }
+        return getView(regions[slot], 0, lengths[slot]).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * visit the blocks as views of the direct buffers. the matching rounds are collected and sorted
+     * (the hash table has no order), the store is locked during the iteration.
+     */
+    @Override
+    public synchronized void readBlocks(long fromRound, long toRound, BlockVisitor visitor) throws Exception {
+        long[] rounds = new long[16];
+        int found = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (lengths[slot] >= 0 && keys[slot] >= fromRound && keys[slot] < toRound) {
+                if (found == rounds.length) {
+                    rounds = Arrays.copyOf(rounds, found * 2);
+                }
+                rounds[found++] = keys[slot];
+            }
+        }
+        Arrays.sort(rounds, 0, found);
+        for (int i = 0; i < found; i++) {
+            int slot = findSlot(rounds[i]);
+            if (!visitor.visit(rounds[i], getView(regions[slot], 0, lengths[slot]).slice().asReadOnlyBuffer())) {
+                return;
+            }
+        }
+    }
+
+    private ByteBuffer getView(long region, int offset, int length) {
+        ByteBuffer view = buffers.get((int) (region >>> 32)).duplicate();
+        int start = (int) region + offset;
+        view.limit(start + length);
+        view.position(start);
+        return view;
+    }
+
+    private static int getShift(int length) {
+        Validate.isTrue(length <= 1 << MAX_SHIFT, "block too large: " + length);
+        if (length <= 1 << MIN_SHIFT) {
+            return MIN_SHIFT;
+        }
+        return 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    private long allocate(int shift) {
+        int size = 1 << shift;
+        if (shift >= slabShift) {
+            reserve(size);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+            if (freeSlotCount > 0) {
+                int slot = freeSlots[--freeSlotCount];
+                buffers.set(slot, buffer);
+                return (long) slot << 32;
+            }
+            buffers.add(buffer);
+            return (long) (buffers.size() - 1) << 32;
+        }
+        if (freeCounts[shift] > 0) {
+            freeCounts[shift]--;
+            return freeRegions[shift][freeCounts[shift]];
+        }
+        if (currentSlab < 0 || slabOffset + size > 1 << slabShift) {
+            reserve(1 << slabShift);
+            if (currentSlab >= 0) {
+                releaseSlabRemainder();
+            }
+            buffers.add(ByteBuffer.allocateDirect(1 << slabShift));
+            currentSlab = buffers.size() - 1;
+            slabOffset = 0;
+        }
+        long region = ((long) currentSlab << 32) | slabOffset;
+        slabOffset += size;
+        return region;
+    }
+
+    private void reserve(long size) {
+        if (allocatedMemory + size > memoryLimit) {
+            throw new RuntimeException("memory limit exceeded. limit=" + memoryLimit + " allocated=" + allocatedMemory + " requested=" + size);
+        }
+        allocatedMemory += size;
+    }
+
+    // the unused end of the current slab is split into free regions
+    private void releaseSlabRemainder() {
+        int remaining = (1 << slabShift) - slabOffset;
+        while (remaining >= 1 << MIN_SHIFT) {
+            int size = Integer.highestOneBit(remaining);
+            release(((long) currentSlab << 32) | slabOffset, Integer.numberOfTrailingZeros(size));
+            slabOffset += size;
+            remaining -= size;
+        }
+    }
+
+    private void release(long region, int shift) {
+        if (shift >= slabShift) {
+            // dedicated buffer, memory is freed by garbage collection
+            int slot = (int) (region >>> 32);
+            buffers.set(slot, null);
+            if (freeSlotCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+            }
+            freeSlots[freeSlotCount++] = slot;
+            allocatedMemory -= 1 << shift;
+            return;
+        }
+        long[] free = freeRegions[shift];
+        if (free == null) {
+            free = new long[16];
+        }
+        else if (freeCounts[shift] == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        freeRegions[shift] = free;
+        free[freeCounts[shift]++] = region;
+    }
+
+    private int findSlot(long roundNr) {
+        int mask = keys.length - 1;
+        long hash = roundNr * HASH_MULTIPLIER;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (lengths[slot] >= 0 && keys[slot] != roundNr) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // create table of given size and insert existing entries
+    private void initTable(int size) {
+        long[] oldKeys = keys;
+        long[] oldRegions = regions;
+        int[] oldLengths = lengths;
+        byte[] oldShifts = shifts;
+        keys = new long[size];
+        regions = new long[size];
+        lengths = new int[size];
+        shifts = new byte[size];
+        Arrays.fill(lengths, -1);
+        if (oldKeys == null) {
+            return;
+        }
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldLengths[i] >= 0) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                regions[slot] = oldRegions[i];
+                lengths[slot] = oldLengths[i];
+                shifts[slot] = oldShifts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,613 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * block store that appends blocks to large pre-allocated segment files.
+ * <p>
+ * each block is written as record (header + data) at the end of the current segment,
+ * a new segment is started if the record does not fit. writes are strictly sequential,
+ * an update (or append) writes a new record, the previous record remains as dead space in the log.
+ * <p>
+ * the round to (segment, offset, length) index is kept in memory and rebuilt by scanning the
+ * record headers when the store is opened. block count and store size are maintained as counters.
+ * the index is a sorted array, made for ascending rounds. sparse keys in random order (e.g. kexIds) use {@link BlockStoreHashImpl}.
+ * <p>
+ * durability is defined by the {@link SyncPolicy}. forcing is done outside of the store lock by one thread
+ * for all writes completed so far (group commit), other writers continue and are covered by the next force.
+ */
+public class BlockStoreSegmentImpl implements BlockStoreApi, Closeable {
+
+    /** default size of a segment file (64MB) */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockStoreSegmentImpl.class);
+
+    // path separator. working also on windows (java apis fix this)
+    private static final String SEP = "/";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // record header: magic(4) roundNr(8) length(4) crc32(4)
+    private static final int HEADER_SIZE = 20;
+    // "KEXB", a zero value marks the (pre-allocated) end of a segment
+    private static final int RECORD_MAGIC = 0x4B455842;
+
+    // offset is limited to 40 bits (1TB), segment number uses the remaining bits
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private String basePath;
+    private int segmentSize;
+
+    private ArrayList<FileChannel> segments;
+    // read only mapping of segments, created on first buffer read
+    private ArrayList<MappedByteBuffer> mappedSegments;
+    // write position in last segment
+    private long writeOffset;
+
+    private Index index;
+    private long storeSize;
+
+    private SyncPolicy syncPolicy;
+    private ScheduledExecutorService syncService;
+    // lock of force operation, taken before the store lock
+    private final Object syncLock = new Object();
+    // number of completed writes (store lock)
+    private long writeSequence;
+    // first segment written since last force, -1 if none (store lock)
+    private int firstDirtySegment = -1;
+    // last round written (store lock)
+    private long lastRound = -1;
+    // number of writes known to be forced (sync lock)
+    private long syncedSequence;
+    // number of force operations (sync lock)
+    private long syncCount;
+
+    /**
+     * create store with default segment size
+     *
+     * @param basePath directory of segment files, created if missing
+     * @throws Exception in case of storage problem
+     */
+    public BlockStoreSegmentImpl(String basePath) throws Exception {
+        this(basePath, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * create store
+     *
+     * @param basePath directory of segment files, created if missing
+     * @param segmentSize size of newly allocated segment files
+     * @throws Exception in case of storage problem
+     */
+    public BlockStoreSegmentImpl(String basePath, int segmentSize) throws Exception {
+        this(basePath, segmentSize, SyncPolicy.NONE, 0);
+    }
+
+    /**
+     * create store
+     *
+     * @param basePath directory of segment files, created if missing
+     * @param segmentSize size of newly allocated segment files
+     * @param syncPolicy policy to force written data to the device
+     * @param syncInterval interval in milliseconds for {@link SyncPolicy#INTERVAL}, ignored otherwise
+     * @throws Exception in case of storage problem
+     */
+    public BlockStoreSegmentImpl(String basePath, int segmentSize, SyncPolicy syncPolicy, long syncInterval) throws Exception {
+        LOG.info("BlockStoreSegmentImpl path=" + basePath + " segmentSize=" + segmentSize + " syncPolicy=" + syncPolicy);
+        Validate.isTrue(segmentSize > HEADER_SIZE, "segment size too small: " + segmentSize);
+        Validate.notNull(syncPolicy);
+        Validate.isTrue(syncPolicy != SyncPolicy.INTERVAL || syncInterval > 0, "invalid sync interval: " + syncInterval);
+        this.basePath = basePath;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        this.segments = new ArrayList<>();
+        this.mappedSegments = new ArrayList<>();
+        this.index = new Index();
+
+        File base = new File(basePath);
+        if (!base.exists()) {
+            LOG.info("creating dir=" + basePath);
+            Validate.isTrue(base.mkdirs());
+        }
+        else if (!base.canWrite()) {
+            throw new RuntimeException("cannot write to: " + basePath);
+        }
+        openSegments();
+        if (syncPolicy == SyncPolicy.INTERVAL) {
+            syncService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "BlockStoreSync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncService.scheduleWithFixedDelay(this::syncInterval, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized long getBlockCount() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized long getStoreSize() {
+        return storeSize;
+    }
+
+    @Override
+    public boolean writeBlock(long roundNr, byte[] blockData) throws Exception {
+        Validate.notNull(blockData);
+        Validate.isTrue(roundNr >= 0, "invalid round: " + roundNr);
+        boolean exists;
+        boolean newRound;
+        long sequence;
+        synchronized (this) {
+            newRound = roundNr != lastRound;
+            exists = writeRecord(roundNr, blockData);
+            sequence = writeSequence;
+        }
+        afterWrite(sequence, newRound);
+        return exists;
+    }
+
+    @Override
+    public void appendBlock(long roundNr, byte[] blockData) throws Exception {
+        Validate.notNull(blockData);
+        boolean newRound;
+        long sequence;
+        synchronized (this) {
+            byte[] oldData = readBlock(roundNr);
+            Validate.notNull(oldData, "cannot append to missing block: " + roundNr);
+            // log structured: the combined block is written as new record
+            byte[] data = new byte[oldData.length + blockData.length];
+            System.arraycopy(oldData, 0, data, 0, oldData.length);
+            System.arraycopy(blockData, 0, data, oldData.length, blockData.length);
+            newRound = roundNr != lastRound;
+            writeRecord(roundNr, data);
+            sequence = writeSequence;
+        }
+        afterWrite(sequence, newRound);
+    }
+
+    @Override
+    public synchronized boolean hasBlock(long roundNr) {
+        return index.find(roundNr) >= 0;
+    }
+
+    @Override
+    public synchronized byte[] readBlock(long roundNr) throws Exception {
+        int pos = index.find(roundNr);
+        if (pos < 0) {
+            return null;
+        }
+        long position = index.getPosition(pos);
+        byte[] data = new byte[index.getLength(pos)];
+        FileChannel channel = segments.get(getSegment(position));
+        readFully(channel, ByteBuffer.wrap(data), getOffset(position) + HEADER_SIZE);
+        return data;
+    }
+
+    /**
+     * read block as view of the memory mapped segment (no copy to heap).
+     * <p>
+     * Note: the mapping is released by garbage collection only, on windows the segment cannot be deleted while it is mapped.
+     */
+    @Override
+    public synchronized ByteBuffer readBlockBuffer(long roundNr) throws Exception {
+        int pos = index.find(roundNr);
+        if (pos < 0) {
+            return null;
+        }
+        return getBuffer(pos);
+    }
+
+    /**
+     * visit the blocks as views of the memory mapped segments, the store is locked during the iteration.
+     */
+    @Override
+    public synchronized void readBlocks(long fromRound, long toRound, BlockVisitor visitor) throws Exception {
+        int pos = index.find(fromRound);
+        if (pos < 0) {
+            pos = -(pos + 1);
+        }
+        for (; pos < index.size() && index.getRound(pos) < toRound; pos++) {
+            if (!visitor.visit(index.getRound(pos), getBuffer(pos))) {
+                return;
+            }
+        }
+    }
+
+    private ByteBuffer getBuffer(int pos) throws IOException {
+        long position = index.getPosition(pos);
+        int segment = getSegment(position);
+        MappedByteBuffer mapped = mappedSegments.get(segment);
+        if (mapped == null) {
+            FileChannel channel = segments.get(segment);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mappedSegments.set(segment, mapped);
+        }
+        ByteBuffer view = mapped.duplicate();
+        int start = (int) getOffset(position) + HEADER_SIZE;
+        view.limit(start + index.getLength(pos));
+        view.position(start);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * force all completed writes to the device, independent of the sync policy.
+     *
+     * @throws IOException in case of IO errors
+     */
+    public void sync() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = writeSequence;
+        }
+        syncTo(sequence);
+    }
+
+    /**
+     * @return number of force operations done so far
+     */
+    public long getSyncCount() {
+        synchronized (syncLock) {
+            return syncCount;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncService != null) {
+            syncService.shutdown();
+            try {
+                // a running interval sync must finish before the segments are closed
+                syncService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for sync", e);
+            }
+        }
+        if (syncPolicy != SyncPolicy.NONE) {
+            sync();
+        }
+        synchronized (this) {
+            closeSegments();
+        }
+    }
+
+    private void closeSegments() throws IOException {
+        for (FileChannel channel : segments) {
+            channel.close();
+        }
+        segments.clear();
+        mappedSegments.clear();
+    }
+
+    private boolean writeRecord(long roundNr, byte[] blockData) throws Exception {
+        int recordSize = HEADER_SIZE + blockData.length;
+        if (segments.isEmpty() || writeOffset + recordSize > segments.get(segments.size() - 1).size()) {
+            addSegment(recordSize);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(blockData);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(RECORD_MAGIC).putLong(roundNr).putInt(blockData.length).putInt((int) crc.getValue());
+        header.flip();
+
+        int segment = segments.size() - 1;
+        FileChannel channel = segments.get(segment);
+        writeFully(channel, new ByteBuffer[] {header, ByteBuffer.wrap(blockData)}, writeOffset);
+        long position = ((long) segment << OFFSET_BITS) | writeOffset;
+        writeOffset += recordSize;
+        if (firstDirtySegment < 0) {
+            firstDirtySegment = segment;
+        }
+        lastRound = roundNr;
+        writeSequence++;
+        return updateIndex(roundNr, position, blockData.length);
+    }
+
+    private void afterWrite(long sequence, boolean newRound) throws IOException {
+        if (syncPolicy == SyncPolicy.PER_WRITE || (syncPolicy == SyncPolicy.PER_ROUND && newRound)) {
+            syncTo(sequence);
+        }
+    }
+
+    private void syncInterval() {
+        try {
+            sync();
+        }
+        catch (Exception e) {
+            // keep the scheduled task alive, next interval will retry
+            LOG.error("sync failed", e);
+        }
+    }
+
+    /**
+     * force writes up to sequence. a thread that has to wait for the sync lock finds its write
+     * forced already or forces all writes completed in the meantime with a single call.
+     *
+     * @param sequence write sequence that must be forced
+     * @throws IOException in case of IO errors
+     */
+    private void syncTo(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            long target;
+            int from;
+            List<FileChannel> dirty;
+            synchronized (this) {
+                target = writeSequence;
+                from = firstDirtySegment;
+                if (from < 0 || segments.isEmpty()) {
+                    dirty = new ArrayList<>();
+                }
+                else {
+                    dirty = new ArrayList<>(segments.subList(from, segments.size()));
+                }
+                // writes during the force mark their segment again
+                firstDirtySegment = -1;
+            }
+            try {
+                // data is written to pre-allocated space, file size and metadata are forced on segment creation
+                for (FileChannel channel : dirty) {
+                    force(channel);
+                }
+            }
+            catch (IOException e) {
+                // keep the segments dirty, next sync retries
+                synchronized (this) {
+                    if (from >= 0 && (firstDirtySegment < 0 || from < firstDirtySegment)) {
+                        firstDirtySegment = from;
+                    }
+                }
+                throw e;
+            }
+            syncCount++;
+            syncedSequence = target;
+        }
+    }
+
+    /**
+     * force data of a segment to the device
+     *
+     * @param channel channel of segment
+     * @throws IOException in case of IO errors
+     */
+    protected void force(FileChannel channel) throws IOException {
+        channel.force(false);
+    }
+
+    private boolean updateIndex(long roundNr, long position, int length) {
+        int pos = index.find(roundNr);
+        if (pos >= 0) {
+            storeSize += length - index.getLength(pos);
+            index.set(pos, position, length);
+            return true;
+        }
+        index.insert(-(pos + 1), roundNr, position, length);
+        storeSize += length;
+        return false;
+    }
+
+    // start new segment, large records get a segment that fits exactly
+    private void addSegment(int recordSize) throws IOException {
+        int number = segments.size();
+        RandomAccessFile file = new RandomAccessFile(getSegmentPath(number), "rw");
+        file.setLength(Math.max(segmentSize, recordSize));
+        if (syncPolicy != SyncPolicy.NONE) {
+            file.getChannel().force(true);
+            syncDirectory();
+        }
+        segments.add(file.getChannel());
+        mappedSegments.add(null);
+        writeOffset = 0;
+        LOG.debug("added segment=" + number);
+    }
+
+    // make the entry of a new segment file durable
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(new File(basePath).toPath(), StandardOpenOption.READ)) {
+            directory.force(true);
+        }
+        catch (IOException e) {
+            // not supported on all platforms (e.g. windows)
+            LOG.debug("directory sync failed: " + e);
+        }
+    }
+
+    private void openSegments() throws Exception {
+        int number = 0;
+        while (true) {
+            File file = new File(getSegmentPath(number));
+            if (!file.exists()) {
+                break;
+            }
+            mappedSegments.add(null);
+            segments.add(new RandomAccessFile(file, "rw").getChannel());
+            number++;
+        }
+        for (int segment = 0; segment < segments.size(); segment++) {
+            // only the last (active) segment may contain a partially written record
+            boolean active = segment == segments.size() - 1;
+            writeOffset = scanSegment(segment, active);
+        }
+        LOG.info("opened segments=" + segments.size() + " blocks=" + index.size() + " size=" + storeSize);
+    }
+
+    /**
+     * read all record headers of a segment and add them to the index.
+     *
+     * @param segment number of segment
+     * @param active if true the record data is validated with the crc, an invalid tail is removed
+     * @return offset after last valid record
+     * @throws Exception in case of IO errors
+     */
+    private long scanSegment(int segment, boolean active) throws Exception {
+        FileChannel channel = segments.get(segment);
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (offset + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, offset);
+            header.flip();
+            int magic = header.getInt();
+            if (magic == 0) {
+                return offset; // end of written data
+            }
+            long roundNr = header.getLong();
+            int length = header.getInt();
+            int crcValue = header.getInt();
+            if (magic != RECORD_MAGIC || length < 0 || offset + HEADER_SIZE + length > size) {
+                break;
+            }
+            if (active) {
+                byte[] data = new byte[length];
+                readFully(channel, ByteBuffer.wrap(data), offset + HEADER_SIZE);
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                if ((int) crc.getValue() != crcValue) {
+                    break;
+                }
+            }
+            updateIndex(roundNr, ((long) segment << OFFSET_BITS) | offset, length);
+            offset += HEADER_SIZE + length;
+        }
+        if (offset + HEADER_SIZE <= size) {
+            // found invalid record, this is expected only after a crash during write
+            Validate.isTrue(active, "invalid record in segment=" + segment + " offset=" + offset);
+            LOG.warn("removing invalid tail of segment=" + segment + " offset=" + offset);
+            // truncate and extend again, the new tail is filled with zero
+            channel.truncate(offset);
+            writeFully(channel, new ByteBuffer[] {ByteBuffer.allocate(1)}, size - 1);
+        }
+        return offset;
+    }
+
+    private String getSegmentPath(int number) {
+        return basePath + SEP + String.format("%06d", number) + SEGMENT_SUFFIX;
+    }
+
+    private static int getSegment(long position) {
+        return (int) (position >>> OFFSET_BITS);
+    }
+
+    private static long getOffset(long position) {
+        return position & OFFSET_MASK;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new IOException("unexpected end of segment at: " + current);
+            }
+            current += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers, long position) throws IOException {
+        long current = position;
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                current += channel.write(buffer, current);
+            }
+        }
+    }
+
+    /**
+     * compact index round to (position, length), sorted by round.
+     * <p>
+     * rounds are usually written in ascending order, so an insert is usually an append.
+     * position holds segment number and offset of the record.
+     */
+    private static class Index {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] rounds = new long[INITIAL_CAPACITY];
+        private long[] positions = new long[INITIAL_CAPACITY];
+        private int[] lengths = new int[INITIAL_CAPACITY];
+        private int size;
+
+        private int size() {
+            return size;
+        }
+
+        /**
+         * @param roundNr round to find
+         * @return index of round or (-(insertion point) - 1) if not found, see Arrays.binarySearch
+         */
+        private int find(long roundNr) {
+            // fast path for ascending rounds
+            if (size == 0 || rounds[size - 1] < roundNr) {
+                return -(size + 1);
+            }
+            return Arrays.binarySearch(rounds, 0, size, roundNr);
+        }
+
+        private void insert(int pos, long roundNr, long position, int length) {
+            if (size == rounds.length) {
+                int capacity = rounds.length * 2;
+                rounds = Arrays.copyOf(rounds, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            if (pos < size) {
+                System.arraycopy(rounds, pos, rounds, pos + 1, size - pos);
+                System.arraycopy(positions, pos, positions, pos + 1, size - pos);
+                System.arraycopy(lengths, pos, lengths, pos + 1, size - pos);
+            }
+            rounds[pos] = roundNr;
+            size++;
+            set(pos, position, length);
+        }
+
+        private void set(int pos, long position, int length) {
+            positions[pos] = position;
+            lengths[pos] = length;
+        }
+
+        private long getRound(int pos) {
+            return rounds[pos];
+        }
+
+        private long getPosition(int pos) {
+            return positions[pos];
+        }
+
+        private int getLength(int pos) {
+            return lengths[pos];
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import java.nio.ByteBuffer;
+
+/**
+ * receives blocks of a range read.
+ */
+public interface BlockVisitor {
+
+    /**
+     * visit block
+     *
+     * @param roundNr round of block
+     * @param blockData read only buffer with block data, only valid during the call
+     * @return true to continue, false to stop the iteration
+     * @throws Exception to abort the iteration
+     */
+    boolean visit(long roundNr, ByteBuffer blockData) throws Exception;
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.tools.Validate;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * concurrent map with primitive long key and bounded size.
+ * <p>
+ * the keys are distributed to stripes, each stripe is an open addressing hash table of immutable entries.
+ * reads are lock free (volatile read of table and entry), updates lock the stripe of the key only.
+ * values should be immutable, an update publishes a new value (copy on write).
+ * <p>
+ * if a stripe exceeds its size limit it is rebuilt with the entries read since the last rebuild first,
+ * a quarter of the entries is evicted (clock like approximation of least recently used).
+ *
+ * @param <V> value type
+ */
+public class ConcurrentLongCache<V> {
+
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    private Stripe<V>[] stripes;
+    private int stripeMask;
+
+    /**
+     * update function, called with the stripe locked
+     *
+     * @param <V> value type
+     */
+    public interface Update<V> {
+
+        /**
+         * calculate new value
+         *
+         * @param key considered key
+         * @param value current value, null if absent
+         * @return new value, null to keep the current state
+         * @throws Exception in case of problem, the map is not changed
+         */
+        V apply(long key, V value) throws Exception;
+    }
+
+    /**
+     * create map
+     *
+     * @param maxSize maximum number of entries, each stripe is limited to its share
+     * @param stripeCount number of stripes (power of two)
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongCache(int maxSize, int stripeCount) {
+        Validate.isTrue(Integer.bitCount(stripeCount) == 1, "stripe count is not a power of two: " + stripeCount);
+        Validate.isTrue(maxSize >= stripeCount, "max size must be at least stripe count: " + maxSize);
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(maxSize / stripeCount);
+        }
+        stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * get value without locking
+     *
+     * @param key considered key
+     * @return value, null if absent
+     */
+    public V get(long key) {
+        long hash = hash(key);
+        AtomicReferenceArray<Entry<V>> table = getStripe(hash).table;
+        int mask = table.length() - 1;
+        int slot = (int) hash & mask;
+        while (true) {
+            Entry<V> entry = table.get(slot);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.key == key) {
+                if (!entry.referenced) {
+                    // racy write is fine, used as eviction hint only
+                    entry.referenced = true;
+                }
+                return entry.value;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * update value with the stripe of the key locked.
+     * <p>
+     * a reader does not see the new value before the update returned.
+     *
+     * @param key considered key
+     * @param update function calculating the new value
+     * @return value after the update (null if absent)
+     * @throws Exception if thrown by update
+     */
+    public V compute(long key, Update<V> update) throws Exception {
+        long hash = hash(key);
+        Stripe<V> stripe = getStripe(hash);
+        synchronized (stripe) {
+            int slot = stripe.find(key, hash);
+            Entry<V> old = stripe.table.get(slot);
+            V oldValue = old == null ? null : old.value;
+            V value = update.apply(key, oldValue);
+            if (value == null || value == oldValue) {
+                return oldValue;
+            }
+            if (old == null) {
+                if (stripe.size >= stripe.maxSize) {
+                    stripe.evict();
+                    slot = stripe.find(key, hash);
+                }
+                else if ((stripe.size + 1) * 2 > stripe.table.length()) {
+                    stripe.rebuild(stripe.table.length() * 2, stripe.size);
+                    slot = stripe.find(key, hash);
+                }
+                stripe.size++;
+            }
+            stripe.table.set(slot, new Entry<>(key, value));
+            return value;
+        }
+    }
+
+    /**
+     * @return number of entries
+     */
+    public long size() {
+        long size = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return number of evicted entries
+     */
+    public long getEvictions() {
+        long evictions = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                evictions += stripe.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    private static long hash(long key) {
+        long hash = key * HASH_MULTIPLIER;
+        return hash ^ (hash >>> 29);
+    }
+
+    private Stripe<V> getStripe(long hash) {
+        return stripes[(int) (hash >>> 40) & stripeMask];
+    }
+
+    private static final class Entry<V> {
+
+        private final long key;
+        private final V value;
+        // set on read, cleared on rebuild
+        private boolean referenced = true;
+
+        private Entry(long key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class Stripe<V> {
+
+        // replaced on rebuild, readers use the table they got
+        private volatile AtomicReferenceArray<Entry<V>> table;
+        private int size;
+        private int maxSize;
+        private long evictions;
+
+        private Stripe(int maxSize) {
+            this.maxSize = Math.max(maxSize, 1);
+            this.table = new AtomicReferenceArray<>(INITIAL_TABLE_SIZE);
+        }
+
+        // slot of key or free slot for insert
+        private int find(long key, long hash) {
+            int mask = table.length() - 1;
+            int slot = (int) hash & mask;
+            while (true) {
+                Entry<V> entry = table.get(slot);
+                if (entry == null || entry.key == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        // keep three quarters of max size, referenced entries first
+        private void evict() {
+            int keep = maxSize - Math.max(maxSize / 4, 1);
+            rebuild(table.length(), keep);
+            evictions += size - keep;
+            size = keep;
+        }
+
+        // create new table with (at most) keep entries, the old table remains valid for readers
+        private void rebuild(int tableSize, int keep) {
+            AtomicReferenceArray<Entry<V>> old = table;
+            AtomicReferenceArray<Entry<V>> copy = new AtomicReferenceArray<>(tableSize);
+            int mask = tableSize - 1;
+            int count = 0;
+            // first pass referenced entries, second pass others
+            for (int pass = 0; pass < 2 && count < keep; pass++) {
+                for (int i = 0; i < old.length() && count < keep; i++) {
+                    Entry<V> entry = old.get(i);
+                    if (entry == null || entry.referenced != (pass == 0)) {
+                        continue;
+                    }
+                    int slot = (int) hash(entry.key) & mask;
+                    while (copy.get(slot) != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    copy.set(slot, entry);
+                    count++;
+                }
+            }
+            for (int i = 0; i < tableSize; i++) {
+                Entry<V> entry = copy.get(i);
+                if (entry != null) {
+                    entry.referenced = false;
+                }
+            }
+            table = copy;
+        }
+    }
+}
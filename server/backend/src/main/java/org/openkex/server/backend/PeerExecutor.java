@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.server.api.ServerApi;
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * calls all other servers in parallel.
+ * <p>
+ * uses a bounded pool of daemon threads (idle threads terminate). the calls of a phase share a deadline,
+ * servers that fail or do not answer in time are missing in the result (partial result).
+ */
+public class PeerExecutor {
+
+    /** default maximum number of threads */
+    public static final int DEFAULT_THREADS = 32;
+    /** default timeout of peer calls in milliseconds */
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(PeerExecutor.class);
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private ServerRegistry registry;
+    private ThreadPoolExecutor executor;
+    private long timeout;
+
+    /**
+     * call to a single server
+     *
+     * @param <T> result type
+     */
+    public interface PeerCall<T> {
+
+        /**
+         * call server
+         *
+         * @param api proxy of server
+         * @return result
+         * @throws Exception in case of call problem
+         */
+        T call(ServerApi api) throws Exception;
+    }
+
+    /**
+     * create executor
+     *
+     * @param registry registry of all servers
+     * @param threads maximum number of parallel calls
+     * @param timeout timeout of calls in milliseconds
+     */
+    public PeerExecutor(ServerRegistry registry, int threads, long timeout) {
+        Validate.isTrue(threads > 0, "invalid thread count: " + threads);
+        Validate.isTrue(timeout > 0, "invalid timeout: " + timeout);
+        this.registry = registry;
+        this.timeout = timeout;
+        String prefix = "peer-" + POOL_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param timeout timeout of calls in milliseconds
+     */
+    public void setTimeout(long timeout) {
+        Validate.isTrue(timeout > 0, "invalid timeout: " + timeout);
+        this.timeout = timeout;
+    }
+
+    /**
+     * call all servers except own server in parallel
+     *
+     * @param ownServerId id of own server (skipped)
+     * @param name name of call for logging
+     * @param call call to execute
+     * @param <T> result type
+     * @return results of successful calls (value may be null) in order of registry
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public <T> LinkedHashMap<ServerData, T> callAll(String ownServerId, String name, PeerCall<T> call) throws InterruptedException {
+        List<ServerData> servers = new ArrayList<>();
+        List<Future<T>> futures = new ArrayList<>();
+        for (ServerData server : registry.getAllServers()) {
+            if (server.getServerId().equals(ownServerId)) {
+                continue;
+            }
+            servers.add(server);
+            futures.add(executor.submit(() -> call.call(registry.getProxy(server.getServerId()))));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        LinkedHashMap<ServerData, T> results = new LinkedHashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            String serverId = servers.get(i).getServerId();
+            Future<T> future = futures.get(i);
+            try {
+                results.put(servers.get(i), future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+            }
+            catch (TimeoutException e) {
+                future.cancel(true);
+                LOG.warn(name + " timeout. serverId=" + serverId);
+            }
+            catch (ExecutionException e) {
+                LOG.warn(name + " failed. serverId=" + serverId, e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * stop threads, running calls are interrupted
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
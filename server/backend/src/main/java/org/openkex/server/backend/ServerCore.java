@@ -11,21 +11,22 @@ import org.openkex.dto.SignedStatements;
 import org.openkex.keystore.api.KeyStore;
 import org.openkex.keystore.api.KeyStoreTool;
 import org.openkex.keystore.api.PublicKey;
+import org.openkex.keystore.api.VerifyRequest;
+import org.openkex.serializer.ProtobufSerializer;
 import org.openkex.serializer.SerializeService;
 import org.openkex.server.api.ServerApi;
 import org.openkex.tools.ByteArrayTool;
 import org.openkex.tools.Hex;
 import org.openkex.tools.NumberByteConverter;
 import org.openkex.tools.Validate;
-import org.openkex.tools.merkle.MerkleTree;
+import org.openkex.tools.merkle.MerkleTreeCompact;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,7 +34,7 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
 
     public static final String KEY_ID = "serverKey";
 
-    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String HASH_ALGORITHM = StatementRecord.LEAF_HASH_ALGORITHM;
 
     private static final Logger LOG = LoggerFactory.getLogger(ServerCore.class);
 
@@ -41,6 +42,9 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
 
     private ServerRegistry registry;
 
+    // parallel calls to other servers
+    private PeerExecutor peers;
+
     private StatementValidator validator;
 
     private SerializeService serializer;
@@ -51,37 +55,73 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
     // keystore for servers private key
     private KeyStore keyStore;
 
-    private List<SignedStatements> collecting;
-    private List<SignedStatements> collected;
-    private List<SignedStatements> allStatements;
+    // statements with cached encoding, serialized once per server
+    private List<StatementRecord> collecting;
+    private List<StatementRecord> collected;
+    // published by newStatements()
+    private List<SignedStatements> collectedStatements;
+    private List<StatementRecord> allStatements;
 
-    // validated statements per kexId (dummy store!)
-    private Map<Long, List<SignedStatements>> validStatements;
+    // validated statements per kexId
+    private StatementIndex validStatements;
 
     private byte[] roundHash;
     private byte[] roundSignature;
 
-    public ServerCore() {  // used in TomcatMain via HessianServlet, need rework.
-        this.validStatements = Collections.synchronizedMap(new HashMap<>());
+    public ServerCore() {
+        this(new BlockStoreMemoryImpl());
+    }
+
+    /**
+     * create server answering client and server api only (no registry and keys), used by the servlet runners.
+     *
+     * @param statementStore block store for validated statements (per kexId)
+     */
+    public ServerCore(BlockStoreApi statementStore) {
+        this.validStatements = new StatementIndex(statementStore, new ProtobufSerializer());
         this.logPrefix = "";
     }
 
     public ServerCore(ServerRegistry registry, ServerData serverData, KeyStore keyStore, SerializeService serializer) throws Exception {
+        this(registry, serverData, keyStore, serializer, new BlockStoreMemoryImpl());
+    }
+
+    /**
+     * create server
+     *
+     * @param registry registry of all servers
+     * @param serverData data of this server
+     * @param keyStore keystore with server key
+     * @param serializer serializer for statements
+     * @param statementStore block store for validated statements (per kexId)
+     * @throws Exception in case of initialization problem
+     */
+    public ServerCore(ServerRegistry registry, ServerData serverData, KeyStore keyStore, SerializeService serializer,
+                      BlockStoreApi statementStore) throws Exception {
         state = new ServerState();
 
         this.ownData = serverData;
         this.registry = registry;
         this.serializer = serializer;
+        this.serializer.warmUp();
         this.keyStore = keyStore;
         this.keyStore = keyStore;
-        this.validator = new StatementValidatorImpl(this, serializer);
+        this.validator = new StatementValidatorImpl(this);
+        this.peers = new PeerExecutor(registry, PeerExecutor.DEFAULT_THREADS, PeerExecutor.DEFAULT_TIMEOUT);
 
-        this.validStatements = Collections.synchronizedMap(new HashMap<>());
+        this.validStatements = new StatementIndex(statementStore, serializer);
         this.collecting = Collections.synchronizedList(new ArrayList<>());
 
         this.logPrefix = ownData == null ? "" : "sid=" + ownData.getServerId() + " ";
     }
 
+    /**
+     * @param timeout timeout of calls to other servers in milliseconds, a server not answering in time is treated as failed
+     */
+    public void setPeerTimeout(long timeout) {
+        peers.setTimeout(timeout);
+    }
+
     public void validateData() throws Exception {
         // validate: onwData exists in registry
         ServerData regData = registry.getById(ownData.getServerId());
@@ -133,6 +173,13 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
         this.collected = this.collecting;
         // reset for next round...
         this.collecting = Collections.synchronizedList(new ArrayList<>());
+        List<SignedStatements> published = new ArrayList<>(collected.size());
+        synchronized (collected) {
+            for (StatementRecord record : collected) {
+                published.add(record.getStatements());
+            }
+        }
+        this.collectedStatements = published;
         // fetch from other servers via "newStatements()"
         // this phase cause network delays
     }
@@ -141,27 +188,39 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
         // fetch check and sort all statements (own and fetched)
         allStatements = new ArrayList<>();
         allStatements.addAll(collected);
-        List<ServerData> servers = registry.getAllServers();
-        // should be "Parallel"
-        for (ServerData server : servers) {
-            // skip own data
-            if (server.getServerId().equals(ownData.getServerId())) {
+        long roundNr = state.getCurrentRound();
+        // fetch in parallel, servers failing to deliver are skipped
+        Map<ServerData, List<SignedStatements>> received = peers.callAll(ownData.getServerId(), logPrefix + "newStatements",
+            api -> api.newStatements(roundNr));
+        List<StatementRecord> fetched = new ArrayList<>();
+        List<ServerData> sources = new ArrayList<>();
+        for (Map.Entry<ServerData, List<SignedStatements>> entry : received.entrySet()) {
+            ServerData server = entry.getKey();
+            List<SignedStatements> serverStatements = entry.getValue();
+            if (serverStatements == null) {
+                LOG.warn(logPrefix + "no statements from server " + server.getServerId() + " for round " + roundNr);
                 continue;
             }
-            ServerApi api = registry.getProxy(server.getServerId());
-            List<SignedStatements> serverStatements = api.newStatements(state.getCurrentRound());
             LOG.info(logPrefix + "received " + serverStatements.size() + " statements from server " + server.getServerId() +
-                    " for round " + state.getCurrentRound());
+                    " for round " + roundNr);
             for (SignedStatements statements : serverStatements) {
-                try {
-                    validator.validate(statements);
-                    // add valid statement
-                    allStatements.add(statements);
-                }
-                catch (StatementException ve) {
-                    // this should not happen
-                    LOG.error(logPrefix + "got invalid statement from server " + server.getServerId(), ve);
-                }
+                fetched.add(new StatementRecord(statements, serializer));
+                sources.add(server);
+            }
+        }
+        // validate in parallel, results in order of fetched statements
+        Exception[] failures = validator.validateAll(fetched);
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] == null) {
+                // add valid statement
+                allStatements.add(fetched.get(i));
+            }
+            else if (failures[i] instanceof StatementException) {
+                // this should not happen
+                LOG.error(logPrefix + "got invalid statement from server " + sources.get(i).getServerId(), failures[i]);
+            }
+            else {
+                throw failures[i];
             }
         }
         // TODO: find collisions (e.g. identical claimKexId).
@@ -173,19 +232,16 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
             return;
         }
         // possibly a function getRootHash(statements)
-        // get hashes
+        // get hashes, encoding is cached from validation
         ArrayList<byte[]> hashes = new ArrayList<>();
-        MessageDigest md = MessageDigest.getInstance(HASH_ALGORITHM);
-        for (SignedStatements statements : allStatements) {
-            md.reset();
-            md.update(serializer.serialize(statements));
-            hashes.add(md.digest());
+        for (StatementRecord record : allStatements) {
+            hashes.add(record.getLeafHash());
         }
         // sort hashes
         hashes.sort(ByteArrayTool::compareByteArray);
 
         // calculate proposed block hash
-        MerkleTree tree = new MerkleTree(hashes, HASH_ALGORITHM);
+        MerkleTreeCompact tree = new MerkleTreeCompact(hashes, HASH_ALGORITHM);
         roundHash = tree.getRootHash();
     }
 
@@ -197,15 +253,13 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
         // fetch from other servers via "getHash()"
         // this phase cause network delays
         List<ServerData> servers = registry.getAllServers();
-        int failed = 0;
-        // should be "Parallel"
-        for (ServerData server : servers) {
-            // skip own data
-            if (server.getServerId().equals(ownData.getServerId())) {
-                continue;
-            }
-            ServerApi api = registry.getProxy(server.getServerId());
-            byte[] serverHash = api.getHash(state.getCurrentRound());
+        long roundNr = state.getCurrentRound();
+        Map<ServerData, byte[]> hashes = peers.callAll(ownData.getServerId(), logPrefix + "getHash", api -> api.getHash(roundNr));
+        // servers without answer count as failed
+        int failed = servers.size() - 1 - hashes.size();
+        for (Map.Entry<ServerData, byte[]> entry : hashes.entrySet()) {
+            ServerData server = entry.getKey();
+            byte[] serverHash = entry.getValue();
             if (!Arrays.equals(roundHash, serverHash)) {
                 LOG.warn(logPrefix + "server " + server.getServerId() + " has different hash: " + Hex.toString(serverHash));
                 failed++;
@@ -231,32 +285,35 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
         // fetch from other servers via "getHash()"
         // this phase cause network delays
         List<ServerData> servers = registry.getAllServers();
-        int failed = 0;
-        // should be "Parallel"
-        for (ServerData server : servers) {
-            // skip own data
-            if (server.getServerId().equals(ownData.getServerId())) {
+        long roundNr = state.getCurrentRound();
+        Map<ServerData, byte[]> signatures = peers.callAll(ownData.getServerId(), logPrefix + "getSignature",
+            api -> api.getSignature(roundNr));
+        // servers without answer count as failed
+        int failed = servers.size() - 1 - signatures.size();
+        List<ServerData> signers = new ArrayList<>();
+        List<VerifyRequest> requests = new ArrayList<>();
+        for (Map.Entry<ServerData, byte[]> entry : signatures.entrySet()) {
+            ServerData server = entry.getKey();
+            byte[] signature = entry.getValue();
+            if (signature == null) {
+                failed++;
+                LOG.error("signature missing. serverId=" + server.getServerId());
                 continue;
             }
-            ServerApi api = registry.getProxy(server.getServerId());
-            // check signature ...
-            byte[] signature = api.getSignature(state.getCurrentRound());
-            // this should be encapsulated properly
-
-            boolean valid = KeyStoreTool.verify(server.getAlgorithm(), server.getKey(), roundHash, signature);
-            if (!valid) {
+            signers.add(server);
+            requests.add(new VerifyRequest(server.getAlgorithm(), server.getKey(), roundHash, signature));
+        }
+        // check signatures in parallel
+        BitSet valid = KeyStoreTool.verifyAll(requests);
+        for (int i = 0; i < signers.size(); i++) {
+            if (!valid.get(i)) {
                 failed++;
-                LOG.error("signature check failed. serverId=" + server.getServerId());
+                LOG.error("signature check failed. serverId=" + signers.get(i).getServerId());
             }
         }
         if (failed == 0) {
             LOG.info(logPrefix + "consensus OK. round=" + state.getCurrentRound());
-            // hack store..
-            for (SignedStatements statement : allStatements) {
-                long kexId = statement.getStatements().getIssuerKexId();
-                List<SignedStatements> kexStatements = validStatements.computeIfAbsent(kexId, k -> new ArrayList<>());
-                kexStatements.add(statement);
-            }
+            validStatements.addRecords(allStatements);
         }
 
         if (failed > 0) {
@@ -284,10 +341,11 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
         Validate.notNull(authToken);
         Validate.isTrue(state.getCurrentPhase() != Phase.INVALID, "invalid phase.");
 
-        validator.validate(statement);
+        StatementRecord record = new StatementRecord(statement, serializer);
+        validator.validate(record);
 
         // collect for current round
-        collecting.add(statement);
+        collecting.add(record);
         // validation in next round, publish a round later
         return state.getCurrentRound() + 2;
     }
@@ -298,10 +356,11 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
         LOG.info(logPrefix + "getStatements kexId=" + NumberByteConverter.longToSixByteString(kexId) +
                 " return " + (kexStatements == null ? "none" : kexStatements.size()));
         // LOG.debug("returning " + kexStatements);
-        return kexStatements;
+        // index list is unmodifiable, return a plain list for remote serialization
+        return kexStatements == null ? null : new ArrayList<>(kexStatements);
     }
 
-    // no logging for internal calls
+    // no logging for internal calls, list is unmodifiable
     public List<SignedStatements> getStatementsInternal(long kexId) throws Exception {
         return validStatements.get(kexId);
     }
@@ -312,7 +371,7 @@ public class ServerCore implements ClientApi, ServerApi, ServerScheduleApi {
         Validate.isTrue(state.getCurrentPhase() != Phase.PUBLISH_STATEMENTS ||
                 state.getCurrentPhase() != Phase.VALIDATE, "invalid phase.");
         Validate.isTrue(roundNr == state.getCurrentRound());
-        return collected;
+        return collectedStatements;
     }
 
     @Override
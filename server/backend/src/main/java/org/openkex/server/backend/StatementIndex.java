@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.dto.SignedStatements;
+import org.openkex.serializer.SerializeService;
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * validated statements per kexId, stored in a block store.
+ * <p>
+ * the kexId is used as block number, the block contains the serialized statements of the kexId,
+ * each prefixed by its length(4). statements of a round are appended to the existing block.
+ * a persistent block store with hash index ({@link BlockStoreHashImpl}) keeps the index over restarts.
+ * <p>
+ * recently used statement lists are cached in a {@link ConcurrentLongCache} (limited by number of kexIds),
+ * reading a cached list is lock free. the cache stripe of a kexId is locked while its block is loaded or written,
+ * a new round publishes new lists (copy on write), returned lists are unmodifiable.
+ * absent kexIds are cached as well (until statements are added), a repeated lookup does not read the store.
+ */
+public class StatementIndex {
+
+    /** default number of cached kexIds */
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementIndex.class);
+
+    // kexId is a 6 byte number
+    private static final long MAX_KEX_ID = 1L << 48;
+    private static final int STRIPE_COUNT = 64;
+    // cached value of kexId without statements, compared by identity
+    private static final List<SignedStatements> ABSENT = Collections.unmodifiableList(new ArrayList<>());
+
+    private BlockStoreApi store;
+    private SerializeService serializer;
+
+    private ConcurrentLongCache<List<SignedStatements>> cache;
+
+    /**
+     * create index with default cache size
+     *
+     * @param store block store of serialized statements
+     * @param serializer serializer for statements
+     */
+    public StatementIndex(BlockStoreApi store, SerializeService serializer) {
+        this(store, serializer, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * create index
+     *
+     * @param store block store of serialized statements
+     * @param serializer serializer for statements
+     * @param cacheSize maximum number of cached kexIds
+     */
+    public StatementIndex(BlockStoreApi store, SerializeService serializer, int cacheSize) {
+        LOG.info("StatementIndex store=" + store.getClass().getSimpleName() + " cacheSize=" + cacheSize);
+        Validate.isTrue(cacheSize > 0, "invalid cache size: " + cacheSize);
+        this.store = store;
+        this.serializer = serializer;
+        this.cache = new ConcurrentLongCache<>(Math.max(cacheSize, STRIPE_COUNT), STRIPE_COUNT);
+    }
+
+    /**
+     * get statements of kexId
+     *
+     * @param kexId considered kexId
+     * @return unmodifiable list of statements in order of addition, null if none exists
+     * @throws Exception in case of storage or serializer problem
+     */
+    public List<SignedStatements> get(long kexId) throws Exception {
+        List<SignedStatements> statements = cache.get(kexId);
+        if (statements == null) {
+            // load with stripe locked, a concurrent add of the kexId waits
+            statements = cache.compute(kexId, (key, value) -> {
+                if (value != null) {
+                    return value;
+                }
+                ByteBuffer block = store.readBlockBuffer(key);
+                return block == null ? ABSENT : Collections.unmodifiableList(decode(block));
+            });
+        }
+        return statements == ABSENT ? null : statements;
+    }
+
+    /**
+     * add statements, grouped by issuer kexId
+     *
+     * @param statements statements to add
+     * @throws Exception in case of storage or serializer problem
+     */
+    public void add(List<SignedStatements> statements) throws Exception {
+        List<StatementRecord> records = new ArrayList<>(statements.size());
+        for (SignedStatements statement : statements) {
+            records.add(new StatementRecord(statement, serializer));
+        }
+        addRecords(records);
+    }
+
+    /**
+     * add statements, grouped by issuer kexId. the cached encoding of the records is stored.
+     *
+     * @param records statements to add
+     * @throws Exception in case of storage or serializer problem
+     */
+    public void addRecords(List<StatementRecord> records) throws Exception {
+        LinkedHashMap<Long, List<StatementRecord>> byKexId = new LinkedHashMap<>();
+        for (StatementRecord record : records) {
+            long kexId = record.getStatements().getStatements().getIssuerKexId();
+            Validate.isTrue(kexId >= 0 && kexId < MAX_KEX_ID, "invalid kexId: " + kexId);
+            byKexId.computeIfAbsent(kexId, k -> new ArrayList<>()).add(record);
+        }
+        for (Map.Entry<Long, List<StatementRecord>> entry : byKexId.entrySet()) {
+            List<StatementRecord> added = entry.getValue();
+            byte[] data = encode(added);
+            cache.compute(entry.getKey(), (kexId, cached) -> {
+                // a cached entry tells if the block exists
+                boolean exists = cached == null ? store.hasBlock(kexId) : cached != ABSENT;
+                if (exists) {
+                    store.appendBlock(kexId, data);
+                }
+                else {
+                    store.writeBlock(kexId, data);
+                }
+                // update cached list only, others are read from store when used
+                if (cached == null) {
+                    return null;
+                }
+                List<SignedStatements> updated = new ArrayList<>(cached.size() + added.size());
+                updated.addAll(cached);
+                for (StatementRecord record : added) {
+                    updated.add(record.getStatements());
+                }
+                return Collections.unmodifiableList(updated);
+            });
+        }
+    }
+
+    /**
+     * @return number of kexIds with statements
+     * @throws Exception in case of storage problem
+     */
+    public long size() throws Exception {
+        return store.getBlockCount();
+    }
+
+    private byte[] encode(List<StatementRecord> records) throws Exception {
+        int size = 0;
+        for (StatementRecord record : records) {
+            size += 4 + record.getEncoded().length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (StatementRecord record : records) {
+            byte[] bytes = record.getEncoded();
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        return buffer.array();
+    }
+
+    private List<SignedStatements> decode(ByteBuffer block) throws Exception {
+        List<SignedStatements> statements = new ArrayList<>();
+        while (block.hasRemaining()) {
+            int length = block.getInt();
+            Validate.isTrue(length >= 0 && length <= block.remaining(), "invalid statement length: " + length);
+            byte[] bytes = new byte[length];
+            block.get(bytes);
+            statements.add(serializer.deserialize(bytes, SignedStatements.class));
+        }
+        return statements;
+    }
+}
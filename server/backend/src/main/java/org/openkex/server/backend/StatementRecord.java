@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+import org.openkex.dto.SignedStatements;
+import org.openkex.serializer.SerializeService;
+import org.openkex.tools.Validate;
+
+import java.security.MessageDigest;
+
+/**
+ * signed statements with canonical encoding and leaf hash, both computed once on first use.
+ * <p>
+ * the signed bytes (encoded statements) are taken from the encoding of the signed statements (protocol buffer field 1),
+ * so a record is serialized once for signature check, merkle leaf hash and storage.
+ * <p>
+ * the wrapped statements must not be modified after creation, the cached values would be stale.
+ * first use may happen concurrently, the values are then computed twice (with equal result).
+ */
+public class StatementRecord {
+
+    /** algorithm of leaf hash */
+    public static final String LEAF_HASH_ALGORITHM = "SHA-256";
+
+    // protocol buffer tag of field 1 (statements) with wire type length delimited
+    private static final int STATEMENTS_TAG = 0x0A;
+
+    private SignedStatements statements;
+    private SerializeService serializer;
+
+    // immutable, published via volatile
+    private volatile Encoding encoding;
+    private volatile byte[] leafHash;
+
+    /**
+     * create record
+     *
+     * @param statements statements, must not be modified later
+     * @param serializer serializer creating the canonical encoding
+     */
+    public StatementRecord(SignedStatements statements, SerializeService serializer) {
+        Validate.notNull(statements);
+        Validate.notNull(serializer);
+        this.statements = statements;
+        this.serializer = serializer;
+    }
+
+    /**
+     * @return wrapped statements
+     */
+    public SignedStatements getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return serialized signed statements (not a copy, must not be modified)
+     * @throws Exception in case of serializer problem
+     */
+    public byte[] getEncoded() throws Exception {
+        return getEncoding().encoded;
+    }
+
+    /**
+     * @return array containing the serialized statements that are signed, see {@link #getSignedOffset()} (not a copy)
+     * @throws Exception in case of serializer problem
+     */
+    public byte[] getSignedBytes() throws Exception {
+        return getEncoding().signed;
+    }
+
+    /**
+     * @return start of signed bytes in array
+     * @throws Exception in case of serializer problem
+     */
+    public int getSignedOffset() throws Exception {
+        return getEncoding().signedOffset;
+    }
+
+    /**
+     * @return length of signed bytes
+     * @throws Exception in case of serializer problem
+     */
+    public int getSignedLength() throws Exception {
+        return getEncoding().signedLength;
+    }
+
+    /**
+     * @return hash of encoding (not a copy, must not be modified)
+     * @throws Exception in case of serializer problem
+     */
+    public byte[] getLeafHash() throws Exception {
+        byte[] hash = leafHash;
+        if (hash == null) {
+            hash = MessageDigest.getInstance(LEAF_HASH_ALGORITHM).digest(getEncoded());
+            leafHash = hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementRecord{statements=" + statements + "}";
+    }
+
+    private Encoding getEncoding() throws Exception {
+        Encoding current = encoding;
+        if (current == null) {
+            current = encode();
+            encoding = current;
+        }
+        return current;
+    }
+
+    private Encoding encode() throws Exception {
+        Validate.notNull(statements.getStatements(), "statements missing");
+        byte[] encoded = serializer.serialize(statements);
+        // field 1 is the first field, read its length
+        if (encoded.length > 1 && encoded[0] == STATEMENTS_TAG) {
+            int pos = 1;
+            long length = 0;
+            for (int shift = 0; shift < 35 && pos < encoded.length; shift += 7) {
+                byte b = encoded[pos++];
+                length |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (length <= encoded.length - pos) {
+                        return new Encoding(encoded, encoded, pos, (int) length);
+                    }
+                    break;
+                }
+            }
+        }
+        // not found (other encoding)
+        byte[] signed = serializer.serialize(statements.getStatements());
+        return new Encoding(encoded, signed, 0, signed.length);
+    }
+
+    private static final class Encoding {
+
+        private final byte[] encoded;
+        private final byte[] signed;
+        private final int signedOffset;
+        private final int signedLength;
+
+        private Encoding(byte[] encoded, byte[] signed, int signedOffset, int signedLength) {
+            this.encoded = encoded;
+            this.signed = signed;
+            this.signedOffset = signedOffset;
+            this.signedLength = signedLength;
+        }
+    }
+}
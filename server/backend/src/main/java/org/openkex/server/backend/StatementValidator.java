@@ -6,7 +6,7 @@
  */
 package org.openkex.server.backend;
 
-import org.openkex.dto.SignedStatements;
+import java.util.List;
 
 public interface StatementValidator {
 
@@ -17,5 +17,14 @@ public interface StatementValidator {
      * @throws StatementException if statement is invalid
      * @throws Exception in case of other problems
      */
-    void validate(SignedStatements statements) throws Exception;
+    void validate(StatementRecord statements) throws Exception;
+
+    /**
+     * check list of statements, implementations may check in parallel
+     *
+     * @param statements statements to check
+     * @return result per statement in order of input: null if valid, otherwise exception thrown by {@link #validate}
+     * @throws Exception in case of other problems
+     */
+    Exception[] validateAll(List<StatementRecord> statements) throws Exception;
 }
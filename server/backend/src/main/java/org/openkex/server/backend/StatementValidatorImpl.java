@@ -10,40 +10,67 @@ import org.openkex.dto.SignedStatements;
 import org.openkex.dto.StatementClaimKexId;
 import org.openkex.dto.Statements;
 import org.openkex.keystore.api.KeyStoreTool;
-import org.openkex.serializer.SerializeService;
 import org.openkex.tools.Validate;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public class StatementValidatorImpl implements StatementValidator {
 
+    // statements per fork join task, a signature check takes some 100us
+    private static final int TASK_SIZE = 16;
+
     private ServerCore core;
-    private SerializeService serializer;
+    private ForkJoinPool pool;
+
+    public StatementValidatorImpl(ServerCore core) {
+        this(core, ForkJoinPool.commonPool());
+    }
 
-    public StatementValidatorImpl(ServerCore core, SerializeService serializer) {
+    /**
+     * create validator
+     *
+     * @param core server core, used to check existing statements
+     * @param pool pool for parallel validation
+     */
+    public StatementValidatorImpl(ServerCore core, ForkJoinPool pool) {
         this.core = core;
-        this.serializer = serializer;
+        this.pool = pool;
     }
 
     @Override
-    public void validate(SignedStatements signedStatements) throws Exception {
-        Validate.notNull(signedStatements);
-        Statements statements = signedStatements.getStatements();
+    public void validate(StatementRecord record) throws Exception {
+        Validate.notNull(record);
+        Statements statements = record.getStatements().getStatements();
+        if (statements == null) {
+            throw new StatementException("no statements found.");
+        }
 
         // must iterate all statement types
         if (statements.getClaimKexId() != null) {
-            validateClaimKexId(signedStatements);
+            validateClaimKexId(record);
         }
         else if (statements.getPublicAccountOwner() != null) {
-            validatePublicAccountOwner(signedStatements);
+            validatePublicAccountOwner(record.getStatements());
         }
         else if (statements.getCertificateOwner() != null) {
-            validateCertificateOwner(signedStatements);
+            validateCertificateOwner(record.getStatements());
         }
         else {
             throw new Exception("no valid statement found.");
         }
     }
 
-    private void validateClaimKexId(SignedStatements signedStatements) throws Exception {
+    @Override
+    public Exception[] validateAll(List<StatementRecord> statements) throws Exception {
+        Exception[] results = new Exception[statements.size()];
+        pool.invoke(new ValidateTask(statements, results, 0, statements.size()));
+        return results;
+    }
+
+    private void validateClaimKexId(StatementRecord record) throws Exception {
+        SignedStatements signedStatements = record.getStatements();
         Statements statements = signedStatements.getStatements();
         if (getStatementsCount(statements) != 1) {
             throw new StatementException("claimKexId statement is mixed with others: " + signedStatements);
@@ -69,9 +96,9 @@ public class StatementValidatorImpl implements StatementValidator {
         // TODO: check signature date
         // statements.getSignatureDate()
 
-        // check signature
-        byte[] statementBytes = serializer.serialize(statements);
-        boolean valid = KeyStoreTool.verify(claim.getAlgorithm(), claim.getKey(), statementBytes, signedStatements.getSignatureBytes());
+        // check signature, signed bytes are part of the cached encoding
+        boolean valid = KeyStoreTool.verify(claim.getAlgorithm(), claim.getKey(), record.getSignedBytes(), record.getSignedOffset(),
+                record.getSignedLength(), signedStatements.getSignatureBytes());
         if (!valid) {
             throw new StatementException("signature is invalid: " + signedStatements);
         }
@@ -99,4 +126,37 @@ public class StatementValidatorImpl implements StatementValidator {
     private void validateCertificateOwner(SignedStatements signedStatements) throws Exception {
         throw new Exception("not implemented yet");
     }
+
+    // validates a range of statements, splits large ranges
+    private class ValidateTask extends RecursiveAction {
+
+        private List<StatementRecord> statements;
+        private Exception[] results;
+        private int from;
+        private int to;
+
+        ValidateTask(List<StatementRecord> statements, Exception[] results, int from, int to) {
+            this.statements = statements;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ValidateTask(statements, results, from, middle), new ValidateTask(statements, results, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    validate(statements.get(i));
+                }
+                catch (Exception e) {
+                    results[i] = e;
+                }
+            }
+        }
+    }
 }
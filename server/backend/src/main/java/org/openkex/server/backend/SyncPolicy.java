@@ -0,0 +1,22 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend;
+
+/**
+ * defines when written blocks are forced to the storage device (fsync).
+ */
+public enum SyncPolicy {
+
+    /** never force, data is written when the operating system decides */
+    NONE,
+    /** a write returns after its data was forced, concurrent writes share one force (group commit) */
+    PER_WRITE,
+    /** the first write of a new round returns after all previous writes were forced */
+    PER_ROUND,
+    /** force periodically in background, a crash may lose the writes of the last interval */
+    INTERVAL
+}
@@ -11,10 +11,15 @@ import org.junit.Test;
 import org.openkex.server.backend.BlockStoreApi;
 import org.openkex.tools.ByteArrayTool;
 import org.openkex.tools.RandomTool;
+import org.openkex.tools.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public abstract class AbstractBlockStoreTest {
 
@@ -47,6 +52,8 @@ public abstract class AbstractBlockStoreTest {
         Assert.assertEquals(data1Len, store.getStoreSize());
         Assert.assertTrue(Arrays.equals(data1, store.readBlock(key1)));
         Assert.assertNull(store.readBlock(key2));
+        Assert.assertTrue(store.hasBlock(key1));
+        Assert.assertFalse(store.hasBlock(key2));
 
         Assert.assertFalse(store.writeBlock(key2, data2));
         Assert.assertEquals(2, store.getBlockCount());
@@ -98,6 +105,75 @@ public abstract class AbstractBlockStoreTest {
         Assert.assertEquals(blockSize * keyCount, store.getStoreSize());
     }
 
+    @Test
+    public void testReadBuffer() throws Exception {
+        RandomTool random = new RandomTool(SEED);
+        long key1 = 2345111;
+        long key2 = 2345112;
+        byte[] data1 = random.getBytes(324);
+        byte[] data2 = random.getBytes(123);
+
+        BlockStoreApi store = getBlockStore();
+        Assert.assertNull(store.readBlockBuffer(key1));
+        store.writeBlock(key1, data1);
+        store.writeBlock(key2, data2);
+        store.appendBlock(key1, data2);
+
+        Assert.assertTrue(Arrays.equals(ByteArrayTool.add(data1, data2), getBytes(store.readBlockBuffer(key1))));
+        ByteBuffer buffer = store.readBlockBuffer(key2);
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(0, buffer.position());
+        Assert.assertEquals(data2.length, buffer.remaining());
+        Assert.assertTrue(Arrays.equals(data2, getBytes(buffer)));
+    }
+
+    @Test
+    public void testReadBlocks() throws Exception {
+        RandomTool random = new RandomTool(SEED);
+        long[] rounds = {5, 1, 100, 7, 3, 20000, 100000001};
+        byte[][] data = new byte[rounds.length][];
+        BlockStoreApi store = getBlockStore();
+        for (int i = 0; i < rounds.length; i++) {
+            data[i] = random.getBytes(100 + i);
+            store.writeBlock(rounds[i], data[i]);
+        }
+        store.appendBlock(7, data[0]);
+
+        List<Long> found = new ArrayList<>();
+        store.readBlocks(3, 101, (roundNr, blockData) -> {
+            found.add(roundNr);
+            Assert.assertTrue(blockData.isReadOnly());
+            if (roundNr == 7) {
+                Assert.assertTrue(Arrays.equals(ByteArrayTool.add(data[3], data[0]), getBytes(blockData)));
+            }
+            if (roundNr == 100) {
+                Assert.assertTrue(Arrays.equals(data[2], getBytes(blockData)));
+            }
+            return true;
+        });
+        Assert.assertEquals(Arrays.asList(3L, 5L, 7L, 100L), found);
+
+        found.clear();
+        store.readBlocks(0, Long.MAX_VALUE, (roundNr, blockData) -> found.add(roundNr));
+        Assert.assertEquals(Arrays.asList(1L, 3L, 5L, 7L, 100L, 20000L, 100000001L), found);
+
+        // stop after second block
+        found.clear();
+        store.readBlocks(4, 100000002, (roundNr, blockData) -> found.add(roundNr) && found.size() < 2);
+        Assert.assertEquals(Arrays.asList(5L, 7L), found);
+
+        found.clear();
+        store.readBlocks(8, 100, (roundNr, blockData) -> found.add(roundNr));
+        store.readBlocks(100, 100, (roundNr, blockData) -> found.add(roundNr));
+        Assert.assertTrue(found.isEmpty());
+    }
+
+    private byte[] getBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
     @Test
     public void testError() throws Exception {
         BlockStoreApi store = getBlockStore();
@@ -110,4 +186,23 @@ public abstract class AbstractBlockStoreTest {
         }
     }
 
+    protected void deleteDirectory(File directory) {
+        if (!directory.exists()) {
+            return;
+        }
+        Validate.isTrue(directory.isDirectory());
+
+        File[] files = directory.listFiles();
+        Validate.notNull(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteDirectory(file);
+            }
+            else {
+                Validate.isTrue(file.delete(), "failed to delete file: " + file.getPath());
+            }
+        }
+        Validate.isTrue(directory.delete(), "failed to delete directory: " + directory.getPath());
+    }
+
 }
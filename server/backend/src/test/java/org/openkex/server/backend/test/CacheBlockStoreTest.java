@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.server.backend.BlockStoreApi;
+import org.openkex.server.backend.BlockStoreCacheImpl;
+import org.openkex.server.backend.BlockStoreFileImpl;
+import org.openkex.tools.ByteArrayTool;
+import org.openkex.tools.DirectoryTool;
+import org.openkex.tools.RandomTool;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class CacheBlockStoreTest extends AbstractBlockStoreTest {
+
+    @Override
+    protected BlockStoreApi getBlockStore() throws Exception {
+        // cache holds a part of the blocks written in testSize
+        return new BlockStoreCacheImpl(getFileStore(), 1024 * 1024 * 4);
+    }
+
+    @Override
+    protected int getSizeLimit() {
+        return 1024 * 1024 * 32; // 32MB for file based store
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        RandomTool random = new RandomTool(4716);
+        byte[] data1 = random.getBytes(400);
+        byte[] data2 = random.getBytes(300);
+        byte[] data3 = random.getBytes(500);
+        BlockStoreCacheImpl store = new BlockStoreCacheImpl(getFileStore(), 1000);
+        store.writeBlock(1, data1);
+        store.writeBlock(2, data2);
+        store.writeBlock(3, data3);
+
+        Assert.assertTrue(Arrays.equals(data1, store.readBlock(1)));
+        Assert.assertTrue(Arrays.equals(data2, store.readBlock(2)));
+        Assert.assertTrue(Arrays.equals(data1, store.readBlock(1)));
+        Assert.assertEquals(1, store.getHits());
+        Assert.assertEquals(2, store.getMisses());
+        Assert.assertEquals(700, store.getCacheSize());
+
+        // block 2 is least recently used
+        Assert.assertTrue(Arrays.equals(data3, store.readBlock(3)));
+        Assert.assertEquals(1, store.getEvictions());
+        Assert.assertEquals(900, store.getCacheSize());
+        Assert.assertTrue(Arrays.equals(data2, store.readBlock(2)));
+        Assert.assertEquals(4, store.getMisses());
+
+        // write and append invalidate
+        store.appendBlock(2, data2);
+        Assert.assertTrue(Arrays.equals(ByteArrayTool.add(data2, data2), store.readBlock(2)));
+        store.writeBlock(2, data1);
+        Assert.assertTrue(Arrays.equals(data1, store.readBlock(2)));
+        Assert.assertEquals(6, store.getMisses());
+
+        // missing block and block larger than cache are not cached
+        Assert.assertNull(store.readBlock(4));
+        store.writeBlock(4, random.getBytes(2000));
+        store.readBlock(4);
+        store.readBlock(4);
+        Assert.assertEquals(9, store.getMisses());
+        Assert.assertTrue(store.getCacheSize() <= 1000);
+        store.close();
+    }
+
+    @Test
+    public void testModifyResult() throws Exception {
+        byte[] data = {1, 2, 3};
+        BlockStoreCacheImpl store = new BlockStoreCacheImpl(getFileStore(), 1000);
+        store.writeBlock(1, data);
+        // changes of returned arrays (miss and hit) do not reach the cache
+        store.readBlock(1)[0] = 9;
+        store.readBlock(1)[1] = 9;
+        Assert.assertEquals(1, store.getHits());
+        Assert.assertTrue(Arrays.equals(data, store.readBlock(1)));
+        Assert.assertTrue(store.readBlockBuffer(1).isReadOnly());
+        store.close();
+    }
+
+    private BlockStoreApi getFileStore() throws Exception {
+        String path = DirectoryTool.getTargetDirectory(this.getClass()) + "CacheBlockStoreTest";
+        deleteDirectory(new File(path));
+        return new BlockStoreFileImpl(path);
+    }
+}
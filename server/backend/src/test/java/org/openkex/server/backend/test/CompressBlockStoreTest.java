@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.server.backend.BlockCodecDeflateImpl;
+import org.openkex.server.backend.BlockStoreApi;
+import org.openkex.server.backend.BlockStoreCompressImpl;
+import org.openkex.server.backend.BlockStoreMemoryImpl;
+import org.openkex.tools.ByteArrayTool;
+import org.openkex.tools.RandomTool;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class CompressBlockStoreTest extends AbstractBlockStoreTest {
+
+    @Override
+    protected BlockStoreApi getBlockStore() throws Exception {
+        return new BlockStoreCompressImpl(new BlockStoreMemoryImpl(), new BlockCodecDeflateImpl());
+    }
+
+    @Override
+    protected int getSizeLimit() {
+        return 1024 * 1024 * 32; // 32MB for memory based store
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        RandomTool random = new RandomTool(4717);
+        byte[] text = getText(10000);
+        byte[] noise = random.getBytes(1000);
+        BlockStoreCompressImpl store = new BlockStoreCompressImpl(new BlockStoreMemoryImpl(), new BlockCodecDeflateImpl());
+
+        Assert.assertFalse(store.writeBlock(1, text));
+        Assert.assertEquals(text.length, store.getStoreSize());
+        Assert.assertTrue(store.getPhysicalStoreSize() < text.length / 4);
+        Assert.assertTrue(Arrays.equals(text, store.readBlock(1)));
+
+        // random data is stored uncompressed (header only)
+        Assert.assertFalse(store.writeBlock(2, noise));
+        Assert.assertTrue(Arrays.equals(noise, store.readBlock(2)));
+        ByteBuffer buffer = store.readBlockBuffer(2);
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(noise.length, buffer.remaining());
+
+        // frames of mixed codecs
+        store.appendBlock(1, noise);
+        store.appendBlock(1, text);
+        store.appendBlock(1, new byte[0]);
+        byte[] expected = ByteArrayTool.add(ByteArrayTool.add(text, noise), text);
+        Assert.assertTrue(Arrays.equals(expected, store.readBlock(1)));
+        ByteBuffer buffer1 = store.readBlockBuffer(1);
+        Assert.assertEquals(expected.length, buffer1.remaining());
+        Assert.assertEquals(expected.length + noise.length, store.getStoreSize());
+
+        // overwrite
+        Assert.assertTrue(store.writeBlock(1, noise));
+        Assert.assertEquals(noise.length * 2, store.getStoreSize());
+        Assert.assertTrue(Arrays.equals(noise, store.readBlock(1)));
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        byte[] text = getText(10000);
+        BlockStoreMemoryImpl delegate = new BlockStoreMemoryImpl();
+        BlockStoreCompressImpl store = new BlockStoreCompressImpl(delegate, new BlockCodecDeflateImpl());
+        store.writeBlock(1, text);
+        store.writeBlock(2, text);
+        store.appendBlock(2, text);
+        // logical size is restored from frame headers on first use, including writes after open
+        store = new BlockStoreCompressImpl(delegate, new BlockCodecDeflateImpl());
+        store.writeBlock(1, text);
+        store.appendBlock(1, text);
+        Assert.assertEquals(text.length * 4, store.getStoreSize());
+        store.writeBlock(2, text);
+        Assert.assertEquals(text.length * 3, store.getStoreSize());
+        Assert.assertEquals(2, store.getBlockCount());
+    }
+
+    @Test
+    public void testLevel() throws Exception {
+        byte[] text = getText(100000);
+        BlockStoreCompressImpl fast = new BlockStoreCompressImpl(new BlockStoreMemoryImpl(), new BlockCodecDeflateImpl(1));
+        BlockStoreCompressImpl best = new BlockStoreCompressImpl(new BlockStoreMemoryImpl(), new BlockCodecDeflateImpl(9));
+        fast.writeBlock(1, text);
+        best.writeBlock(1, text);
+        Assert.assertTrue(best.getPhysicalStoreSize() <= fast.getPhysicalStoreSize());
+        Assert.assertTrue(Arrays.equals(text, fast.readBlock(1)));
+        Assert.assertTrue(Arrays.equals(text, best.readBlock(1)));
+    }
+
+    @Test
+    public void testCodecClose() throws Exception {
+        byte[] text = getText(10000);
+        BlockCodecDeflateImpl codec = new BlockCodecDeflateImpl();
+        BlockStoreCompressImpl store = new BlockStoreCompressImpl(new BlockStoreMemoryImpl(), codec);
+        store.writeBlock(1, text);
+        Assert.assertTrue(Arrays.equals(text, store.readBlock(1)));
+        // pooled instances are ended, codec still works without pool
+        store.close();
+        byte[] compressed = codec.compress(text);
+        byte[] output = new byte[text.length];
+        codec.decompress(compressed, 0, compressed.length, output, 0, output.length);
+        Assert.assertTrue(Arrays.equals(text, output));
+    }
+
+    // compressible data, similar to serialized statements
+    private byte[] getText(int length) {
+        Random random = new Random(4718);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append("statement kexId=").append(random.nextInt(1000));
+            builder.append(" algorithm=SECP256K1 round=").append(random.nextInt(100)).append('\n');
+        }
+        return builder.substring(0, length).getBytes();
+    }
+}
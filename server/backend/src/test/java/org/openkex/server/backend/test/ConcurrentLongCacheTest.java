@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.server.backend.ConcurrentLongCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConcurrentLongCacheTest {
+
+    @Test
+    public void testSimple() throws Exception {
+        ConcurrentLongCache<String> cache = new ConcurrentLongCache<>(4000, 4);
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals("a", cache.compute(1, (key, value) -> "a"));
+        Assert.assertEquals("a", cache.get(1));
+        Assert.assertEquals("ab", cache.compute(1, (key, value) -> value + "b"));
+        // null keeps state
+        Assert.assertEquals("ab", cache.compute(1, (key, value) -> null));
+        Assert.assertNull(cache.compute(2, (key, value) -> null));
+        Assert.assertNull(cache.get(2));
+        Assert.assertEquals(1, cache.size());
+
+        // grow tables
+        for (long key = -500; key < 500; key++) {
+            long expected = key;
+            cache.compute(key, (k, value) -> "v" + expected);
+        }
+        for (long key = -500; key < 500; key++) {
+            Assert.assertEquals("v" + key, cache.get(key));
+        }
+        Assert.assertEquals(1000, cache.size());
+        Assert.assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ConcurrentLongCache<Long> cache = new ConcurrentLongCache<>(400, 4);
+        for (long key = 0; key < 100; key++) {
+            cache.compute(key, (k, value) -> k);
+        }
+        // read "hot" keys after rebuild clears the reference marks
+        for (long key = 100; key < 10000; key++) {
+            for (long hot = 0; hot < 10; hot++) {
+                Assert.assertEquals(Long.valueOf(hot), cache.get(hot));
+            }
+            cache.compute(key, (k, value) -> k);
+            Assert.assertTrue(cache.size() <= 400);
+        }
+        Assert.assertEquals(10000 - cache.size(), cache.getEvictions());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        int keys = 100;
+        int rounds = 200;
+        ConcurrentLongCache<List<Integer>> cache = new ConcurrentLongCache<>(keys * 2, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    int[] seen = new int[keys];
+                    while (!done.get()) {
+                        for (int key = 0; key < keys; key++) {
+                            List<Integer> list = cache.get(key);
+                            int size = list == null ? 0 : list.size();
+                            // published lists are complete and never shrink
+                            Assert.assertTrue(size >= seen[key]);
+                            for (int j = 0; j < size; j++) {
+                                Assert.assertEquals(Integer.valueOf(j), list.get(j));
+                            }
+                            seen[key] = size;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int round = 0; round < rounds; round++) {
+                for (int key = 0; key < keys; key++) {
+                    cache.compute(key, (k, value) -> {
+                        List<Integer> list = value == null ? new ArrayList<>() : new ArrayList<>(value);
+                        list.add(list.size());
+                        return Collections.unmodifiableList(list);
+                    });
+                }
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        for (int key = 0; key < keys; key++) {
+            Assert.assertEquals(rounds, cache.get(key).size());
+        }
+    }
+}
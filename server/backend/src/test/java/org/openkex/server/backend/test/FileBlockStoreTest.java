@@ -6,19 +6,26 @@
  */
 package org.openkex.server.backend.test;
 
+import org.junit.Assert;
+import org.junit.Test;
 import org.openkex.server.backend.BlockStoreApi;
 import org.openkex.server.backend.BlockStoreFileImpl;
 import org.openkex.tools.DirectoryTool;
-import org.openkex.tools.Validate;
+import org.openkex.tools.FileTool;
+import org.openkex.tools.RandomTool;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class FileBlockStoreTest extends AbstractBlockStoreTest {
 
     @Override
     protected BlockStoreApi getBlockStore() throws Exception {
         String path = DirectoryTool.getTargetDirectory(this.getClass()) + "FileBlockStoreTest";
-        delete(new File(path));
+        deleteDirectory(new File(path));
         return new BlockStoreFileImpl(path);
     }
 
@@ -27,22 +34,69 @@ public class FileBlockStoreTest extends AbstractBlockStoreTest {
         return 1024 * 1024 * 32; // 32MB for file based store
     }
 
-    private void delete(File directory) {
-        if (!directory.exists()) {
-            return;
+    @Test
+    public void testRewriteMapped() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        byte[] data1 = random.getBytes(5000);
+        byte[] data2 = random.getBytes(100);
+        BlockStoreApi store = getBlockStore();
+        store.writeBlock(1, data1);
+        ByteBuffer mapped = store.readBlockBuffer(1);
+        // shorter rewrite and append must not truncate the mapped file
+        store.writeBlock(1, data2);
+        store.appendBlock(1, data2);
+        Assert.assertEquals(data1.length, mapped.remaining());
+        byte[] content = new byte[mapped.remaining()];
+        mapped.get(content);
+        Assert.assertArrayEquals(data1, content);
+        Assert.assertEquals(2 * data2.length, store.readBlock(1).length);
+    }
+
+    @Test
+    public void testLargeRound() throws Exception {
+        BlockStoreApi store = getBlockStore();
+        // 6 byte numbers (kexIds), more than 12 digits
+        long large = (1L << 48) - 1;
+        store.writeBlock(large, new byte[] {1});
+        store.writeBlock(1000000000000L, new byte[] {2});
+        store.writeBlock(999999999999L, new byte[] {3});
+        Assert.assertArrayEquals(new byte[] {1}, store.readBlock(large));
+        List<Long> rounds = new ArrayList<>();
+        store.readBlocks(0, Long.MAX_VALUE, (roundNr, blockData) -> rounds.add(roundNr));
+        Assert.assertEquals(Arrays.asList(999999999999L, 1000000000000L, large), rounds);
+        try {
+            store.writeBlock(1L << 48, new byte[] {1});
+            Assert.fail();
         }
-        Validate.isTrue(directory.isDirectory());
-
-        File[] files = directory.listFiles();
-        Validate.notNull(files);
-        for (File file : files) {
-            if (file.isDirectory()) {
-                delete(file);
-            }
-            else {
-                Validate.isTrue(file.delete(), "failed to delete file: " + file.getPath());
-            }
+        catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("invalid round"));
         }
-        Validate.isTrue(directory.delete(), "failed to delete directory: " + directory.getPath());
+    }
+
+    @Test
+    public void testStaleTempFile() throws Exception {
+        BlockStoreApi store = getBlockStore();
+        store.writeBlock(1, new byte[] {1, 2});
+        // left by crash during write
+        String path = DirectoryTool.getTargetDirectory(this.getClass()) + "FileBlockStoreTest";
+        FileTool.write(new byte[] {3, 4, 5}, path + "/0000/0000/000000000002.tmp", false);
+        Assert.assertEquals(1, store.getBlockCount());
+        Assert.assertEquals(2, store.getStoreSize());
+    }
+
+    @Test
+    public void testStrayFiles() throws Exception {
+        BlockStoreApi store = getBlockStore();
+        store.writeBlock(1, new byte[] {1});
+        store.writeBlock(20000, new byte[] {2});
+        String path = DirectoryTool.getTargetDirectory(this.getClass()) + "FileBlockStoreTest";
+        // files not written by store are skipped by range reads
+        FileTool.write(new byte[] {3}, path + "/.DS_Store", false);
+        FileTool.write(new byte[] {3}, path + "/0000/0000/000000000001~", false);
+        FileTool.write(new byte[] {3}, path + "/0000/0000/000000000002.tmp", false);
+        Assert.assertTrue(new File(path + "/0000/abcd").mkdirs());
+        List<Long> rounds = new ArrayList<>();
+        store.readBlocks(0, 100000, (roundNr, blockData) -> rounds.add(roundNr));
+        Assert.assertEquals(Arrays.asList(1L, 20000L), rounds);
     }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.server.backend.BlockStoreApi;
+import org.openkex.server.backend.BlockStoreHashImpl;
+import org.openkex.tools.ByteArrayTool;
+import org.openkex.tools.DirectoryTool;
+import org.openkex.tools.NumberByteConverter;
+import org.openkex.tools.RandomTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HashBlockStoreTest extends AbstractBlockStoreTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HashBlockStoreTest.class);
+
+    private BlockStoreHashImpl store;
+
+    @Override
+    protected BlockStoreApi getBlockStore() throws Exception {
+        String path = getPath();
+        deleteDirectory(new File(path));
+        store = new BlockStoreHashImpl(path);
+        return store;
+    }
+
+    @Override
+    protected int getSizeLimit() {
+        return 1024 * 1024 * 32; // 32MB for log based store
+    }
+
+    @After
+    public void close() throws Exception {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testRandomKeys() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        getBlockStore();
+        // more keys than initial index capacity, full 6 byte range
+        long[] keys = new long[5000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = NumberByteConverter.sixBytesToLong(random.getBytes(6));
+            store.writeBlock(keys[i], NumberByteConverter.longToBytes(keys[i]));
+        }
+        store.writeBlock(BlockStoreHashImpl.MAX_KEY - 1, new byte[] {1});
+        try {
+            store.writeBlock(BlockStoreHashImpl.MAX_KEY, new byte[] {1});
+            Assert.fail();
+        }
+        catch (RuntimeException e) {
+            LOG.info("expected: " + e);
+        }
+        store.close();
+
+        store = new BlockStoreHashImpl(getPath());
+        Assert.assertEquals(keys.length + 1, store.getBlockCount());
+        for (long key : keys) {
+            Assert.assertArrayEquals(NumberByteConverter.longToBytes(key), store.readBlock(key));
+        }
+        List<Long> found = new ArrayList<>();
+        store.readBlocks(0, Long.MAX_VALUE, (roundNr, blockData) -> found.add(roundNr));
+        Assert.assertEquals(keys.length + 1, found.size());
+        for (int i = 1; i < found.size(); i++) {
+            Assert.assertTrue(found.get(i - 1) < found.get(i));
+        }
+    }
+
+    @Test
+    public void testChain() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        getBlockStore();
+        byte[] expected = random.getBytes(10);
+        store.writeBlock(7, expected);
+        // longer than the maximum chain, records are combined
+        for (int i = 0; i < BlockStoreHashImpl.MAX_CHAIN * 3; i++) {
+            byte[] data = random.getBytes(i + 1);
+            store.appendBlock(7, data);
+            expected = ByteArrayTool.add(expected, data);
+            Assert.assertArrayEquals(expected, store.readBlock(7));
+        }
+        Assert.assertEquals(expected.length, store.getStoreSize());
+        store.close();
+
+        store = new BlockStoreHashImpl(getPath());
+        Assert.assertArrayEquals(expected, store.readBlock(7));
+        Assert.assertEquals(expected.length, store.getStoreSize());
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        getBlockStore();
+        byte[][] blocks = new byte[10][];
+        // overwrite creates dead records, compacted above 1MB log size
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = random.getBytes(10000);
+                store.writeBlock(i, blocks[i]);
+            }
+        }
+        Assert.assertTrue(store.getLogSize() < 2 * 1024 * 1024);
+        Assert.assertEquals(blocks.length * 10000, store.getStoreSize());
+        store.compact();
+        Assert.assertEquals(blocks.length * (10000 + 36), store.getLogSize());
+        for (int i = 0; i < blocks.length; i++) {
+            Assert.assertArrayEquals(blocks[i], store.readBlock(i));
+        }
+        store.close();
+        // only files of the current generation are kept
+        Assert.assertEquals(2, new File(getPath()).list().length);
+
+        store = new BlockStoreHashImpl(getPath());
+        Assert.assertEquals(blocks.length, store.getBlockCount());
+        for (int i = 0; i < blocks.length; i++) {
+            Assert.assertArrayEquals(blocks[i], store.readBlock(i));
+        }
+    }
+
+    @Test
+    public void testCrash() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        getBlockStore();
+        byte[] data1 = random.getBytes(1000);
+        byte[] data2 = random.getBytes(2000);
+        byte[] data3 = random.getBytes(300);
+        store.writeBlock(1, data1);
+        store.writeBlock(2, data2);
+        store.appendBlock(1, data3);
+        store.sync();
+
+        // simulate crash: copy files of open store (index is not clean), add partial record
+        String crashed = getPath() + "Crash";
+        deleteDirectory(new File(crashed));
+        Assert.assertTrue(new File(crashed).mkdirs());
+        for (File file : new File(getPath()).listFiles()) {
+            Files.copy(file.toPath(), new File(crashed, file.getName()).toPath());
+        }
+        try (RandomAccessFile log = new RandomAccessFile(new File(crashed, "000000.log"), "rw")) {
+            log.seek(log.length());
+            log.write(new byte[] {0x4B, 0x45, 0x58, 0x48, 0, 0});
+        }
+
+        BlockStoreHashImpl recovered = new BlockStoreHashImpl(crashed);
+        try {
+            Assert.assertEquals(2, recovered.getBlockCount());
+            Assert.assertEquals(data1.length + data2.length + data3.length, recovered.getStoreSize());
+            Assert.assertArrayEquals(ByteArrayTool.add(data1, data3), recovered.readBlock(1));
+            Assert.assertArrayEquals(data2, recovered.readBlock(2));
+            // writable after recovery
+            recovered.appendBlock(2, data3);
+            Assert.assertArrayEquals(ByteArrayTool.add(data2, data3), recovered.readBlock(2));
+        }
+        finally {
+            recovered.close();
+        }
+        recovered = new BlockStoreHashImpl(crashed);
+        Assert.assertArrayEquals(ByteArrayTool.add(data2, data3), recovered.readBlock(2));
+        recovered.close();
+    }
+
+    @Test
+    public void testInterruptedCompaction() throws Exception {
+        getBlockStore();
+        store.writeBlock(1, new byte[] {1, 2});
+        store.close();
+        // files of an incomplete next generation
+        Files.write(new File(getPath(), "000001.log").toPath(), new byte[] {1, 2, 3});
+        Files.write(new File(getPath(), "000001.idx").toPath(), new byte[100]);
+
+        store = new BlockStoreHashImpl(getPath());
+        Assert.assertArrayEquals(new byte[] {1, 2}, store.readBlock(1));
+        Assert.assertEquals(Arrays.asList("000000.idx", "000000.log"), sortedNames());
+    }
+
+    private List<String> sortedNames() throws Exception {
+        List<String> names = new ArrayList<>(Arrays.asList(new File(getPath()).list()));
+        names.sort(null);
+        return names;
+    }
+
+    private String getPath() throws Exception {
+        return DirectoryTool.getTargetDirectory(this.getClass()) + "HashBlockStoreTest";
+    }
+}
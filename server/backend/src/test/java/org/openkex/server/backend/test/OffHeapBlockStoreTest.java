@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.server.backend.BlockStoreApi;
+import org.openkex.server.backend.BlockStoreOffHeapImpl;
+import org.openkex.tools.ByteArrayTool;
+import org.openkex.tools.RandomTool;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class OffHeapBlockStoreTest extends AbstractBlockStoreTest {
+
+    private static final int SLAB_SIZE = 64 * 1024;
+
+    @Override
+    protected BlockStoreApi getBlockStore() {
+        return new BlockStoreOffHeapImpl(1024 * 1024 * 128, SLAB_SIZE);
+    }
+
+    @Override
+    protected int getSizeLimit() {
+        return 1024 * 1024 * 32; // 32MB for memory based store
+    }
+
+    @Test
+    public void testAppendGrowth() throws Exception {
+        RandomTool random = new RandomTool(4714);
+        BlockStoreOffHeapImpl store = new BlockStoreOffHeapImpl(1024 * 1024, SLAB_SIZE);
+        byte[] expected = new byte[0];
+        store.writeBlock(1, expected);
+        store.writeBlock(2, random.getBytes(10));
+        // grow from small region to dedicated buffer
+        for (int i = 0; i < 100; i++) {
+            byte[] data = random.getBytes(1000);
+            store.appendBlock(1, data);
+            expected = ByteArrayTool.add(expected, data);
+        }
+        Assert.assertTrue(Arrays.equals(expected, store.readBlock(1)));
+        Assert.assertEquals(expected.length + 10, store.getStoreSize());
+        Assert.assertEquals(10, store.readBlock(2).length);
+        // 64KB slab and 128KB dedicated buffer
+        Assert.assertEquals(SLAB_SIZE + 128 * 1024, store.getAllocatedMemory());
+
+        // shrink back to slab, dedicated buffer is released
+        Assert.assertTrue(store.writeBlock(1, random.getBytes(100)));
+        Assert.assertEquals(SLAB_SIZE, store.getAllocatedMemory());
+        Assert.assertEquals(110, store.getStoreSize());
+    }
+
+    @Test
+    public void testDedicatedReuse() throws Exception {
+        RandomTool random = new RandomTool(4716);
+        BlockStoreOffHeapImpl store = new BlockStoreOffHeapImpl(1024 * 1024, SLAB_SIZE);
+        // rewrites of large blocks reuse the slots of released dedicated buffers
+        for (int i = 0; i < 100; i++) {
+            byte[] data = random.getBytes(SLAB_SIZE + i);
+            store.writeBlock(1, data);
+            store.writeBlock(2, random.getBytes(i % 2 == 0 ? 10 : SLAB_SIZE * 2));
+            Assert.assertTrue(Arrays.equals(data, store.readBlock(1)));
+        }
+        Assert.assertTrue("buffers: " + store.getBufferCount(), store.getBufferCount() <= 4);
+    }
+
+    @Test
+    public void testMemoryLimit() throws Exception {
+        RandomTool random = new RandomTool(4715);
+        BlockStoreOffHeapImpl store = new BlockStoreOffHeapImpl(SLAB_SIZE * 2, SLAB_SIZE);
+        byte[] data = random.getBytes(SLAB_SIZE / 2);
+        for (int i = 0; i < 4; i++) {
+            store.writeBlock(i, data);
+        }
+        try {
+            store.writeBlock(5, data);
+            Assert.fail();
+        }
+        catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().startsWith("memory limit exceeded"));
+        }
+        // failed write leaves store unchanged
+        Assert.assertEquals(4, store.getBlockCount());
+        Assert.assertNull(store.readBlock(5));
+        // overwrite reuses the region
+        Assert.assertTrue(store.writeBlock(3, data));
+        Assert.assertEquals(SLAB_SIZE * 2, store.getAllocatedMemory());
+    }
+
+    @Test
+    public void testManyKeys() throws Exception {
+        BlockStoreOffHeapImpl store = new BlockStoreOffHeapImpl(1024 * 1024 * 16, SLAB_SIZE);
+        int keyCount = 100000;
+        for (long key = -keyCount; key < keyCount; key += 2) {
+            Assert.assertFalse(store.writeBlock(key * 1000, ByteBuffer.allocate(8).putLong(key).array()));
+        }
+        Assert.assertEquals(keyCount, store.getBlockCount());
+        for (long key = -keyCount; key < keyCount; key++) {
+            byte[] data = store.readBlock(key * 1000);
+            if (key % 2 == 0) {
+                Assert.assertEquals(key, ByteBuffer.wrap(data).getLong());
+            }
+            else {
+                Assert.assertNull(data);
+            }
+        }
+    }
+}
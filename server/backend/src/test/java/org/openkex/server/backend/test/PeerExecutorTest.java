@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.server.api.ServerApi;
+import org.openkex.server.backend.PeerExecutor;
+import org.openkex.server.backend.ServerData;
+import org.openkex.server.backend.ServerRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+public class PeerExecutorTest {
+
+    @Test
+    public void testCallAll() throws Exception {
+        Registry registry = new Registry();
+        registry.add("own", 0, false);
+        for (int i = 0; i < 10; i++) {
+            registry.add("ok" + i, 200, false);
+        }
+        registry.add("failing", 0, true);
+        registry.add("slow", 5000, false);
+
+        PeerExecutor executor = new PeerExecutor(registry, 16, 1000);
+        long start = System.currentTimeMillis();
+        LinkedHashMap<ServerData, byte[]> results = executor.callAll("own", "getHash", api -> api.getHash(7));
+        long time = System.currentTimeMillis() - start;
+        executor.shutdown();
+
+        // parallel: about timeout, not sum of delays
+        Assert.assertTrue("time=" + time, time < 3000);
+        // partial result in registry order, own, failing and slow server missing
+        Assert.assertEquals(10, results.size());
+        int i = 0;
+        for (ServerData server : results.keySet()) {
+            Assert.assertEquals("ok" + i, server.getServerId());
+            Assert.assertEquals(server.getServerId() + ":7", new String(results.get(server)));
+            i++;
+        }
+    }
+
+    private static class Registry implements ServerRegistry {
+
+        private LinkedHashMap<String, ServerData> servers = new LinkedHashMap<>();
+        private LinkedHashMap<String, ServerApi> proxies = new LinkedHashMap<>();
+
+        private void add(String serverId, long delay, boolean fail) {
+            servers.put(serverId, new ServerData(serverId, "", "", SignatureAlgorithm.DUMMY, new byte[0]));
+            proxies.put(serverId, new Server(serverId, delay, fail));
+        }
+
+        @Override
+        public List<ServerData> getAllServers() {
+            return new ArrayList<>(servers.values());
+        }
+
+        @Override
+        public ServerData getById(String serverId) {
+            return servers.get(serverId);
+        }
+
+        @Override
+        public ServerApi getProxy(String serverId) {
+            return proxies.get(serverId);
+        }
+    }
+
+    private static class Server implements ServerApi {
+
+        private String serverId;
+        private long delay;
+        private boolean fail;
+
+        Server(String serverId, long delay, boolean fail) {
+            this.serverId = serverId;
+            this.delay = delay;
+            this.fail = fail;
+        }
+
+        @Override
+        public byte[] getHash(long roundNr) throws Exception {
+            Thread.sleep(delay);
+            if (fail) {
+                throw new RuntimeException("simulated failure");
+            }
+            return (serverId + ":" + roundNr).getBytes();
+        }
+
+        @Override
+        public List<SignedStatements> newStatements(long roundNr) throws Exception {
+            return null;
+        }
+
+        @Override
+        public byte[] getSignature(long roundNr) throws Exception {
+            return null;
+        }
+
+        @Override
+        public List<SignedStatements> getConfirmedStatements(long roundNr) throws Exception {
+            return null;
+        }
+    }
+}
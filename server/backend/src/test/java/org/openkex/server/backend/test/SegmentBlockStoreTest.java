@@ -0,0 +1,266 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.server.backend.BlockStoreApi;
+import org.openkex.server.backend.BlockStoreSegmentImpl;
+import org.openkex.server.backend.SyncPolicy;
+import org.openkex.tools.DirectoryTool;
+import org.openkex.tools.RandomTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class SegmentBlockStoreTest extends AbstractBlockStoreTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentBlockStoreTest.class);
+
+    // small segments to test segment switch
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    private BlockStoreSegmentImpl store;
+
+    @Override
+    protected BlockStoreApi getBlockStore() throws Exception {
+        String path = getPath();
+        deleteDirectory(new File(path));
+        store = new BlockStoreSegmentImpl(path, SEGMENT_SIZE);
+        return store;
+    }
+
+    @Override
+    protected int getSizeLimit() {
+        return 1024 * 1024 * 32; // 32MB for segment based store
+    }
+
+    @After
+    public void close() throws Exception {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        RandomTool random = new RandomTool(4711);
+        getBlockStore();
+        byte[] data1 = random.getBytes(SEGMENT_SIZE / 3);
+        byte[] data2 = random.getBytes(SEGMENT_SIZE / 2);
+        byte[] data3 = random.getBytes(SEGMENT_SIZE * 2); // larger than segment
+        store.writeBlock(3, data1);
+        store.writeBlock(1, data2);
+        store.writeBlock(2, data3);
+        store.appendBlock(3, data2);
+        store.close();
+
+        store = new BlockStoreSegmentImpl(getPath(), SEGMENT_SIZE);
+        Assert.assertEquals(3, store.getBlockCount());
+        Assert.assertEquals(data1.length + data2.length * 2 + data3.length, store.getStoreSize());
+        Assert.assertTrue(Arrays.equals(data2, store.readBlock(1)));
+        Assert.assertTrue(Arrays.equals(data3, store.readBlock(2)));
+        byte[] data13 = store.readBlock(3);
+        Assert.assertTrue(Arrays.equals(data1, Arrays.copyOfRange(data13, 0, data1.length)));
+        Assert.assertTrue(Arrays.equals(data2, Arrays.copyOfRange(data13, data1.length, data13.length)));
+
+        // continue writing after reopen
+        Assert.assertFalse(store.writeBlock(4, data1));
+        Assert.assertTrue(Arrays.equals(data1, store.readBlock(4)));
+    }
+
+    @Test
+    public void testPartialWrite() throws Exception {
+        RandomTool random = new RandomTool(4712);
+        getBlockStore();
+        byte[] data1 = random.getBytes(1000);
+        byte[] data2 = random.getBytes(2000);
+        store.writeBlock(1, data1);
+        store.writeBlock(2, data2);
+        store.close();
+
+        // simulate crash: damage data of last record
+        File segment = new File(getPath(), "000000.seg");
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek(20 + data1.length + 20 + 100);
+        file.write(new byte[] {1, 2, 3});
+        file.close();
+
+        store = new BlockStoreSegmentImpl(getPath(), SEGMENT_SIZE);
+        Assert.assertEquals(1, store.getBlockCount());
+        Assert.assertTrue(Arrays.equals(data1, store.readBlock(1)));
+        Assert.assertNull(store.readBlock(2));
+
+        // write again, shorter block
+        Assert.assertFalse(store.writeBlock(2, data1));
+        store.close();
+        store = new BlockStoreSegmentImpl(getPath(), SEGMENT_SIZE);
+        Assert.assertEquals(2, store.getBlockCount());
+        Assert.assertTrue(Arrays.equals(data1, store.readBlock(2)));
+    }
+
+    @Test
+    public void testSyncPolicy() throws Exception {
+        byte[] data = new RandomTool(4713).getBytes(100);
+        getBlockStore();
+        store.writeBlock(1, data);
+        Assert.assertEquals(0, store.getSyncCount());
+        store.sync();
+        Assert.assertEquals(1, store.getSyncCount());
+        store.sync(); // nothing written
+        Assert.assertEquals(1, store.getSyncCount());
+        store.close();
+
+        store = new BlockStoreSegmentImpl(getPath(), SEGMENT_SIZE, SyncPolicy.PER_WRITE, 0);
+        store.writeBlock(2, data);
+        store.appendBlock(2, data);
+        Assert.assertEquals(2, store.getSyncCount());
+        store.close();
+
+        store = new BlockStoreSegmentImpl(getPath(), SEGMENT_SIZE, SyncPolicy.PER_ROUND, 0);
+        store.writeBlock(3, data);
+        store.appendBlock(3, data);
+        store.appendBlock(3, data);
+        Assert.assertEquals(1, store.getSyncCount());
+        store.writeBlock(4, data);
+        Assert.assertEquals(2, store.getSyncCount());
+        store.close();
+
+        store = new BlockStoreSegmentImpl(getPath(), SEGMENT_SIZE, SyncPolicy.INTERVAL, 10);
+        store.writeBlock(5, data);
+        long end = System.currentTimeMillis() + 5000;
+        while (store.getSyncCount() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, store.getSyncCount());
+        Assert.assertEquals(5, store.getBlockCount());
+        Assert.assertEquals(data.length * 8, store.getStoreSize());
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        int threads = 8;
+        deleteDirectory(new File(getPath()));
+        CountDownLatch release = new CountDownLatch(1);
+        SlowSyncStore slowStore = new SlowSyncStore(getPath(), release);
+        store = slowStore;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            // first writer holds the force, the others write and wait for it
+            futures.add(executor.submit(() -> slowStore.writeBlock(0, "block0".getBytes())));
+            Assert.assertTrue(slowStore.forceStarted.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < threads; i++) {
+                long round = i;
+                futures.add(executor.submit(() -> slowStore.writeBlock(round, ("block" + round).getBytes())));
+            }
+            long end = System.currentTimeMillis() + 5000;
+            while (slowStore.getBlockCount() < threads && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(threads, slowStore.getBlockCount());
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        // first force and one force for all waiting writers
+        Assert.assertEquals(2, store.getSyncCount());
+        Assert.assertTrue(store.getSyncCount() < threads);
+        store.close();
+
+        store = new BlockStoreSegmentImpl(getPath(), SEGMENT_SIZE);
+        Assert.assertEquals(threads, store.getBlockCount());
+        for (long round = 0; round < threads; round++) {
+            Assert.assertTrue(Arrays.equals(("block" + round).getBytes(), store.readBlock(round)));
+        }
+    }
+
+    @Test
+    public void testSyncFailure() throws Exception {
+        deleteDirectory(new File(getPath()));
+        FailingSyncStore failingStore = new FailingSyncStore(getPath());
+        store = failingStore;
+        failingStore.writeBlock(1, new byte[] {1, 2, 3});
+        failingStore.failing = true;
+        try {
+            failingStore.sync();
+            Assert.fail();
+        }
+        catch (IOException e) {
+            LOG.info("expected: " + e);
+        }
+        // segment is still dirty and forced by next sync
+        failingStore.failing = false;
+        failingStore.sync();
+        Assert.assertEquals(1, failingStore.forceCount);
+        Assert.assertEquals(1, failingStore.getSyncCount());
+    }
+
+    private String getPath() throws Exception {
+        return DirectoryTool.getTargetDirectory(this.getClass()) + "SegmentBlockStoreTest";
+    }
+
+    // first force waits for release
+    private static class SlowSyncStore extends BlockStoreSegmentImpl {
+
+        private CountDownLatch forceStarted = new CountDownLatch(1);
+        private CountDownLatch release;
+
+        SlowSyncStore(String path, CountDownLatch release) throws Exception {
+            super(path, SEGMENT_SIZE, SyncPolicy.PER_WRITE, 0);
+            this.release = release;
+        }
+
+        @Override
+        protected void force(FileChannel channel) throws IOException {
+            forceStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            super.force(channel);
+        }
+    }
+
+    private static class FailingSyncStore extends BlockStoreSegmentImpl {
+
+        private volatile boolean failing;
+        private int forceCount;
+
+        FailingSyncStore(String path) throws Exception {
+            super(path, SEGMENT_SIZE, SyncPolicy.NONE, 0);
+        }
+
+        @Override
+        protected void force(FileChannel channel) throws IOException {
+            if (failing) {
+                throw new IOException("force failed");
+            }
+            forceCount++;
+            super.force(channel);
+        }
+    }
+}
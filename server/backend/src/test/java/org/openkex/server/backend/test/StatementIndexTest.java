@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.Statements;
+import org.openkex.serializer.ProtobufSerializer;
+import org.openkex.server.backend.BlockStoreHashImpl;
+import org.openkex.server.backend.BlockStoreMemoryImpl;
+import org.openkex.server.backend.BlockTool;
+import org.openkex.server.backend.StatementIndex;
+import org.openkex.tools.DirectoryTool;
+import org.openkex.tools.RandomTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StatementIndexTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementIndexTest.class);
+
+    private RandomTool random = new RandomTool(4719);
+
+    @Test
+    public void testIndex() throws Exception {
+        String path = DirectoryTool.getTargetDirectory(this.getClass()) + "StatementIndexTest";
+        new FileBlockStoreTest().deleteDirectory(new File(path));
+        ProtobufSerializer serializer = new ProtobufSerializer();
+
+        SignedStatements a1 = createStatements(0x010203040506L);
+        SignedStatements b1 = createStatements(2);
+        SignedStatements a2 = createStatements(0x010203040506L);
+        SignedStatements c1 = createStatements(3);
+
+        BlockStoreHashImpl store = new BlockStoreHashImpl(path);
+        StatementIndex index = new StatementIndex(store, serializer, 1);
+        index.add(Arrays.asList(a1, b1));
+        Assert.assertEquals(Arrays.asList(a1), index.get(0x010203040506L));
+        // cached list is updated
+        index.add(Arrays.asList(a2, c1));
+        Assert.assertEquals(Arrays.asList(a1, a2), index.get(0x010203040506L));
+        // loaded from store
+        Assert.assertEquals(Arrays.asList(b1), index.get(2));
+        Assert.assertNull(index.get(4));
+        Assert.assertEquals(3, index.size());
+        try {
+            index.get(2).add(c1);
+            Assert.fail();
+        }
+        catch (UnsupportedOperationException e) {
+            LOG.info("expected exception, list is unmodifiable: " + e);
+        }
+        store.close();
+
+        // restart without replay
+        store = new BlockStoreHashImpl(path);
+        index = new StatementIndex(store, serializer);
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(Arrays.asList(a1, a2), index.get(0x010203040506L));
+        Assert.assertEquals(Arrays.asList(c1), index.get(3));
+        store.close();
+    }
+
+    @Test
+    public void testAbsentKexId() throws Exception {
+        CountingStore store = new CountingStore();
+        StatementIndex index = new StatementIndex(store, new ProtobufSerializer());
+        Assert.assertNull(index.get(5));
+        Assert.assertNull(index.get(5));
+        // absence is cached
+        Assert.assertEquals(1, store.reads);
+
+        SignedStatements a1 = createStatements(5);
+        index.add(Arrays.asList(a1));
+        Assert.assertEquals(1, store.reads);
+        Assert.assertEquals(Arrays.asList(a1), index.get(5));
+        SignedStatements a2 = createStatements(5);
+        index.add(Arrays.asList(a2));
+        Assert.assertEquals(Arrays.asList(a1, a2), index.get(5));
+        Assert.assertEquals(1, store.reads);
+        Assert.assertEquals(1, index.size());
+
+        // existing block of uncached kexId is not read to append
+        index = new StatementIndex(store, new ProtobufSerializer());
+        SignedStatements a3 = createStatements(5);
+        index.add(Arrays.asList(a3));
+        Assert.assertEquals(1, store.reads);
+        Assert.assertEquals(Arrays.asList(a1, a2, a3), index.get(5));
+    }
+
+    @Test
+    public void testInvalidKexId() throws Exception {
+        StatementIndex index = new StatementIndex(new BlockStoreMemoryImpl(), new ProtobufSerializer());
+        List<SignedStatements> statements = new ArrayList<>();
+        statements.add(createStatements(1L << 48));
+        try {
+            index.add(statements);
+            Assert.fail();
+        }
+        catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("invalid kexId"));
+        }
+    }
+
+    private SignedStatements createStatements(long kexId) {
+        StatementClaimKexId claim = new StatementClaimKexId(SignatureAlgorithm.ECDSA_SECP256K1, random.getBytes(33));
+        Statements statements = new Statements(kexId, 0, null, BlockTool.INVALID_ROUND, claim, null, null);
+        return new SignedStatements(statements, random.getBytes(64));
+    }
+
+    private static class CountingStore extends BlockStoreMemoryImpl {
+
+        private int reads;
+
+        @Override
+        public synchronized ByteBuffer readBlockBuffer(long roundNr) throws Exception {
+            reads++;
+            return super.readBlockBuffer(roundNr);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.Statements;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.serializer.ProtobufSerializer;
+import org.openkex.serializer.SerializeService;
+import org.openkex.server.backend.BlockTool;
+import org.openkex.server.backend.StatementRecord;
+import org.openkex.tools.RandomTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+public class StatementRecordTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementRecordTest.class);
+
+    @Test
+    public void testEncoding() throws Exception {
+        RandomTool random = new RandomTool();
+        for (SerializeService serializer : Arrays.asList(new ProtobufSerializer(), new ProtobufCodecSerializer())) {
+            // large key to get a two byte length
+            for (int keySize : new int[] {33, 200}) {
+                SignedStatements statements = createStatements(random, keySize);
+                checkRecord(new StatementRecord(statements, serializer), serializer);
+            }
+        }
+    }
+
+    @Test
+    public void testOtherEncoding() throws Exception {
+        // serializer without protocol buffer layout, signed bytes are serialized separately
+        SerializeService serializer = new ReversingSerializer(new ProtobufSerializer());
+        StatementRecord record = new StatementRecord(createStatements(new RandomTool(), 33), serializer);
+        Assert.assertEquals(0, record.getSignedOffset());
+        checkRecord(record, serializer);
+    }
+
+    @Test
+    public void testMissingStatements() throws Exception {
+        StatementRecord record = new StatementRecord(new SignedStatements(null, new byte[] {1}), new ProtobufSerializer());
+        try {
+            record.getLeafHash();
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+    }
+
+    private void checkRecord(StatementRecord record, SerializeService serializer) throws Exception {
+        SignedStatements statements = record.getStatements();
+        byte[] encoded = record.getEncoded();
+        Assert.assertArrayEquals(serializer.serialize(statements), encoded);
+        byte[] signed = Arrays.copyOfRange(record.getSignedBytes(), record.getSignedOffset(), record.getSignedOffset() + record.getSignedLength());
+        Assert.assertArrayEquals(serializer.serialize(statements.getStatements()), signed);
+        byte[] hash = MessageDigest.getInstance(StatementRecord.LEAF_HASH_ALGORITHM).digest(encoded);
+        Assert.assertArrayEquals(hash, record.getLeafHash());
+        // cached
+        Assert.assertSame(encoded, record.getEncoded());
+        Assert.assertSame(record.getLeafHash(), record.getLeafHash());
+    }
+
+    private SignedStatements createStatements(RandomTool random, int keySize) {
+        StatementClaimKexId claim = new StatementClaimKexId(SignatureAlgorithm.ECDSA_SECP256K1, random.getBytes(keySize));
+        Statements statements = new Statements(4711, 1500000000L, null, BlockTool.INVALID_ROUND, claim, null, null);
+        return new SignedStatements(statements, random.getBytes(64));
+    }
+
+    // reversed bytes, deterministic but not protocol buffer format
+    private static class ReversingSerializer implements SerializeService {
+
+        private SerializeService serializer;
+
+        ReversingSerializer(SerializeService serializer) {
+            this.serializer = serializer;
+        }
+
+        @Override
+        public byte[] serialize(Object obj) throws Exception {
+            byte[] bytes = serializer.serialize(obj);
+            for (int i = 0; i < bytes.length / 2; i++) {
+                byte b = bytes[i];
+                bytes[i] = bytes[bytes.length - 1 - i];
+                bytes[bytes.length - 1 - i] = b;
+            }
+            return bytes;
+        }
+
+        @Override
+        public void serialize(Object obj, OutputStream out) throws Exception {
+            out.write(serialize(obj));
+        }
+
+        @Override
+        public void serialize(Object obj, MessageDigest digest) throws Exception {
+            digest.update(serialize(obj));
+        }
+
+        @Override
+        public void serialize(Object obj, ByteBuffer buffer) throws Exception {
+            buffer.put(serialize(obj));
+        }
+
+        @Override
+        public <T> T deserialize(byte[] bytes, Class<T> type) throws Exception {
+            throw new Exception("not implemented");
+        }
+
+        @Override
+        public void warmUp() throws Exception {
+            serializer.warmUp();
+        }
+    }
+}
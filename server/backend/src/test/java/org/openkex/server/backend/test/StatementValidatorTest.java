@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.backend.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.Statements;
+import org.openkex.keystore.api.KeyStore;
+import org.openkex.keystore.memory.JavaMemoryKeyStore;
+import org.openkex.serializer.ProtobufSerializer;
+import org.openkex.serializer.SerializeService;
+import org.openkex.server.backend.BlockTool;
+import org.openkex.server.backend.ServerCore;
+import org.openkex.server.backend.StatementException;
+import org.openkex.server.backend.StatementRecord;
+import org.openkex.server.backend.StatementValidatorImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class StatementValidatorTest {
+
+    private static final String KEY_ID = "client";
+
+    @Test
+    public void testValidateAll() throws Exception {
+        SimulatedServers servers = new SimulatedServers();
+        ServerCore core = servers.addDummyCore(servers.getDummyServerId(0));
+        SerializeService serializer = new ProtobufSerializer();
+        KeyStore keyStore = new JavaMemoryKeyStore();
+        byte[] key = keyStore.generateKey(SignatureAlgorithm.ECDSA_SECP256K1, KEY_ID).getPublicKey();
+
+        int count = 100;
+        List<StatementRecord> statements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Statements claim = new Statements(1000 + i, 0, null, BlockTool.INVALID_ROUND,
+                new StatementClaimKexId(SignatureAlgorithm.ECDSA_SECP256K1, key), null, null);
+            byte[] signature = keyStore.sign(KEY_ID, serializer.serialize(claim));
+            if (i % 7 == 3) {
+                // sign other data
+                signature = keyStore.sign(KEY_ID, new byte[] {(byte) i});
+            }
+            statements.add(new StatementRecord(new SignedStatements(claim, signature), serializer));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Exception[] results = new StatementValidatorImpl(core, pool).validateAll(statements);
+            Assert.assertEquals(count, results.length);
+            for (int i = 0; i < count; i++) {
+                if (i % 7 == 3) {
+                    Assert.assertTrue(results[i] instanceof StatementException);
+                    Assert.assertTrue(results[i].getMessage().startsWith("signature is invalid"));
+                }
+                else {
+                    Assert.assertNull(results[i]);
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc;
+
+import org.openkex.serializer.SerializeService;
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * persistent connection to a {@link RpcServer}.
+ * <p>
+ * thread safe, concurrent calls are multiplexed on the connection (matched by request id).
+ * a reader thread (daemon) completes the calls. if the connection fails all pending and later calls fail,
+ * a new client must be created.
+ */
+public class RpcClient implements Closeable {
+
+    /** default timeout of calls in milliseconds */
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(RpcClient.class);
+
+    private InetSocketAddress address;
+    private SerializeService serializer;
+    private SocketChannel channel;
+    private Thread reader;
+    private long timeout = DEFAULT_TIMEOUT;
+
+    private AtomicInteger nextRequestId = new AtomicInteger();
+    private ConcurrentHashMap<Integer, CompletableFuture<ByteBuffer>> pending = new ConcurrentHashMap<>();
+    private Object writeLock = new Object();
+    private volatile boolean closed;
+
+    /**
+     * connect to server
+     *
+     * @param address address of server
+     * @param serializer serializer of objects, must match server
+     * @throws Exception if connect failed
+     */
+    public RpcClient(InetSocketAddress address, SerializeService serializer) throws Exception {
+        Validate.notNull(address);
+        Validate.notNull(serializer);
+        this.address = address;
+        this.serializer = serializer;
+        this.channel = SocketChannel.open(address);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.reader = new Thread(this::runReader, "rpc-reader-" + address);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * @param timeout timeout of calls in milliseconds
+     */
+    public void setTimeout(long timeout) {
+        Validate.isTrue(timeout > 0, "invalid timeout: " + timeout);
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return true if connection is closed or failed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * close connection, pending calls fail
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            LOG.debug("close failed: " + e);
+        }
+        failPending();
+    }
+
+    RpcOutput request(RpcMethod method) {
+        return new RpcOutput(serializer, nextRequestId.incrementAndGet(), method.getCode());
+    }
+
+    RpcInput call(RpcOutput request) throws Exception {
+        int requestId = request.getRequestId();
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        pending.put(requestId, future);
+        try {
+            // checked after registration, close fails registered calls
+            if (closed) {
+                throw new Exception("connection closed: " + address);
+            }
+            ByteBuffer frame = request.toFrame();
+            try {
+                synchronized (writeLock) {
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                }
+            }
+            catch (IOException e) {
+                close();
+                throw new Exception("connection failed: " + address, e);
+            }
+            ByteBuffer response = future.get(timeout, TimeUnit.MILLISECONDS);
+            int status = response.get();
+            RpcInput input = new RpcInput(response, serializer);
+            if (status != RpcServer.STATUS_OK) {
+                throw new Exception("remote call failed: " + input.readString());
+            }
+            return input;
+        }
+        catch (ExecutionException e) {
+            throw new Exception("connection failed: " + address, e.getCause());
+        }
+        catch (TimeoutException e) {
+            throw new Exception("timeout of call to " + address + " after " + timeout + "ms");
+        }
+        finally {
+            pending.remove(requestId);
+        }
+    }
+
+    private void runReader() {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try {
+            while (true) {
+                header.clear();
+                readFully(header);
+                int length = header.getInt(0);
+                if (length < RpcServer.HEADER_SIZE || length > RpcServer.MAX_FRAME_SIZE) {
+                    throw new IOException("invalid frame length: " + length);
+                }
+                ByteBuffer frame = ByteBuffer.allocate(length);
+                readFully(frame);
+                frame.flip();
+                int requestId = frame.getInt();
+                CompletableFuture<ByteBuffer> future = pending.get(requestId);
+                if (future != null) {
+                    future.complete(frame);
+                }
+                else {
+                    LOG.debug("dropped response of request " + requestId + " (timeout)");
+                }
+            }
+        }
+        catch (Exception e) {
+            if (!closed) {
+                LOG.warn("connection to " + address + " failed: " + e);
+            }
+        }
+        finally {
+            // release socket, pending calls fail
+            close();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("connection closed by " + address);
+            }
+        }
+    }
+
+    private void failPending() {
+        IOException exception = new IOException("connection closed: " + address);
+        for (CompletableFuture<ByteBuffer> future : pending.values()) {
+            future.completeExceptionally(exception);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc;
+
+import org.openkex.client.api.ClientApi;
+import org.openkex.dto.SignedStatements;
+import org.openkex.tools.Validate;
+
+import java.util.List;
+
+/**
+ * {@link ClientApi} calling a {@link RpcServer}, alternative to the hessian proxy.
+ */
+public class RpcClientProxy implements ClientApi {
+
+    private RpcClient client;
+
+    /**
+     * @param client connection to server (may be shared with other proxies)
+     */
+    public RpcClientProxy(RpcClient client) {
+        Validate.notNull(client);
+        this.client = client;
+    }
+
+    @Override
+    public byte[] getSessionChallenge(long kexId) throws Exception {
+        RpcOutput request = client.request(RpcMethod.GET_SESSION_CHALLENGE);
+        request.writeLong(kexId);
+        return client.call(request).readBytes();
+    }
+
+    @Override
+    public byte[] startKexSession(long kexId, byte[] signature) throws Exception {
+        RpcOutput request = client.request(RpcMethod.START_KEX_SESSION);
+        request.writeLong(kexId);
+        request.writeBytes(signature);
+        return client.call(request).readBytes();
+    }
+
+    @Override
+    public long submitStatement(SignedStatements statement, byte[] authToken) throws Exception {
+        RpcOutput request = client.request(RpcMethod.SUBMIT_STATEMENT);
+        request.writeObject(statement);
+        request.writeBytes(authToken);
+        return client.call(request).readLong();
+    }
+
+    @Override
+    public List<SignedStatements> getStatements(long kexId) throws Exception {
+        RpcOutput request = client.request(RpcMethod.GET_STATEMENTS);
+        request.writeLong(kexId);
+        return client.call(request).readList(SignedStatements.class);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc;
+
+import org.openkex.serializer.SerializeService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * reads the payload of a frame, see {@link RpcOutput}
+ */
+class RpcInput {
+
+    /** length marking null */
+    static final int NULL_LENGTH = -1;
+
+    private ByteBuffer buffer;
+    private SerializeService serializer;
+
+    /**
+     * @param buffer payload, position is advanced
+     * @param serializer serializer for objects
+     */
+    RpcInput(ByteBuffer buffer, SerializeService serializer) {
+        this.buffer = buffer;
+        this.serializer = serializer;
+    }
+
+    int readInt() throws Exception {
+        check(4);
+        return buffer.getInt();
+    }
+
+    long readLong() throws Exception {
+        check(8);
+        return buffer.getLong();
+    }
+
+    byte[] readBytes() throws Exception {
+        int length = readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new Exception("invalid length: " + length);
+        }
+        check(length);
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    String readString() throws Exception {
+        byte[] bytes = readBytes();
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    <T> T readObject(Class<T> type) throws Exception {
+        byte[] bytes = readBytes();
+        return bytes == null ? null : serializer.deserialize(bytes, type);
+    }
+
+    <T> List<T> readList(Class<T> type) throws Exception {
+        int count = readInt();
+        if (count == NULL_LENGTH) {
+            return null;
+        }
+        // each element takes at least its length
+        if (count < 0 || count > buffer.remaining() / 4) {
+            throw new Exception("invalid count: " + count);
+        }
+        List<T> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readObject(type));
+        }
+        return values;
+    }
+
+    private void check(int length) throws Exception {
+        if (buffer.remaining() < length) {
+            throw new Exception("truncated frame, missing " + (length - buffer.remaining()) + " bytes");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc;
+
+/**
+ * remote methods of {@link org.openkex.server.api.ServerApi} and {@link org.openkex.client.api.ClientApi}.
+ * <p>
+ * the ordinal is the method code on the wire, new methods must be appended.
+ */
+public enum RpcMethod {
+
+    // ServerApi
+    NEW_STATEMENTS,
+    GET_HASH,
+    GET_SIGNATURE,
+    GET_CONFIRMED_STATEMENTS,
+
+    // ClientApi
+    GET_SESSION_CHALLENGE,
+    START_KEX_SESSION,
+    SUBMIT_STATEMENT,
+    GET_STATEMENTS;
+
+    private static final RpcMethod[] VALUES = values();
+
+    /**
+     * @return method code on the wire
+     */
+    public int getCode() {
+        return ordinal();
+    }
+
+    /**
+     * @param code method code on the wire
+     * @return according method
+     * @throws Exception if code is unknown
+     */
+    public static RpcMethod fromCode(int code) throws Exception {
+        if (code < 0 || code >= VALUES.length) {
+            throw new Exception("unknown method code: " + code);
+        }
+        return VALUES[code];
+    }
+}
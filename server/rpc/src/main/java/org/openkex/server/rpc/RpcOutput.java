@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc;
+
+import org.openkex.serializer.SerializeBuffer;
+import org.openkex.serializer.SerializeService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * writes a frame: length (int, excluding itself), request id (int), code (byte, method or status) and payload.
+ * <p>
+ * values are big endian, a length of -1 marks null. objects are serialized with the protocol buffer serializer.
+ */
+class RpcOutput {
+
+    private static final int INITIAL_SIZE = 256;
+
+    private SerializeBuffer buffer;
+    private SerializeService serializer;
+    private int requestId;
+
+    /**
+     * start frame
+     *
+     * @param serializer serializer for objects
+     * @param requestId id of request
+     * @param code method or status code
+     */
+    RpcOutput(SerializeService serializer, int requestId, int code) {
+        this.buffer = new SerializeBuffer(INITIAL_SIZE);
+        this.serializer = serializer;
+        this.requestId = requestId;
+        writeInt(0); // length, set by toFrame()
+        writeInt(requestId);
+        buffer.write(code);
+    }
+
+    int getRequestId() {
+        return requestId;
+    }
+
+    void writeInt(int value) {
+        buffer.write(value >>> 24);
+        buffer.write(value >>> 16);
+        buffer.write(value >>> 8);
+        buffer.write(value);
+    }
+
+    void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    void writeBytes(byte[] value) {
+        if (value == null) {
+            writeInt(RpcInput.NULL_LENGTH);
+            return;
+        }
+        writeInt(value.length);
+        buffer.write(value, 0, value.length);
+    }
+
+    void writeString(String value) {
+        writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void writeObject(Object value) throws Exception {
+        if (value == null) {
+            writeInt(RpcInput.NULL_LENGTH);
+            return;
+        }
+        int start = buffer.size();
+        writeInt(0);
+        serializer.serialize(value, buffer);
+        setInt(start, buffer.size() - start - 4);
+    }
+
+    void writeList(List<?> values) throws Exception {
+        if (values == null) {
+            writeInt(RpcInput.NULL_LENGTH);
+            return;
+        }
+        writeInt(values.size());
+        for (Object value : values) {
+            writeObject(value);
+        }
+    }
+
+    /**
+     * complete frame
+     *
+     * @return frame ready to write
+     */
+    ByteBuffer toFrame() {
+        setInt(0, buffer.size() - 4);
+        return ByteBuffer.wrap(buffer.getBuffer(), 0, buffer.size());
+    }
+
+    private void setInt(int offset, int value) {
+        byte[] bytes = buffer.getBuffer();
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc;
+
+import org.openkex.client.api.ClientApi;
+import org.openkex.dto.SignedStatements;
+import org.openkex.serializer.SerializeService;
+import org.openkex.server.api.ServerApi;
+import org.openkex.tools.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * serves {@link ServerApi} and {@link ClientApi} with length prefixed protocol buffer frames over persistent connections.
+ * <p>
+ * a selector thread accepts connections, reads frames and writes responses (non blocking).
+ * requests are executed by a bounded pool of daemon threads, responses are sent in order of completion
+ * (a client may have many requests in flight on one connection).
+ * <p>
+ * the number of waiting requests is limited (per worker thread and per connection). if a limit is reached
+ * the connection is not read until requests completed, the client is throttled by tcp flow control.
+ */
+public class RpcServer {
+
+    /** default port of runners (plain tcp, no tls) */
+    public static final int DEFAULT_PORT = 8090;
+
+    /** default maximum number of worker threads */
+    public static final int DEFAULT_THREADS = 32;
+
+    /** maximum number of requests of a connection waiting or executing */
+    public static final int MAX_IN_FLIGHT = 128;
+
+    /** maximum frame length (excluding length field), bound of responses (lists of statements) */
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    /** maximum request frame length (excluding length field), a request carries at most one signed statement */
+    public static final int MAX_REQUEST_SIZE = 256 * 1024;
+
+    /** response status success, payload is result */
+    public static final int STATUS_OK = 0;
+    /** response status error, payload is message */
+    public static final int STATUS_ERROR = 1;
+
+    // request id and code
+    static final int HEADER_SIZE = 5;
+
+    private static final Logger LOG = LoggerFactory.getLogger(RpcServer.class);
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    // waiting requests per worker thread
+    private static final int QUEUE_PER_THREAD = 8;
+
+    private static final AtomicInteger SERVER_NUMBER = new AtomicInteger();
+
+    private InetSocketAddress address;
+    private ServerApi serverApi;
+    private ClientApi clientApi;
+    private SerializeService serializer;
+    private int threads;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private ThreadPoolExecutor executor;
+    private Thread selectorThread;
+    private Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    // connections not read (limit reached), used by selector thread only
+    private Set<Connection> paused = new LinkedHashSet<>();
+    private volatile boolean running;
+
+    /**
+     * create server, call {@link #start()} to listen
+     *
+     * @param address address to listen on, port 0 for any free port
+     * @param serverApi server api implementation, null if not served
+     * @param clientApi client api implementation, null if not served
+     * @param serializer serializer of objects
+     * @param threads maximum number of parallel requests
+     */
+    public RpcServer(InetSocketAddress address, ServerApi serverApi, ClientApi clientApi, SerializeService serializer, int threads) {
+        Validate.notNull(address);
+        Validate.isTrue(serverApi != null || clientApi != null, "no api to serve");
+        Validate.notNull(serializer);
+        Validate.isTrue(threads > 0, "invalid thread count: " + threads);
+        this.address = address;
+        this.serverApi = serverApi;
+        this.clientApi = clientApi;
+        this.serializer = serializer;
+        this.threads = threads;
+    }
+
+    /**
+     * bind and start threads
+     *
+     * @throws Exception if bind failed
+     */
+    public synchronized void start() throws Exception {
+        Validate.isTrue(!running, "already started");
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        // actual port if bound to port 0
+        address = (InetSocketAddress) serverChannel.getLocalAddress();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        String prefix = "rpc-" + SERVER_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        running = true;
+        selectorThread = new Thread(this::runSelector, prefix + "selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        LOG.info("listening on " + address);
+    }
+
+    /**
+     * @return port listening on (the bound port if created with port 0)
+     * @throws Exception if not started
+     */
+    public int getPort() throws Exception {
+        Validate.notNull(serverChannel, "not started");
+        return address.getPort();
+    }
+
+    /**
+     * @return number of requests waiting for a worker thread
+     */
+    public int getQueuedRequests() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * close all connections and stop threads
+     *
+     * @throws Exception in case of interruption
+     */
+    public synchronized void stop() throws Exception {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        selectorThread.join();
+        executor.shutdownNow();
+        LOG.info("stopped " + address);
+    }
+
+    private void runSelector() {
+        try {
+            while (running) {
+                selector.select();
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    write(pending);
+                }
+                // requests completed, continue paused connections
+                if (!paused.isEmpty()) {
+                    resume();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write(connection);
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+            LOG.error("selector failed", e);
+        }
+        finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            }
+            catch (IOException e) {
+                LOG.warn("close failed: " + e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        LOG.debug("accepted " + channel.getRemoteAddress());
+    }
+
+    private void read(Connection connection) {
+        try {
+            if (connection.channel.read(connection.readBuffer) < 0) {
+                closeQuietly(connection.key);
+                return;
+            }
+            dispatch(connection);
+            if (connection.paused) {
+                paused.add(connection);
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("read failed, closing connection: " + e);
+            closeQuietly(connection.key);
+        }
+    }
+
+    private void resume() {
+        Iterator<Connection> connections = paused.iterator();
+        while (connections.hasNext()) {
+            Connection connection = connections.next();
+            if (!connection.key.isValid()) {
+                connections.remove();
+                continue;
+            }
+            try {
+                dispatch(connection);
+            }
+            catch (IOException e) {
+                LOG.warn("read failed, closing connection: " + e);
+                closeQuietly(connection.key);
+            }
+            if (!connection.paused || !connection.key.isValid()) {
+                connections.remove();
+            }
+        }
+    }
+
+    // execute complete frames of read buffer, pause reading if a limit is reached
+    private void dispatch(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        boolean limited = false;
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < HEADER_SIZE || length > MAX_REQUEST_SIZE) {
+                throw new IOException("invalid frame length: " + length);
+            }
+            if (buffer.remaining() < 4 + length) {
+                break;
+            }
+            if (connection.inFlight.get() >= MAX_IN_FLIGHT) {
+                limited = true;
+                break;
+            }
+            byte[] frame = new byte[length];
+            buffer.position(start + 4);
+            buffer.get(frame);
+            connection.inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> process(connection, frame));
+            }
+            catch (RejectedExecutionException e) {
+                // queue of workers is full, frame is kept
+                connection.inFlight.decrementAndGet();
+                buffer.position(start);
+                limited = true;
+                break;
+            }
+        }
+        buffer.compact();
+        // grow for large frame, doubled when full (allocation follows received data, not the announced length)
+        if (buffer.position() >= 4 && !buffer.hasRemaining()) {
+            int required = 4 + buffer.getInt(0);
+            if (required > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.min(required, buffer.capacity() * 2));
+                buffer.flip();
+                larger.put(buffer);
+                connection.readBuffer = larger;
+            }
+        }
+        if (limited != connection.paused) {
+            connection.paused = limited;
+            int ops = connection.key.interestOps();
+            connection.key.interestOps(limited ? ops & ~SelectionKey.OP_READ : ops | SelectionKey.OP_READ);
+        }
+    }
+
+    private void write(Connection connection) {
+        try {
+            int ops = connection.paused ? 0 : SelectionKey.OP_READ;
+            ByteBuffer frame;
+            while ((frame = connection.writes.peek()) != null) {
+                connection.channel.write(frame);
+                if (frame.hasRemaining()) {
+                    connection.key.interestOps(ops | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.writes.poll();
+            }
+            connection.key.interestOps(ops);
+        }
+        catch (IOException | CancelledKeyException e) {
+            LOG.debug("write failed, closing connection: " + e);
+            closeQuietly(connection.key);
+        }
+    }
+
+    private void process(Connection connection, byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        int requestId = buffer.getInt();
+        int code = buffer.get();
+        ByteBuffer response = null;
+        try {
+            response = invoke(requestId, code, new RpcInput(buffer, serializer));
+        }
+        catch (Throwable e) {
+            // also errors (e.g. of implementation), the client must get an answer
+            LOG.debug("request " + requestId + " failed: " + e);
+            RpcOutput output = new RpcOutput(serializer, requestId, STATUS_ERROR);
+            output.writeString(e.toString());
+            response = output.toFrame();
+        }
+        finally {
+            // the request completed in any case, otherwise the connection stays paused
+            connection.inFlight.decrementAndGet();
+            if (response != null) {
+                connection.writes.add(response);
+            }
+            else {
+                // no error response possible, client fails on close
+                LOG.warn("request " + requestId + " failed without response, closing connection");
+                closeQuietly(connection.key);
+            }
+            pendingWrites.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    private ByteBuffer invoke(int requestId, int code, RpcInput input) throws Exception {
+        RpcMethod method = RpcMethod.fromCode(code);
+        RpcOutput output = new RpcOutput(serializer, requestId, STATUS_OK);
+        switch (method) {
+            case NEW_STATEMENTS:
+                output.writeList(getServerApi().newStatements(input.readLong()));
+                break;
+            case GET_HASH:
+                output.writeBytes(getServerApi().getHash(input.readLong()));
+                break;
+            case GET_SIGNATURE:
+                output.writeBytes(getServerApi().getSignature(input.readLong()));
+                break;
+            case GET_CONFIRMED_STATEMENTS:
+                output.writeList(getServerApi().getConfirmedStatements(input.readLong()));
+                break;
+            case GET_SESSION_CHALLENGE:
+                output.writeBytes(getClientApi().getSessionChallenge(input.readLong()));
+                break;
+            case START_KEX_SESSION:
+                long kexId = input.readLong();
+                output.writeBytes(getClientApi().startKexSession(kexId, input.readBytes()));
+                break;
+            case SUBMIT_STATEMENT:
+                SignedStatements statement = input.readObject(SignedStatements.class);
+                output.writeLong(getClientApi().submitStatement(statement, input.readBytes()));
+                break;
+            case GET_STATEMENTS:
+                output.writeList(getClientApi().getStatements(input.readLong()));
+                break;
+            default:
+                throw new Exception("unsupported method: " + method);
+        }
+        return output.toFrame();
+    }
+
+    private ServerApi getServerApi() throws Exception {
+        if (serverApi == null) {
+            throw new Exception("server api not served");
+        }
+        return serverApi;
+    }
+
+    private ClientApi getClientApi() throws Exception {
+        if (clientApi == null) {
+            throw new Exception("client api not served");
+        }
+        return clientApi;
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        }
+        catch (IOException e) {
+            LOG.debug("close failed: " + e);
+        }
+    }
+
+    private static final class Connection {
+
+        private final SocketChannel channel;
+        // written by workers, drained by selector thread
+        private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<>();
+        // requests waiting or executing
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // used by selector thread only
+        private SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private boolean paused;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc;
+
+import org.openkex.dto.SignedStatements;
+import org.openkex.server.api.ServerApi;
+import org.openkex.tools.Validate;
+
+import java.util.List;
+
+/**
+ * {@link ServerApi} calling a {@link RpcServer}, alternative to the hessian proxy.
+ */
+public class RpcServerProxy implements ServerApi {
+
+    private RpcClient client;
+
+    /**
+     * @param client connection to server (may be shared with other proxies)
+     */
+    public RpcServerProxy(RpcClient client) {
+        Validate.notNull(client);
+        this.client = client;
+    }
+
+    @Override
+    public List<SignedStatements> newStatements(long roundNr) throws Exception {
+        RpcOutput request = client.request(RpcMethod.NEW_STATEMENTS);
+        request.writeLong(roundNr);
+        return client.call(request).readList(SignedStatements.class);
+    }
+
+    @Override
+    public byte[] getHash(long roundNr) throws Exception {
+        RpcOutput request = client.request(RpcMethod.GET_HASH);
+        request.writeLong(roundNr);
+        return client.call(request).readBytes();
+    }
+
+    @Override
+    public byte[] getSignature(long roundNr) throws Exception {
+        RpcOutput request = client.request(RpcMethod.GET_SIGNATURE);
+        request.writeLong(roundNr);
+        return client.call(request).readBytes();
+    }
+
+    @Override
+    public List<SignedStatements> getConfirmedStatements(long roundNr) throws Exception {
+        RpcOutput request = client.request(RpcMethod.GET_CONFIRMED_STATEMENTS);
+        request.writeLong(roundNr);
+        return client.call(request).readList(SignedStatements.class);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc;
+
+import org.openkex.client.proxy.ServerProxy;
+import org.openkex.dto.SignedStatements;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.serializer.SerializeService;
+import org.openkex.server.api.ServerApi;
+import org.openkex.tools.Validate;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * creates {@link ServerApi} proxies of peer servers, the transport is selected by url.
+ * <p>
+ * "rpc://host:port" calls a {@link RpcServer}, other urls (http, https) call the hessian servlet (fallback).
+ * rpc connections are shared per address and created again if failed.
+ */
+public class ServerProxyFactory implements Closeable {
+
+    /** url scheme of rpc transport */
+    public static final String RPC_SCHEME = "rpc";
+
+    private SerializeService serializer;
+    private Map<InetSocketAddress, RpcClient> clients = new HashMap<>();
+
+    /**
+     * create factory with serializer of {@link RpcServer} started by the runners
+     */
+    public ServerProxyFactory() {
+        this(new ProtobufCodecSerializer());
+    }
+
+    /**
+     * @param serializer serializer of rpc transport, must match server
+     */
+    public ServerProxyFactory(SerializeService serializer) {
+        Validate.notNull(serializer);
+        this.serializer = serializer;
+    }
+
+    /**
+     * @param url url of server api
+     * @return proxy of server
+     * @throws Exception if url is invalid
+     */
+    public ServerApi create(String url) throws Exception {
+        URI uri = new URI(url);
+        if (!RPC_SCHEME.equals(uri.getScheme())) {
+            return new ServerProxy(url);
+        }
+        Validate.isTrue(uri.getHost() != null && uri.getPort() > 0, "invalid rpc url: " + url);
+        return new RpcPeer(new InetSocketAddress(uri.getHost(), uri.getPort()));
+    }
+
+    /**
+     * close all rpc connections
+     */
+    @Override
+    public synchronized void close() {
+        for (RpcClient client : clients.values()) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    // connect on first call and after failure (a peer may restart)
+    private synchronized RpcClient getClient(InetSocketAddress address) throws Exception {
+        RpcClient client = clients.get(address);
+        if (client == null || client.isClosed()) {
+            client = new RpcClient(address, serializer);
+            clients.put(address, client);
+        }
+        return client;
+    }
+
+    private class RpcPeer implements ServerApi {
+
+        private InetSocketAddress address;
+
+        private RpcPeer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public List<SignedStatements> newStatements(long roundNr) throws Exception {
+            return getProxy().newStatements(roundNr);
+        }
+
+        @Override
+        public byte[] getHash(long roundNr) throws Exception {
+            return getProxy().getHash(roundNr);
+        }
+
+        @Override
+        public byte[] getSignature(long roundNr) throws Exception {
+            return getProxy().getSignature(roundNr);
+        }
+
+        @Override
+        public List<SignedStatements> getConfirmedStatements(long roundNr) throws Exception {
+            return getProxy().getConfirmedStatements(roundNr);
+        }
+
+        private ServerApi getProxy() throws Exception {
+            return new RpcServerProxy(getClient(address));
+        }
+    }
+}
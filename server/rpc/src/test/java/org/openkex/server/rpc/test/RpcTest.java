@@ -0,0 +1,342 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.server.rpc.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openkex.client.api.ClientApi;
+import org.openkex.client.proxy.ServerProxy;
+import org.openkex.dto.SignatureAlgorithm;
+import org.openkex.dto.SignedStatements;
+import org.openkex.dto.StatementClaimKexId;
+import org.openkex.dto.Statements;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.serializer.SerializeService;
+import org.openkex.server.api.ServerApi;
+import org.openkex.server.rpc.RpcClient;
+import org.openkex.server.rpc.RpcClientProxy;
+import org.openkex.server.rpc.RpcServer;
+import org.openkex.server.rpc.RpcServerProxy;
+import org.openkex.server.rpc.ServerProxyFactory;
+import org.openkex.tools.RandomTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class RpcTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RpcTest.class);
+
+    private static final long UNKNOWN = -1;
+    private static final long FAILING = -2;
+
+    private SerializeService serializer = new ProtobufCodecSerializer();
+    private RpcServer server;
+    private RpcClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RpcServer(new InetSocketAddress("localhost", 0), new TestServerApi(), new TestClientApi(), serializer, 4);
+        server.start();
+        client = new RpcClient(new InetSocketAddress("localhost", server.getPort()), serializer);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void testServerApi() throws Exception {
+        ServerApi api = new RpcServerProxy(client);
+        Assert.assertEquals(createStatements(7), api.newStatements(7));
+        Assert.assertEquals(createStatements(0), api.getConfirmedStatements(0));
+        Assert.assertNull(api.getConfirmedStatements(UNKNOWN));
+        Assert.assertArrayEquals(new byte[] {1, 7}, api.getHash(7));
+        Assert.assertArrayEquals(new byte[] {2, 7}, api.getSignature(7));
+        Assert.assertNull(api.getHash(UNKNOWN));
+    }
+
+    @Test
+    public void testClientApi() throws Exception {
+        ClientApi api = new RpcClientProxy(client);
+        Assert.assertArrayEquals(new byte[] {3, 5}, api.getSessionChallenge(5));
+        Assert.assertArrayEquals(new byte[] {9, 8, 5}, api.startKexSession(5, new byte[] {9, 8}));
+        Assert.assertArrayEquals(new byte[0], api.startKexSession(5, null));
+        SignedStatements statement = createStatements(3).get(0);
+        Assert.assertEquals(statement.getStatements().getIssuerKexId() + 2, api.submitStatement(statement, new byte[] {1, 2}));
+        Assert.assertEquals(createStatements(4), api.getStatements(4));
+        Assert.assertNull(api.getStatements(UNKNOWN));
+    }
+
+    @Test
+    public void testRemoteException() throws Exception {
+        ServerApi api = new RpcServerProxy(client);
+        try {
+            api.getHash(FAILING);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+            Assert.assertTrue(e.getMessage().contains("round failed"));
+        }
+        // connection still usable
+        Assert.assertArrayEquals(new byte[] {1, 7}, api.getHash(7));
+        // error (not exception) of implementation is answered too
+        for (int i = 0; i < RpcServer.MAX_IN_FLIGHT + 1; i++) {
+            try {
+                api.getSignature(FAILING);
+                Assert.fail();
+            }
+            catch (Exception e) {
+                Assert.assertTrue(e.getMessage().contains("signature failed"));
+            }
+        }
+        Assert.assertArrayEquals(new byte[] {2, 7}, api.getSignature(7));
+    }
+
+    @Test
+    public void testMissingApi() throws Exception {
+        RpcServer serverOnly = new RpcServer(new InetSocketAddress("localhost", 0), new TestServerApi(), null, serializer, 1);
+        serverOnly.start();
+        try (RpcClient other = new RpcClient(new InetSocketAddress("localhost", serverOnly.getPort()), serializer)) {
+            Assert.assertArrayEquals(new byte[] {1, 7}, new RpcServerProxy(other).getHash(7));
+            try {
+                new RpcClientProxy(other).getSessionChallenge(5);
+                Assert.fail();
+            }
+            catch (Exception e) {
+                LOG.info("expected: " + e);
+            }
+        }
+        finally {
+            serverOnly.stop();
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        ServerApi api = new RpcServerProxy(client);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                long roundNr = i % 20;
+                results.add(executor.submit(() -> createStatements(roundNr).equals(api.newStatements(roundNr))));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLargeFrame() throws Exception {
+        // frame larger than read buffer of server
+        ClientApi api = new RpcClientProxy(client);
+        byte[] signature = new RandomTool().getBytes(100000);
+        byte[] result = api.startKexSession(1, signature);
+        Assert.assertEquals(signature.length + 1, result.length);
+        Assert.assertArrayEquals(signature, Arrays.copyOf(result, signature.length));
+        // request above limit, connection is closed
+        try {
+            api.startKexSession(1, new byte[RpcServer.MAX_REQUEST_SIZE]);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+    }
+
+    @Test
+    public void testProxyFactory() throws Exception {
+        try (ServerProxyFactory factory = new ServerProxyFactory(serializer)) {
+            Assert.assertTrue(factory.create("http://localhost:8080/api/server") instanceof ServerProxy);
+            int port = server.getPort();
+            ServerApi api = factory.create("rpc://localhost:" + port);
+            Assert.assertArrayEquals(new byte[] {1, 7}, api.getHash(7));
+            // restarted peer, connection is created again
+            server.stop();
+            try {
+                api.getHash(7);
+                Assert.fail();
+            }
+            catch (Exception e) {
+                LOG.info("expected: " + e);
+            }
+            server = new RpcServer(new InetSocketAddress("localhost", port), new TestServerApi(), null, serializer, 1);
+            server.start();
+            Assert.assertArrayEquals(new byte[] {1, 7}, api.getHash(7));
+            try {
+                factory.create("rpc://localhost");
+                Assert.fail();
+            }
+            catch (Exception e) {
+                LOG.info("expected: " + e);
+            }
+        }
+    }
+
+    @Test
+    public void testStopped() throws Exception {
+        ServerApi api = new RpcServerProxy(client);
+        Assert.assertArrayEquals(new byte[] {1, 7}, api.getHash(7));
+        server.stop();
+        try {
+            api.getHash(7);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+        Assert.assertTrue(client.isClosed());
+    }
+
+    @Test
+    public void testQueueLimit() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ServerApi blocking = new TestServerApi() {
+            @Override
+            public byte[] getSignature(long roundNr) throws Exception {
+                release.await();
+                return super.getSignature(roundNr);
+            }
+        };
+        // single worker, waiting requests limited to 8
+        RpcServer limited = new RpcServer(new InetSocketAddress("localhost", 0), blocking, null, serializer, 1);
+        limited.start();
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        try (RpcClient other = new RpcClient(new InetSocketAddress("localhost", limited.getPort()), serializer)) {
+            ServerApi api = new RpcServerProxy(other);
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                long roundNr = i;
+                results.add(executor.submit(() -> api.getSignature(roundNr)));
+            }
+            long end = System.currentTimeMillis() + 5000;
+            while (limited.getQueuedRequests() < 8 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            // other requests are not read
+            Assert.assertEquals(8, limited.getQueuedRequests());
+            release.countDown();
+            for (int i = 0; i < 20; i++) {
+                Assert.assertArrayEquals(new byte[] {2, (byte) i}, results.get(i).get());
+            }
+            Assert.assertEquals(0, limited.getQueuedRequests());
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+            limited.stop();
+        }
+    }
+
+    @Test
+    public void testServerClosed() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName("localhost"))) {
+            RpcClient other = new RpcClient(new InetSocketAddress("localhost", socket.getLocalPort()), serializer);
+            socket.accept().close();
+            long end = System.currentTimeMillis() + 5000;
+            while (!other.isClosed() && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(other.isClosed());
+            try {
+                new RpcServerProxy(other).getHash(7);
+                Assert.fail();
+            }
+            catch (Exception e) {
+                LOG.info("expected: " + e);
+            }
+        }
+    }
+
+    private static List<SignedStatements> createStatements(long roundNr) {
+        List<SignedStatements> list = new ArrayList<>();
+        for (int i = 0; i <= roundNr % 4; i++) {
+            StatementClaimKexId claim = new StatementClaimKexId(SignatureAlgorithm.ECDSA_SECP256K1, new byte[] {(byte) i, 1, 2});
+            Statements statements = new Statements(4711 + i, 1500000000L + roundNr, null, roundNr, claim, null, null);
+            list.add(new SignedStatements(statements, new byte[] {(byte) roundNr, (byte) i}));
+        }
+        return list;
+    }
+
+    private static class TestServerApi implements ServerApi {
+
+        @Override
+        public List<SignedStatements> newStatements(long roundNr) throws Exception {
+            return createStatements(roundNr);
+        }
+
+        @Override
+        public byte[] getHash(long roundNr) throws Exception {
+            if (roundNr == FAILING) {
+                throw new Exception("round failed: " + roundNr);
+            }
+            return roundNr == UNKNOWN ? null : new byte[] {1, (byte) roundNr};
+        }
+
+        @Override
+        public byte[] getSignature(long roundNr) throws Exception {
+            if (roundNr == FAILING) {
+                throw new AssertionError("signature failed: " + roundNr);
+            }
+            return new byte[] {2, (byte) roundNr};
+        }
+
+        @Override
+        public List<SignedStatements> getConfirmedStatements(long roundNr) throws Exception {
+            return roundNr == UNKNOWN ? null : createStatements(roundNr);
+        }
+    }
+
+    private static class TestClientApi implements ClientApi {
+
+        @Override
+        public byte[] getSessionChallenge(long kexId) throws Exception {
+            return new byte[] {3, (byte) kexId};
+        }
+
+        @Override
+        public byte[] startKexSession(long kexId, byte[] signature) throws Exception {
+            if (signature == null) {
+                return new byte[0];
+            }
+            byte[] token = Arrays.copyOf(signature, signature.length + 1);
+            token[signature.length] = (byte) kexId;
+            return token;
+        }
+
+        @Override
+        public long submitStatement(SignedStatements statement, byte[] authToken) throws Exception {
+            return statement.getStatements().getIssuerKexId() + authToken.length;
+        }
+
+        @Override
+        public List<SignedStatements> getStatements(long kexId) throws Exception {
+            return kexId == UNKNOWN ? null : createStatements(kexId);
+        }
+    }
+}
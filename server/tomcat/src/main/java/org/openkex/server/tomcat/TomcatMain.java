@@ -6,6 +6,7 @@
  */
 package org.openkex.server.tomcat;
 
+import org.openkex.server.rpc.RpcServer;
 import org.openkex.server.tls.TlsConstants;
 import org.openkex.tools.DirectoryTool;
 
@@ -24,15 +25,19 @@ public class TomcatMain {
         String keyPath = target + "../../tls-cert/target/" + TlsConstants.CERTIFICATES_PATH;
         String baseDir = target + "tmp";
         String docBase = target + "docs";
+        String dataPath = target + "data";
 
         boolean useTLS = args.length > 0;
         boolean useClientCert = args.length > 1;
         int port = 8080;
+        // rpc has no tls, only with http
+        int rpcPort = RpcServer.DEFAULT_PORT;
         if (useTLS) {
             port = TlsConstants.TLS_SERVER_PORT;
+            rpcPort = 0;
         }
 
-        TomcatRunner runner = new TomcatRunner(id, port, useTLS, useClientCert, keyPath, docBase, baseDir);
+        TomcatRunner runner = new TomcatRunner(id, port, useTLS, useClientCert, keyPath, docBase, baseDir, dataPath, rpcPort);
         runner.run();
         runner.await();
     }
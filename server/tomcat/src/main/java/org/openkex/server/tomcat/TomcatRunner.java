@@ -6,6 +6,7 @@
  */
 package org.openkex.server.tomcat;
 
+import com.caucho.hessian.io.SerializerFactory;
 import com.caucho.hessian.server.HessianServlet;
 import org.apache.catalina.Context;
 import org.apache.catalina.Wrapper;
@@ -13,12 +14,18 @@ import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.tomcat.util.descriptor.web.FilterDef;
 import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.openkex.client.api.ClientApi;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.server.api.ServerApi;
+import org.openkex.server.backend.BlockStoreHashImpl;
+import org.openkex.server.backend.ServerCore;
+import org.openkex.server.rpc.RpcServer;
 import org.openkex.server.tls.TlsConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.servlet.Servlet;
 import java.io.File;
+import java.net.InetSocketAddress;
 
 /**
  * start server as embedded tomcat
@@ -35,8 +42,24 @@ public class TomcatRunner {
     private String keyPath;
     private String docBase;
     private String baseDir;
-
-    public TomcatRunner(String id, int port, boolean useTLS, boolean useClientCert, String keyPath, String docBase, String baseDir) {
+    private String dataPath;
+    private int rpcPort;
+    private BlockStoreHashImpl statementStore;
+    private RpcServer rpcServer;
+
+    /**
+     * @param id id of server
+     * @param port http(s) port
+     * @param useTLS use https
+     * @param useClientCert require client certificate
+     * @param keyPath directory of tls key and trust store
+     * @param docBase directory of static content
+     * @param baseDir tomcat working directory
+     * @param dataPath directory of persistent data (statement index)
+     * @param rpcPort port of additional rpc transport ({@link RpcServer}), 0 for hessian only
+     */
+    public TomcatRunner(String id, int port, boolean useTLS, boolean useClientCert, String keyPath, String docBase, String baseDir,
+                        String dataPath, int rpcPort) {
         this.id = id;
         this.port = port;
         this.useTLS = useTLS;
@@ -44,6 +67,8 @@ public class TomcatRunner {
         this.keyPath = keyPath;
         this.docBase = docBase;
         this.baseDir = baseDir;
+        this.dataPath = dataPath;
+        this.rpcPort = rpcPort;
     }
 
     public void run() throws Exception {
@@ -93,19 +118,28 @@ public class TomcatRunner {
         }
         Context ctx = tomcat.addContext("/api", docBaseFile.getAbsolutePath());
 
+        // one server instance for both apis, statements are kept over restarts
+        statementStore = new BlockStoreHashImpl(dataPath + "/statements");
+        ServerCore core = new ServerCore(statementStore);
+        // dto classes are not serializable
+        SerializerFactory serializerFactory = new SerializerFactory();
+        serializerFactory.setAllowNonSerializable(true);
+
         String clientName = "client";
-        Servlet clientServlet = new HessianServlet();
+        HessianServlet clientServlet = new HessianServlet();
+        clientServlet.setHomeAPI(ClientApi.class);
+        clientServlet.setHome(core);
+        clientServlet.setSerializerFactory(serializerFactory);
         Wrapper clientWrapper = Tomcat.addServlet(ctx, clientName, clientServlet);
-        clientWrapper.addInitParameter("home-api", "org.openkex.client.api.ClientApi");
-        clientWrapper.addInitParameter("home-class", "org.openkex.server.backend.ServerCore");
         clientWrapper.setLoadOnStartup(1);
         ctx.addServletMappingDecoded("/client", clientName);
 
         String serverName = "server";
-        Servlet serverServlet = new HessianServlet();
+        HessianServlet serverServlet = new HessianServlet();
+        serverServlet.setHomeAPI(ServerApi.class);
+        serverServlet.setHome(core);
+        serverServlet.setSerializerFactory(serializerFactory);
         Wrapper serverWrapper = Tomcat.addServlet(ctx, serverName, serverServlet);
-        serverWrapper.addInitParameter("home-api", "org.openkex.server.api.ServerApi");
-        serverWrapper.addInitParameter("home-class", "org.openkex.server.backend.ServerCore");
         serverWrapper.setLoadOnStartup(1);
         ctx.addServletMappingDecoded("/server", serverName);
 
@@ -124,6 +158,12 @@ public class TomcatRunner {
 
         tomcat.start();
         LOG.info("started tomcat. id=" + id + " port=" + port + " ssl=" + useTLS + " cert=" + useClientCert);
+
+        if (rpcPort > 0) {
+            // same server instance, hessian stays available
+            rpcServer = new RpcServer(new InetSocketAddress(rpcPort), core, core, new ProtobufCodecSerializer(), RpcServer.DEFAULT_THREADS);
+            rpcServer.start();
+        }
     }
 
     public void await() throws Exception {
@@ -132,6 +172,10 @@ public class TomcatRunner {
 
     public void stop() throws Exception {
         tomcat.stop();
+        if (rpcServer != null) {
+            rpcServer.stop();
+        }
+        statementStore.close();
     }
 
 }
@@ -10,6 +10,9 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.openkex.client.api.ClientApi;
 import org.openkex.client.proxy.ClientProxy;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.server.rpc.RpcClient;
+import org.openkex.server.rpc.RpcClientProxy;
 import org.openkex.server.tls.TlsClientHelper;
 import org.openkex.server.tls.TlsConstants;
 import org.openkex.server.tomcat.TomcatRunner;
@@ -17,6 +20,7 @@ import org.openkex.tools.DirectoryTool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 
 public class TomcatRunnerTest {
@@ -54,6 +58,23 @@ public class TomcatRunnerTest {
         t1.stop();
     }
 
+    @Test
+    public void testRpc() throws Exception {
+        int port = 8083;
+        int rpcPort = 8093;
+        TomcatRunner t1 = runTomcat("T1R", port, false, false, rpcPort);
+        t1.run();
+        try (RpcClient client = new RpcClient(new InetSocketAddress("localhost", rpcPort), new ProtobufCodecSerializer())) {
+            ClientApi api = new RpcClientProxy(client);
+            api.getStatements(0x4000);
+            api.getStatements(0x4001);
+        }
+        // hessian is still served
+        ClientApi api = new ClientProxy(getUrl(port, false), false, false, false, false);
+        api.getStatements(0x4000);
+        t1.stop();
+    }
+
     @Test
     public void testHttps() throws Exception {
         int port = 8443;
@@ -110,11 +131,16 @@ public class TomcatRunnerTest {
     }
 
     private TomcatRunner runTomcat(String id, int port, boolean ssl, boolean cert) throws Exception {
+        return runTomcat(id, port, ssl, cert, 0);
+    }
+
+    private TomcatRunner runTomcat(String id, int port, boolean ssl, boolean cert, int rpcPort) throws Exception {
         String target = DirectoryTool.getTargetDirectory(TomcatRunner.class);
         // directories per tomcat id
         String baseDir = target + id + "/tmp";
         String docBase = target + id + "/docs";
+        String dataPath = target + id + "/data";
         String certPath = DirectoryTool.getTargetDirectory(TlsClientHelper.class) + TlsConstants.CERTIFICATES_PATH;
-        return new TomcatRunner(id, port, ssl, cert, certPath, docBase, baseDir);
+        return new TomcatRunner(id, port, ssl, cert, certPath, docBase, baseDir, dataPath, rpcPort);
     }
 }
@@ -60,7 +60,8 @@ public class TomcatRunnerTestLoad {
         // directories per tomcat id
         String baseDir = target + id + "/tmp";
         String docBase = target + id + "/docs";
+        String dataPath = target + id + "/data";
         String certPath = DirectoryTool.getTargetDirectory(TlsClientHelper.class) + TlsConstants.CERTIFICATES_PATH;
-        return new TomcatRunner(id, port, ssl, cert, certPath, docBase, baseDir);
+        return new TomcatRunner(id, port, ssl, cert, certPath, docBase, baseDir, dataPath, 0);
     }
 }
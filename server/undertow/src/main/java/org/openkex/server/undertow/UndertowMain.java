@@ -6,7 +6,9 @@
  */
 package org.openkex.server.undertow;
 
+import org.openkex.server.rpc.RpcServer;
 import org.openkex.server.tls.TlsConstants;
+import org.openkex.tools.DirectoryTool;
 
 public class UndertowMain {
 
@@ -19,11 +21,16 @@ public class UndertowMain {
         boolean useTLS = args.length > 0;
         boolean useClientCert = args.length > 1;
         int port = 8080;
+        // rpc has no tls, only with http
+        int rpcPort = RpcServer.DEFAULT_PORT;
         if (useTLS) {
             port = TlsConstants.TLS_SERVER_PORT;
+            rpcPort = 0;
         }
 
-        UndertowRunner runner = new UndertowRunner(id, port, useTLS, useClientCert);
+        String dataPath = DirectoryTool.getTargetDirectory(UndertowMain.class) + "data";
+
+        UndertowRunner runner = new UndertowRunner(id, port, useTLS, useClientCert, dataPath, rpcPort);
         runner.run();
         runner.await();
     }
@@ -6,6 +6,7 @@
  */
 package org.openkex.server.undertow;
 
+import com.caucho.hessian.io.SerializerFactory;
 import com.caucho.hessian.server.HessianServlet;
 import io.undertow.Handlers;
 import io.undertow.Undertow;
@@ -16,7 +17,15 @@ import io.undertow.servlet.Servlets;
 import io.undertow.servlet.api.DeploymentInfo;
 import io.undertow.servlet.api.DeploymentManager;
 import io.undertow.servlet.api.FilterInfo;
+import io.undertow.servlet.util.ImmediateInstanceFactory;
+import org.openkex.client.api.ClientApi;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.server.api.ServerApi;
+import org.openkex.server.backend.BlockStoreHashImpl;
+import org.openkex.server.backend.ServerCore;
+import org.openkex.server.rpc.RpcServer;
 import org.openkex.server.tls.TlsConstants;
+import org.openkex.tools.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.Options;
@@ -28,6 +37,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
 import javax.servlet.DispatcherType;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.security.KeyStore;
 
 /**
@@ -42,12 +52,45 @@ public class UndertowRunner {
     private int port;
     private boolean useTLS;
     private boolean useClientCert;
-
-    public UndertowRunner(String id, int port, boolean useTLS, boolean useClientCert) {
+    private String dataPath;
+    private int rpcPort;
+    private ServerApi serverApi;
+    private ClientApi clientApi;
+    private BlockStoreHashImpl statementStore;
+    private RpcServer rpcServer;
+
+    /**
+     * @param id id of server
+     * @param port http(s) port
+     * @param useTLS use https
+     * @param useClientCert require client certificate
+     * @param dataPath directory of persistent data (statement index)
+     * @param rpcPort port of additional rpc transport ({@link RpcServer}), 0 for hessian only
+     */
+    public UndertowRunner(String id, int port, boolean useTLS, boolean useClientCert, String dataPath, int rpcPort) {
         this.id = id;
         this.port = port;
         this.useTLS = useTLS;
         this.useClientCert = useClientCert;
+        this.dataPath = dataPath;
+        this.rpcPort = rpcPort;
+    }
+
+    /**
+     * create runner serving given implementations over http (no persistent data), e.g. for benchmarks
+     *
+     * @param id id of server
+     * @param port http port
+     * @param serverApi server api implementation
+     * @param clientApi client api implementation
+     * @param rpcPort port of additional rpc transport ({@link RpcServer}), 0 for hessian only
+     */
+    public UndertowRunner(String id, int port, ServerApi serverApi, ClientApi clientApi, int rpcPort) {
+        this(id, port, false, false, null, rpcPort);
+        Validate.notNull(serverApi);
+        Validate.notNull(clientApi);
+        this.serverApi = serverApi;
+        this.clientApi = clientApi;
     }
 
     public void run() throws Exception {
@@ -93,6 +136,13 @@ public class UndertowRunner {
             builder = builder.addHttpListener(port, "localhost");
         }
 
+        if (serverApi == null) {
+            // one server instance for both apis, statements are kept over restarts
+            statementStore = new BlockStoreHashImpl(dataPath + "/statements");
+            ServerCore core = new ServerCore(statementStore);
+            serverApi = core;
+            clientApi = core;
+        }
         undertow = builder.setBufferSize(1024 * 16)
                 //this seems slightly faster in some configurations
                 .setIoThreads(Runtime.getRuntime().availableProcessors())
@@ -101,36 +151,50 @@ public class UndertowRunner {
                 .setServerOption(UndertowOptions.ALWAYS_SET_KEEP_ALIVE, false)
                 .setServerOption(UndertowOptions.ALWAYS_SET_DATE, true)
                 .setWorkerThreads(200)
-                .setHandler(createServletHandler(false))
+                .setHandler(createServletHandler(serverApi, clientApi, false))
                 .build();
 
         undertow.start();
         LOG.info("started undertow. id=" + id + " port=" + port + " ssl=" + useTLS + " cert=" + useClientCert);
+
+        if (rpcPort > 0) {
+            // same server instance, hessian stays available
+            rpcServer = new RpcServer(new InetSocketAddress("localhost", rpcPort), serverApi, clientApi, new ProtobufCodecSerializer(),
+                    RpcServer.DEFAULT_THREADS);
+            rpcServer.start();
+        }
     }
 
-    private static HttpHandler createServletHandler(boolean dump) throws Exception {
+    private static HttpHandler createServletHandler(ServerApi serverApi, ClientApi clientApi, boolean dump) throws Exception {
         // http://undertow.io/undertow-docs/undertow-docs-1.4.0/#undertow-servlet
         // http://undertow.io/javadoc/1.4.x/io/undertow/servlet/api/DeploymentInfo.html
         String client = "client";
         String server = "server";
         String filter = "log";
         String path = "/api";
+        // dto classes are not serializable
+        SerializerFactory serializerFactory = new SerializerFactory();
+        serializerFactory.setAllowNonSerializable(true);
+        HessianServlet clientServlet = new HessianServlet();
+        clientServlet.setHomeAPI(ClientApi.class);
+        clientServlet.setHome(clientApi);
+        clientServlet.setSerializerFactory(serializerFactory);
+        HessianServlet serverServlet = new HessianServlet();
+        serverServlet.setHomeAPI(ServerApi.class);
+        serverServlet.setHome(serverApi);
+        serverServlet.setSerializerFactory(serializerFactory);
         DeploymentInfo servletBuilder = Servlets.deployment()
                 .setClassLoader(UndertowMain.class.getClassLoader())
                 .setContextPath(path)
                 .setDeploymentName("servlet.war")
                 .addServlet(
-                        Servlets.servlet(client, HessianServlet.class)
+                        Servlets.servlet(client, HessianServlet.class, new ImmediateInstanceFactory<>(clientServlet))
                                 .addMapping("/client")
-                                .addInitParam("home-api", "org.openkex.client.api.ClientApi")
-                                .addInitParam("home-class", "org.openkex.server.backend.ServerCore")
                                 .setLoadOnStartup(1)
                 )
                 .addServlet(
-                        Servlets.servlet(server, HessianServlet.class)
+                        Servlets.servlet(server, HessianServlet.class, new ImmediateInstanceFactory<>(serverServlet))
                                 .addMapping("/server")
-                                .addInitParam("home-api", "org.openkex.server.api.ServerApi")
-                                .addInitParam("home-class", "org.openkex.server.backend.ServerCore")
                                 .setLoadOnStartup(1)
                 )
                 .addFilter(new FilterInfo(filter, LogFilter.class))
@@ -153,6 +217,12 @@ public class UndertowRunner {
 
     public void stop() throws Exception {
         undertow.stop();
+        if (rpcServer != null) {
+            rpcServer.stop();
+        }
+        if (statementStore != null) {
+            statementStore.close();
+        }
     }
 
 }
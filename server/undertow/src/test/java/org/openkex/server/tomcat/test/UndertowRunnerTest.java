@@ -10,10 +10,15 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.openkex.client.api.ClientApi;
 import org.openkex.client.proxy.ClientProxy;
+import org.openkex.serializer.ProtobufCodecSerializer;
+import org.openkex.server.rpc.RpcClient;
+import org.openkex.server.rpc.RpcClientProxy;
 import org.openkex.server.undertow.UndertowRunner;
+import org.openkex.tools.DirectoryTool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 
 public class UndertowRunnerTest {
@@ -51,6 +56,23 @@ public class UndertowRunnerTest {
         t1.stop();
     }
 
+    @Test
+    public void testRpc() throws Exception {
+        int port = 8083;
+        int rpcPort = 8093;
+        UndertowRunner t1 = runUndertow("UT1R", port, false, false, rpcPort);
+        t1.run();
+        try (RpcClient client = new RpcClient(new InetSocketAddress("localhost", rpcPort), new ProtobufCodecSerializer())) {
+            ClientApi api = new RpcClientProxy(client);
+            api.getStatements(0x4000);
+            api.getStatements(0x4001);
+        }
+        // hessian is still served
+        ClientApi api = new ClientProxy(getUrl(port, false), false, false, false, false);
+        api.getStatements(0x4000);
+        t1.stop();
+    }
+
     @Test
     public void testHttps() throws Exception {
         int port = 8443;
@@ -107,6 +129,12 @@ public class UndertowRunnerTest {
     }
 
     private UndertowRunner runUndertow(String id, int port, boolean ssl, boolean cert) throws Exception {
-        return new UndertowRunner(id, port, ssl, cert);
+        return runUndertow(id, port, ssl, cert, 0);
+    }
+
+    private UndertowRunner runUndertow(String id, int port, boolean ssl, boolean cert, int rpcPort) throws Exception {
+        // directory per undertow id
+        String dataPath = DirectoryTool.getTargetDirectory(this.getClass()) + id + "/data";
+        return new UndertowRunner(id, port, ssl, cert, dataPath, rpcPort);
     }
 }
@@ -10,6 +10,7 @@ import org.junit.Test;
 import org.openkex.client.api.ClientApi;
 import org.openkex.client.proxy.ClientProxy;
 import org.openkex.server.undertow.UndertowRunner;
+import org.openkex.tools.DirectoryTool;
 import org.openkex.tools.Timer;
 
 import java.util.ArrayList;
@@ -50,6 +51,8 @@ public class UndertowRunnerTestLoad {
     }
 
     private UndertowRunner runUndertow(String id, int port, boolean ssl, boolean cert) throws Exception {
-        return new UndertowRunner(id, port, ssl, cert);
+        // directory per undertow id
+        String dataPath = DirectoryTool.getTargetDirectory(this.getClass()) + id + "/data";
+        return new UndertowRunner(id, port, ssl, cert, dataPath, 0);
     }
 }
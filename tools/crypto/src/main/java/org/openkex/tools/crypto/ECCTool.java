@@ -6,11 +6,7 @@
  */
 package org.openkex.tools.crypto;
 
-import org.bouncycastle.asn1.ASN1EncodableVector;
-import org.bouncycastle.asn1.ASN1InputStream;
-import org.bouncycastle.asn1.ASN1Integer;
-import org.bouncycastle.asn1.DERSequence;
-import org.bouncycastle.asn1.DLSequence;
+import org.bouncycastle.asn1.x9.X9ECParameters;
 import org.bouncycastle.jcajce.provider.asymmetric.util.EC5Util;
 import org.bouncycastle.jcajce.provider.asymmetric.util.ECUtil;
 import org.bouncycastle.jce.ECNamedCurveTable;
@@ -22,8 +18,6 @@ import org.bouncycastle.math.ec.ECCurve;
 import org.openkex.tools.Validate;
 
 import javax.crypto.KeyAgreement;
-import java.io.ByteArrayInputStream;
-import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -35,6 +29,8 @@ import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECPoint;
 import java.security.spec.ECPublicKeySpec;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * implements ECC variants and encodings
@@ -59,6 +55,17 @@ public class ECCTool {
     public static final String CURVE_BRAINPOOLP256R1 = "brainpoolp256r1";
     public static final String CURVE_BRAINPOOLP256T1 = "brainpoolp256t1";
 
+    /** size of "raw" signature (two unsigned 32 byte integers) */
+    public static final int RAW_SIGNATURE_SIZE = 64;
+
+    /** maximum size of ASN1/DER encoded "raw" signature */
+    public static final int MAX_DER_SIGNATURE_SIZE = 72;
+
+    private static final int RAW_INTEGER_SIZE = 32;
+
+    private static final byte DER_SEQUENCE = 0x30;
+    private static final byte DER_INTEGER = 0x02;
+
     /** bouncy castle */
     private static final String PROVIDER_BC = "BC";
     /** Oracle SUN */
@@ -76,6 +83,14 @@ public class ECCTool {
 
     private static final String ECDH = "ECDH";
 
+    private static final PublicKeyCache KEY_CACHE = new PublicKeyCache(PublicKeyCache.DEFAULT_SIZE);
+
+    // curve parameters per curve name, created on first use
+    private static final ConcurrentHashMap<String, Curve> CURVES = new ConcurrentHashMap<>();
+
+    // JCA engines are not thread safe and expensive to look up, each thread reuses its own instances
+    private static final ThreadLocal<Engines> ENGINES = ThreadLocal.withInitial(Engines::new);
+
     private ECCTool() {
     }
 
@@ -90,13 +105,32 @@ public class ECCTool {
     public static PublicKey getPublicKeyFromCurvePoint(byte[] encoded, String curveName) throws Exception {
         // http://www.bouncycastle.org/wiki/display/JA1/Elliptic+Curve+Key+Pair+Generation+and+Key+Factories
         // NOTE: this is an "ugly mix" of BC and Java classes. check for improvement.
-        ECNamedCurveParameterSpec spec = ECNamedCurveTable.getParameterSpec(curveName);
-        ECNamedCurveSpec params = new ECNamedCurveSpec(curveName, spec.getCurve(), spec.getG(), spec.getN());
+        ECNamedCurveSpec params = getCurve(curveName).spec;
         ECPoint point = ECPointUtil.decodePoint(params.getCurve(), encoded);
         ECPublicKeySpec pubKeySpec = new ECPublicKeySpec(point, params);
 
-        KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM, PROVIDER);
-        return keyFactory.generatePublic(pubKeySpec);
+        return ENGINES.get().getKeyFactory().generatePublic(pubKeySpec);
+    }
+
+    /**
+     * decode (BSI TR-03111/X9.62) binary encoded curve point to ECC public key using a shared cache.
+     * <p>
+     * use this for keys that are verified repeatedly.
+     *
+     * @param encoded encoded curve point key (compressed or uncompressed)
+     * @param curveName name of curve (e.g. "secp256k1")
+     * @return decoded Public Key
+     * @throws Exception in case of crypto problem
+     */
+    public static PublicKey getCachedPublicKeyFromCurvePoint(byte[] encoded, String curveName) throws Exception {
+        return KEY_CACHE.getPublicKey(encoded, curveName);
+    }
+
+    /**
+     * @return shared cache of decoded public keys (e.g. for statistics)
+     */
+    public static PublicKeyCache getPublicKeyCache() {
+        return KEY_CACHE;
     }
 
     /**
@@ -111,7 +145,7 @@ public class ECCTool {
     public static byte[] encodeCurvePoint(PublicKey key, String curveName, boolean compressed) throws Exception {
         Validate.isTrue(key instanceof ECPublicKey, "not an EC key.");
         ECPublicKey ecKey = (ECPublicKey) key;
-        ECCurve curve = ECUtil.getNamedCurveByName(curveName).getCurve();
+        ECCurve curve = getCurve(curveName).getBcCurve();
         org.bouncycastle.math.ec.ECPoint bcPoint = EC5Util.convertPoint(curve, ecKey.getW(), true);
         return bcPoint.getEncoded(compressed);
     }
@@ -125,10 +159,9 @@ public class ECCTool {
     }
 
     private static byte[] changePointCompression(byte[] input, String curveName, boolean compressed) throws Exception {
-        ECNamedCurveParameterSpec spec = ECNamedCurveTable.getParameterSpec(curveName);
-        ECNamedCurveSpec params = new ECNamedCurveSpec(curveName, spec.getCurve(), spec.getG(), spec.getN());
-        ECPoint point = ECPointUtil.decodePoint(params.getCurve(), input);
-        ECCurve curve = ECUtil.getNamedCurveByName(curveName).getCurve();
+        Curve curveParams = getCurve(curveName);
+        ECPoint point = ECPointUtil.decodePoint(curveParams.spec.getCurve(), input);
+        ECCurve curve = curveParams.getBcCurve();
         org.bouncycastle.math.ec.ECPoint bcPoint = EC5Util.convertPoint(curve, point, true);
         return bcPoint.getEncoded(compressed);
     }
@@ -142,12 +175,35 @@ public class ECCTool {
      */
     public static byte[] encodeRawSignature(byte[] signature) throws Exception {
         Validate.notNull(signature);
-        Validate.isTrue(signature.length == 64, "wrong signature size: " + signature.length);
-        ASN1EncodableVector vec = new ASN1EncodableVector();
-        vec.add(new ASN1Integer(new BigInteger(1, Arrays.copyOfRange(signature, 0, 32))));
-        vec.add(new ASN1Integer(new BigInteger(1, Arrays.copyOfRange(signature, 32, 64))));
-        DERSequence seq = new DERSequence(vec);
-        return seq.getEncoded();
+        Validate.isTrue(signature.length == RAW_SIGNATURE_SIZE, "wrong signature size: " + signature.length);
+        byte[] encoded = new byte[MAX_DER_SIGNATURE_SIZE];
+        int length = encodeRawSignature(signature, 0, encoded, 0);
+        return Arrays.copyOf(encoded, length);
+    }
+
+    /**
+     * convert "raw" 64 byte signature to ASN1/DER sequence of two integers without allocation.
+     *
+     * @param signature buffer with raw signature
+     * @param offset offset of raw signature in buffer
+     * @param encoded buffer for encoded signature (at most {@link #MAX_DER_SIGNATURE_SIZE} bytes are written)
+     * @param encodedOffset offset of encoded signature in buffer
+     * @return length of encoded signature
+     */
+    public static int encodeRawSignature(byte[] signature, int offset, byte[] encoded, int encodedOffset) {
+        Validate.isTrue(offset >= 0 && offset <= signature.length - RAW_SIGNATURE_SIZE, "wrong signature size: " + signature.length);
+        int lengthR = getIntegerLength(signature, offset);
+        int lengthS = getIntegerLength(signature, offset + RAW_INTEGER_SIZE);
+        // content is at most 70 bytes, always short form length
+        int contentLength = 2 + lengthR + 2 + lengthS;
+        Validate.isTrue(encodedOffset >= 0 && encodedOffset <= encoded.length - contentLength - 2,
+            "encoded buffer too small: " + encoded.length);
+        int pos = encodedOffset;
+        encoded[pos++] = DER_SEQUENCE;
+        encoded[pos++] = (byte) contentLength;
+        pos = writeInteger(signature, offset, lengthR, encoded, pos);
+        pos = writeInteger(signature, offset + RAW_INTEGER_SIZE, lengthS, encoded, pos);
+        return pos - encodedOffset;
     }
 
     /**
@@ -160,37 +216,75 @@ public class ECCTool {
      */
     public static byte[] decodeDerSignature(byte[] signature) throws Exception {
         Validate.notNull(signature);
-        ASN1InputStream ais = new ASN1InputStream(new ByteArrayInputStream(signature));
-        // this is NOT elegant ("knowing")
-        DLSequence seq = (DLSequence) ais.readObject();
-        ASN1Integer int1 = (ASN1Integer) seq.getObjectAt(0);
-        ASN1Integer int2 = (ASN1Integer) seq.getObjectAt(1);
-        byte[] decoded = new byte[64];
-        System.arraycopy(getBytes(int1), 0, decoded, 0, 32);
-        System.arraycopy(getBytes(int2), 0, decoded, 32, 32);
+        byte[] decoded = new byte[RAW_SIGNATURE_SIZE];
+        decodeDerSignature(signature, 0, signature.length, decoded, 0);
         return decoded;
     }
 
-    // get "raw" unsigned 32 byte integer, padded with leading zeros
-    private static byte[] getBytes(ASN1Integer integer) {
-        byte[] encoded = integer.getValue().toByteArray();
-        Validate.isTrue(integer.getValue().signum() == 1);
-        byte[] bytes = encoded;
-        // hacking
-        if (encoded.length == 33) {
-            // strip leading 00
-            Validate.isTrue(encoded[0] == 0);
-            bytes = new byte[32];
-            System.arraycopy(encoded, 1, bytes, 0, 32);
+    /**
+     * convert ASN1/DER sequence of two positive integers to "raw" 64 byte signature without allocation.
+     * <p>
+     * only strict DER is accepted (minimal integer encoding, no trailing data).
+     *
+     * @param encoded buffer with ASN1/DER signature
+     * @param offset offset of encoded signature in buffer
+     * @param length length of encoded signature
+     * @param signature buffer for raw signature (64 bytes are written)
+     * @param signatureOffset offset of raw signature in buffer
+     */
+    public static void decodeDerSignature(byte[] encoded, int offset, int length, byte[] signature, int signatureOffset) {
+        Validate.isTrue(offset >= 0 && length >= 0 && offset <= encoded.length - length, "invalid encoded range.");
+        Validate.isTrue(signatureOffset >= 0 && signatureOffset <= signature.length - RAW_SIGNATURE_SIZE, "signature buffer too small.");
+        Validate.isTrue(length >= 2 && encoded[offset] == DER_SEQUENCE, "not a DER sequence.");
+        Validate.isTrue(encoded[offset + 1] == length - 2, "invalid sequence length: " + encoded[offset + 1]);
+        int end = offset + length;
+        int pos = readInteger(encoded, offset + 2, end, signature, signatureOffset);
+        pos = readInteger(encoded, pos, end, signature, signatureOffset + RAW_INTEGER_SIZE);
+        Validate.isTrue(pos == end, "trailing data in signature.");
+    }
+
+    // length of DER integer content of unsigned 32 byte integer
+    private static int getIntegerLength(byte[] raw, int offset) {
+        int zeros = 0;
+        // keep at least one byte
+        while (zeros < RAW_INTEGER_SIZE - 1 && raw[offset + zeros] == 0) {
+            zeros++;
         }
-        else if (encoded.length == 32) {
-            return bytes;
+        int length = RAW_INTEGER_SIZE - zeros;
+        // sign byte required if high bit is set
+        return raw[offset + zeros] < 0 ? length + 1 : length;
+    }
+
+    private static int writeInteger(byte[] raw, int offset, int length, byte[] encoded, int pos) {
+        encoded[pos++] = DER_INTEGER;
+        encoded[pos++] = (byte) length;
+        int valueLength = Math.min(length, RAW_INTEGER_SIZE);
+        if (length > valueLength) {
+            encoded[pos++] = 0;
         }
-        else { // encoded.length < 32, fill with zero
-            bytes = new byte[32];
-            System.arraycopy(encoded, 0, bytes, 32 - encoded.length, encoded.length);
+        System.arraycopy(raw, offset + RAW_INTEGER_SIZE - valueLength, encoded, pos, valueLength);
+        return pos + valueLength;
+    }
+
+    // read positive DER integer to unsigned 32 byte integer, padded with leading zeros
+    private static int readInteger(byte[] encoded, int pos, int end, byte[] raw, int offset) {
+        Validate.isTrue(end - pos >= 2 && encoded[pos] == DER_INTEGER, "not a DER integer.");
+        int length = encoded[pos + 1];
+        pos += 2;
+        Validate.isTrue(length > 0 && length <= end - pos, "invalid integer length: " + length);
+        Validate.isTrue(encoded[pos] >= 0, "negative integer.");
+        int start = pos;
+        int valueLength = length;
+        if (encoded[pos] == 0) {
+            Validate.isTrue(length > 1, "zero integer.");
+            Validate.isTrue(encoded[pos + 1] < 0, "integer not minimal encoded.");
+            start++;
+            valueLength--;
         }
-        return bytes;
+        Validate.isTrue(valueLength <= RAW_INTEGER_SIZE, "integer too large: " + valueLength);
+        Arrays.fill(raw, offset, offset + RAW_INTEGER_SIZE - valueLength, (byte) 0);
+        System.arraycopy(encoded, start, raw, offset + RAW_INTEGER_SIZE - valueLength, valueLength);
+        return pos + length;
     }
 
     /**
@@ -203,10 +297,7 @@ public class ECCTool {
      * @throws Exception in case of crypto problem
      */
     public static KeyPair generate(String curveName) throws Exception {
-        KeyPairGenerator keyGen = KeyPairGenerator.getInstance(ALGORITHM, PROVIDER);
-//         keyGen.initialize(new ECGenParameterSpec(curveName));
-        keyGen.initialize(ECNamedCurveTable.getParameterSpec(curveName));  // this supports brainpool with BC
-        return keyGen.generateKeyPair();
+        return ENGINES.get().getKeyPairGenerator(curveName).generateKeyPair();
     }
 
     /**
@@ -220,7 +311,7 @@ public class ECCTool {
      * @throws Exception in case of crypto problem
      */
     public static byte[] sign(byte[] message, PrivateKey key) throws Exception {
-        Signature signature = Signature.getInstance(EC_SIGN_256, PROVIDER);
+        Signature signature = ENGINES.get().getSignature();
         signature.initSign(key);
         signature.update(message);
         return signature.sign();
@@ -236,12 +327,49 @@ public class ECCTool {
      * @throws Exception in case of crypto problem
      */
     public static boolean verify(byte[] message, byte[] signature, PublicKey key) throws Exception {
-        Signature signature1 = Signature.getInstance(EC_SIGN_256, PROVIDER);
+        Signature signature1 = ENGINES.get().getSignature();
         signature1.initVerify(key);
         signature1.update(message);
         return signature1.verify(signature);
     }
 
+    /**
+     * verify "raw" 64 byte signature with algorithm SHA256withECDSA.
+     * <p>
+     * same as <code>verify(message, encodeRawSignature(signature), key)</code> without allocation of the encoded signature.
+     *
+     * @param message signed message
+     * @param signature raw signature bytes
+     * @param key public key
+     * @return true if signature is valid
+     * @throws Exception in case of crypto problem
+     */
+    public static boolean verifyRawSignature(byte[] message, byte[] signature, PublicKey key) throws Exception {
+        return verifyRawSignature(message, 0, message.length, signature, key);
+    }
+
+    /**
+     * verify "raw" 64 byte signature of a message range with algorithm SHA256withECDSA.
+     *
+     * @param message buffer containing signed message
+     * @param offset start of message in buffer
+     * @param length length of message
+     * @param signature raw signature bytes
+     * @param key public key
+     * @return true if signature is valid
+     * @throws Exception in case of crypto problem
+     */
+    public static boolean verifyRawSignature(byte[] message, int offset, int length, byte[] signature, PublicKey key) throws Exception {
+        Validate.notNull(signature);
+        Validate.isTrue(signature.length == RAW_SIGNATURE_SIZE, "wrong signature size: " + signature.length);
+        Engines engines = ENGINES.get();
+        int encodedLength = encodeRawSignature(signature, 0, engines.encoded, 0);
+        Signature verifier = engines.getSignature();
+        verifier.initVerify(key);
+        verifier.update(message, offset, length);
+        return verifier.verify(engines.encoded, 0, encodedLength);
+    }
+
     /**
      * get shared secret base on own private and others public key
      *
@@ -251,10 +379,84 @@ public class ECCTool {
      * @throws Exception in case of crypto problem
      */
     public static byte[] getECDHSecret(PrivateKey localKey, PublicKey remoteKey) throws Exception {
-        KeyAgreement aKeyAgree = KeyAgreement.getInstance(ECDH, PROVIDER);
+        KeyAgreement aKeyAgree = ENGINES.get().getKeyAgreement();
         aKeyAgree.init(localKey);
         aKeyAgree.doPhase(remoteKey, true);
         return aKeyAgree.generateSecret();
     }
 
+    private static Curve getCurve(String curveName) {
+        Curve curve = CURVES.get(curveName);
+        if (curve == null) {
+            // concurrent creation is harmless
+            curve = new Curve(curveName);
+            CURVES.putIfAbsent(curveName, curve);
+        }
+        return curve;
+    }
+
+    // immutable parameters of a named curve
+    private static final class Curve {
+
+        private final ECNamedCurveParameterSpec parameterSpec;
+        private final ECNamedCurveSpec spec;
+        // null if not supported by ECUtil
+        private final ECCurve bcCurve;
+
+        private Curve(String curveName) {
+            parameterSpec = ECNamedCurveTable.getParameterSpec(curveName);
+            Validate.notNull(parameterSpec, "unknown curve: " + curveName);
+            spec = new ECNamedCurveSpec(curveName, parameterSpec.getCurve(), parameterSpec.getG(), parameterSpec.getN());
+            X9ECParameters x9Parameters = ECUtil.getNamedCurveByName(curveName);
+            bcCurve = x9Parameters == null ? null : x9Parameters.getCurve();
+        }
+
+        private ECCurve getBcCurve() {
+            Validate.notNull(bcCurve, "curve not supported: " + spec.getName());
+            return bcCurve;
+        }
+    }
+
+    // engines of a single thread, created on first use. an engine is (re)initialized by each operation.
+    private static final class Engines {
+
+        private Signature signature;
+        // buffer for encoded signature
+        private byte[] encoded = new byte[MAX_DER_SIGNATURE_SIZE];
+        private KeyFactory keyFactory;
+        private KeyAgreement keyAgreement;
+        private HashMap<String, KeyPairGenerator> generators = new HashMap<>();
+
+        private Signature getSignature() throws Exception {
+            if (signature == null) {
+                signature = Signature.getInstance(EC_SIGN_256, PROVIDER);
+            }
+            return signature;
+        }
+
+        private KeyFactory getKeyFactory() throws Exception {
+            if (keyFactory == null) {
+                keyFactory = KeyFactory.getInstance(ALGORITHM, PROVIDER);
+            }
+            return keyFactory;
+        }
+
+        private KeyAgreement getKeyAgreement() throws Exception {
+            if (keyAgreement == null) {
+                keyAgreement = KeyAgreement.getInstance(ECDH, PROVIDER);
+            }
+            return keyAgreement;
+        }
+
+        private KeyPairGenerator getKeyPairGenerator(String curveName) throws Exception {
+            KeyPairGenerator generator = generators.get(curveName);
+            if (generator == null) {
+                generator = KeyPairGenerator.getInstance(ALGORITHM, PROVIDER);
+//                generator.initialize(new ECGenParameterSpec(curveName));
+                generator.initialize(getCurve(curveName).parameterSpec);  // this supports brainpool with BC
+                generators.put(curveName, generator);
+            }
+            return generator;
+        }
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.tools.crypto;
+
+import org.openkex.tools.Validate;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * bounded cache of decoded public keys, keyed by curve name and encoded curve point.
+ * <p>
+ * decoding a compressed curve point requires a modular square root, the cache removes this cost for keys that are verified
+ * repeatedly (e.g. server keys in each round). least recently used keys are evicted.
+ * <p>
+ * the cache is thread safe, decoding is done outside of the lock (a key might be decoded twice concurrently).
+ */
+public class PublicKeyCache {
+
+    /** default maximum number of keys */
+    public static final int DEFAULT_SIZE = 10000;
+
+    private LinkedHashMap<CacheKey, PublicKey> keys;
+    private int maxSize;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * create cache
+     *
+     * @param maxSize maximum number of keys
+     */
+    public PublicKeyCache(int maxSize) {
+        Validate.isTrue(maxSize > 0, "invalid cache size: " + maxSize);
+        this.maxSize = maxSize;
+        // access order for LRU eviction
+        this.keys = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * get decoded key, see {@link ECCTool#getPublicKeyFromCurvePoint(byte[], String)}
+     *
+     * @param encoded encoded curve point key (compressed or uncompressed)
+     * @param curveName name of curve (e.g. "secp256k1")
+     * @return decoded Public Key
+     * @throws Exception in case of crypto problem
+     */
+    public PublicKey getPublicKey(byte[] encoded, String curveName) throws Exception {
+        Validate.notNull(encoded);
+        Validate.notNull(curveName);
+        CacheKey cacheKey = new CacheKey(curveName, encoded);
+        synchronized (this) {
+            PublicKey key = keys.get(cacheKey);
+            if (key != null) {
+                hits++;
+                return key;
+            }
+            misses++;
+        }
+        PublicKey key = ECCTool.getPublicKeyFromCurvePoint(encoded, curveName);
+        // copy encoded key, caller might modify it
+        CacheKey copy = new CacheKey(curveName, encoded.clone());
+        synchronized (this) {
+            keys.put(copy, key);
+            Iterator<Map.Entry<CacheKey, PublicKey>> iterator = keys.entrySet().iterator();
+            while (keys.size() > maxSize) {
+                iterator.next();
+                iterator.remove();
+                evictions++;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * remove all keys, statistics are kept
+     */
+    public synchronized void clear() {
+        keys.clear();
+    }
+
+    /**
+     * @return number of cached keys
+     */
+    public synchronized int getSize() {
+        return keys.size();
+    }
+
+    /**
+     * @return number of lookups served by the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that decoded the key
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of evicted keys
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return ratio of hits to lookups, 0 if no lookup happened
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PublicKeyCache{size=" + keys.size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+
+    private static final class CacheKey {
+
+        private final String curveName;
+        private final byte[] encoded;
+        private final int hash;
+
+        private CacheKey(String curveName, byte[] encoded) {
+            this.curveName = curveName;
+            this.encoded = encoded;
+            this.hash = curveName.hashCode() * 31 + Arrays.hashCode(encoded);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hash == other.hash && curveName.equals(other.curveName) && Arrays.equals(encoded, other.encoded);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -6,6 +6,9 @@
  */
 package org.openkex.tools.crypto.test;
 
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERSequence;
 import org.junit.Assert;
 import org.junit.Test;
 import org.openkex.tools.Hex;
@@ -16,11 +19,17 @@ import org.openkex.tools.crypto.ECCTool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ECCToolTest {
 
@@ -305,6 +314,55 @@ public class ECCToolTest {
         Assert.assertArrayEquals(secretLocal, secretRemote);
     }
 
+    @Test
+    public void testConcurrent() throws Exception {
+        // engines are reused per thread, check parallel sign and verify
+        int threads = 4;
+        int repeats = 200;
+        KeyPair pair = ECCTool.generate(ECCTool.CURVE_SECP256K1);
+        byte[] point = ECCTool.encodeCurvePoint(pair.getPublic(), ECCTool.CURVE_SECP256K1, true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Timer timer = new Timer("sign and verify " + threads * repeats + " messages in " + threads + " threads", false);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    int valid = 0;
+                    for (int i = 0; i < repeats; i++) {
+                        byte[] message = ("message " + thread + "/" + i).getBytes("ASCII");
+                        byte[] signature = ECCTool.sign(message, pair.getPrivate());
+                        PublicKey key = ECCTool.getPublicKeyFromCurvePoint(point, ECCTool.CURVE_SECP256K1);
+                        if (ECCTool.verify(message, signature, key)) {
+                            valid++;
+                        }
+                        // wrong message must fail
+                        Assert.assertFalse(ECCTool.verify("other".getBytes("ASCII"), signature, key));
+                    }
+                    return valid;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(repeats, (int) future.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        timer.stop(true);
+    }
+
+    @Test
+    public void testUnknownCurve() throws Exception {
+        try {
+            ECCTool.generate("secp256x1");
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected exception: " + e);
+        }
+    }
+
     @Test
     public void testEncodeDecodeSignature() throws Exception {
         // 64 byte
@@ -337,6 +395,85 @@ public class ECCToolTest {
         }
     }
 
+    @Test
+    public void testEncodeDecodeSignatureBc() throws Exception {
+        // compare with bouncy castle ASN1 encoding, including short integers and sign bytes
+        RandomTool rand = new RandomTool(4711);
+        byte[] encoded = new byte[ECCTool.MAX_DER_SIGNATURE_SIZE + 3];
+        byte[] decoded = new byte[ECCTool.RAW_SIGNATURE_SIZE + 5];
+        for (int i = 0; i < 1000; i++) {
+            byte[] raw = rand.getBytes(ECCTool.RAW_SIGNATURE_SIZE);
+            // force leading zeros and high bits
+            raw[0] = (byte) (i % 4 == 0 ? 0 : raw[0]);
+            raw[1] = (byte) (i % 8 == 0 ? 0 : raw[1]);
+            raw[32] = (byte) (i % 3 == 0 ? 0x80 : raw[32]);
+            if (i % 100 == 0) {
+                Arrays.fill(raw, 32, 63, (byte) 0);
+            }
+            ASN1EncodableVector vec = new ASN1EncodableVector();
+            vec.add(new ASN1Integer(new BigInteger(1, Arrays.copyOfRange(raw, 0, 32))));
+            vec.add(new ASN1Integer(new BigInteger(1, Arrays.copyOfRange(raw, 32, 64))));
+            byte[] expected = new DERSequence(vec).getEncoded();
+
+            Assert.assertArrayEquals(expected, ECCTool.encodeRawSignature(raw));
+            int length = ECCTool.encodeRawSignature(raw, 0, encoded, 3);
+            Assert.assertArrayEquals(expected, Arrays.copyOfRange(encoded, 3, 3 + length));
+
+            Assert.assertArrayEquals(raw, ECCTool.decodeDerSignature(expected));
+            ECCTool.decodeDerSignature(encoded, 3, length, decoded, 5);
+            Assert.assertArrayEquals(raw, Arrays.copyOfRange(decoded, 5, 5 + ECCTool.RAW_SIGNATURE_SIZE));
+        }
+    }
+
+    @Test
+    public void testDecodeSignatureFail() throws Exception {
+        byte[] valid = Hex.fromString("3044022072ed281aa7f3c8e0483ae10522ad0db8862513df57538adaa925845141cb9f" +
+                                      "e702205db4f78fa7eca848bfd8eaa6345cc045e94ce8b69bf9940b20a32761f430a108");
+        ECCTool.decodeDerSignature(valid);
+        checkDecodeFail(Arrays.copyOf(valid, valid.length + 1)); // trailing data
+        checkDecodeFail(Arrays.copyOf(valid, valid.length - 1)); // truncated
+        checkDecodeFail(Hex.fromString("3006020100020101")); // zero
+        checkDecodeFail(Hex.fromString("3006020180020101")); // negative
+        checkDecodeFail(Hex.fromString("300702020001020101")); // not minimal
+        checkDecodeFail(Hex.fromString("3106020101020101")); // no sequence
+        // 33 byte integer
+        byte[] large = new byte[71];
+        large[0] = 0x30;
+        large[1] = 69;
+        large[2] = 0x02;
+        large[3] = 33;
+        large[4] = 1;
+        large[38] = 0x02;
+        large[39] = 32;
+        large[40] = 1;
+        checkDecodeFail(large);
+    }
+
+    private void checkDecodeFail(byte[] encoded) {
+        try {
+            ECCTool.decodeDerSignature(encoded);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected exception: " + e);
+        }
+    }
+
+    @Test
+    public void testVerifyRawSignature() throws Exception {
+        KeyPair pair = ECCTool.generate(ECCTool.CURVE_SECP256K1);
+        byte[] message = "Hello World".getBytes("ASCII");
+        byte[] raw = ECCTool.decodeDerSignature(ECCTool.sign(message, pair.getPrivate()));
+        Assert.assertTrue(ECCTool.verifyRawSignature(message, raw, pair.getPublic()));
+        // message range within larger buffer
+        byte[] buffer = new byte[message.length + 5];
+        System.arraycopy(message, 0, buffer, 3, message.length);
+        Assert.assertTrue(ECCTool.verifyRawSignature(buffer, 3, message.length, raw, pair.getPublic()));
+        Assert.assertFalse(ECCTool.verifyRawSignature(buffer, 2, message.length, raw, pair.getPublic()));
+        raw[9] ^= 8;
+        Assert.assertFalse(ECCTool.verifyRawSignature(message, raw, pair.getPublic()));
+    }
+
     @Test
     public void testPointCompression() throws Exception {
         String pointString = "046e8c7e072a16c26da7e9fc61fb07e1ede3ce42a8741399f395dc55c8ae47dc" +
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.tools.crypto.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.tools.crypto.ECCTool;
+import org.openkex.tools.crypto.PublicKeyCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+
+public class PublicKeyCacheTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PublicKeyCacheTest.class);
+
+    @Test
+    public void testSimple() throws Exception {
+        PublicKeyCache cache = new PublicKeyCache(2);
+        byte[][] encoded = new byte[3][];
+        for (int i = 0; i < encoded.length; i++) {
+            KeyPair pair = ECCTool.generate(ECCTool.CURVE_SECP256K1);
+            encoded[i] = ECCTool.encodeCurvePoint(pair.getPublic(), ECCTool.CURVE_SECP256K1, true);
+        }
+        PublicKey key0 = cache.getPublicKey(encoded[0], ECCTool.CURVE_SECP256K1);
+        Assert.assertEquals(ECCTool.getPublicKeyFromCurvePoint(encoded[0], ECCTool.CURVE_SECP256K1), key0);
+        // cached instance, independent of array instance
+        Assert.assertSame(key0, cache.getPublicKey(encoded[0].clone(), ECCTool.CURVE_SECP256K1));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(0.5, cache.getHitRate(), 0);
+
+        // modifying the array of the caller does not change the cache
+        byte[] modified = encoded[1].clone();
+        PublicKey key1 = cache.getPublicKey(modified, ECCTool.CURVE_SECP256K1);
+        modified[5] ^= 1;
+        Assert.assertSame(key1, cache.getPublicKey(encoded[1], ECCTool.CURVE_SECP256K1));
+
+        // other encoding of same point is other entry
+        byte[] uncompressed = ECCTool.decompressCurvePoint(encoded[0], ECCTool.CURVE_SECP256K1);
+        Assert.assertEquals(key0, cache.getPublicKey(uncompressed, ECCTool.CURVE_SECP256K1));
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertEquals(1, cache.getEvictions());
+
+        // key0 (compressed) is least recently used
+        cache.getPublicKey(encoded[2], ECCTool.CURVE_SECP256K1);
+        Assert.assertEquals(2, cache.getEvictions());
+        cache.getPublicKey(uncompressed, ECCTool.CURVE_SECP256K1);
+        Assert.assertEquals(3, cache.getHits());
+        LOG.info("cache: " + cache);
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testError() throws Exception {
+        PublicKeyCache cache = new PublicKeyCache(10);
+        try {
+            cache.getPublicKey(new byte[33], ECCTool.CURVE_SECP256K1);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected exception: " + e);
+        }
+        Assert.assertEquals(0, cache.getSize());
+        try {
+            new PublicKeyCache(0);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected exception: " + e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.tools.merkle;
+
+import org.openkex.tools.Validate;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * incremental merkle root calculation, leaves are appended one by one.
+ * <p>
+ * creates the same root hash as {@link MerkleTree} for the same leaves (in same order).
+ * only the roots of complete subtrees are kept (one per bit of the leave count, like a binary counter),
+ * so memory is logarithmic in the leave count and no leave list is required.
+ * <p>
+ * the root of MerkleTree is equal to folding these subtree roots from the smallest to the largest:
+ * pairing per level with promotion of an odd last node keeps the left subtrees complete.
+ * <p>
+ * not thread safe.
+ */
+public class MerkleAccumulator {
+
+    // one complete subtree per bit of a long count
+    private static final int MAX_LEVELS = 63;
+
+    private MessageDigest md;
+    private int hashSize;
+    // root of complete subtree with 2^level leaves, valid if bit level of count is set
+    private byte[][] subtrees;
+    private long count;
+
+    /**
+     * create empty accumulator
+     *
+     * @param algorithm hash algorithm
+     */
+    public MerkleAccumulator(String algorithm) {
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        hashSize = md.getDigestLength();
+        subtrees = new byte[MAX_LEVELS][hashSize];
+    }
+
+    /**
+     * append leave hash
+     *
+     * @param hash leave hash (not referenced after return)
+     */
+    public void append(byte[] hash) {
+        Validate.notNull(hash);
+        Validate.isTrue(hash.length == hashSize, "got wrong hash size:" + hash.length + " required is:" + hashSize);
+        Validate.isTrue(count < (1L << MAX_LEVELS) - 1, "too many hashes.");
+        // merge complete subtrees of same size (carry like binary increment)
+        int level = 0;
+        byte[] carry = subtrees[0];
+        if ((count & 1) == 0) {
+            System.arraycopy(hash, 0, carry, 0, hashSize);
+        }
+        else {
+            // left is the pending subtree of level 0
+            hashNode(carry, hash, carry);
+            level = 1;
+            while ((count & (1L << level)) != 0) {
+                // same as MerkleTree.getNodeHash(left, right)
+                hashNode(subtrees[level], carry, subtrees[level]);
+                carry = subtrees[level];
+                level++;
+            }
+            System.arraycopy(carry, 0, subtrees[level], 0, hashSize);
+        }
+        count++;
+    }
+
+    /**
+     * @return number of appended leaves
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * get root hash of leaves appended so far, more leaves can be appended afterwards.
+     *
+     * @return root hash
+     */
+    public byte[] getRootHash() {
+        Validate.isTrue(count > 0, "no hashes.");
+        byte[] root = null;
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            if ((count & (1L << level)) == 0) {
+                continue;
+            }
+            if (root == null) {
+                root = Arrays.copyOf(subtrees[level], hashSize);
+            }
+            else {
+                // larger subtree is on the left
+                hashNode(subtrees[level], root, root);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * remove all leaves
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    // hash of left and right, result may be written to left or right
+    private void hashNode(byte[] left, byte[] right, byte[] result) {
+        md.update(left);
+        md.update(right);
+        try {
+            md.digest(result, 0, hashSize);
+        }
+        catch (DigestException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
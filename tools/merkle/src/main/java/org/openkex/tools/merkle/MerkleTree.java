@@ -15,7 +15,7 @@ import java.util.Arrays;
 import java.util.List;
 
 /**
- * merkle hash tree implementation (not optimized)
+ * merkle hash tree implementation (not optimized, see {@link MerkleTreeCompact})
  * <p>
  * https://en.wikipedia.org/wiki/Merkle_tree
  */
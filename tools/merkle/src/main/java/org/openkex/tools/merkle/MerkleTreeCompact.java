@@ -0,0 +1,377 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.tools.merkle;
+
+import org.openkex.tools.Validate;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * merkle hash tree with all node hashes in a single array.
+ * <p>
+ * creates the same root hash and prove list as {@link MerkleTree}: nodes are paired per level,
+ * an odd last node is promoted to the next level unchanged.
+ * <p>
+ * the levels are stored one after the other (leaves first), a node is addressed by level offset and index.
+ * there are no node objects, memory is about two hashes per leave.
+ * <p>
+ * large levels can be calculated in parallel (each task with its own digest), the result is identical to sequential calculation.
+ */
+public class MerkleTreeCompact {
+
+    /** leave count to use the common fork join pool by default */
+    public static final int PARALLEL_THRESHOLD = 8192;
+
+    // node pairs per fork join task
+    private static final int TASK_SIZE = 1024;
+
+    private int hashSize;
+    // hashes of all levels
+    private byte[] data;
+    // index of first node of level in data (in hashes)
+    private int[] levelOffsets;
+    private int[] levelSizes;
+
+    private byte[] rootHash;
+
+    /**
+     * create a merkle tree based on list of hashes.
+     * <p>
+     * the common fork join pool is used for at least {@value #PARALLEL_THRESHOLD} hashes.
+     *
+     * @param hashes List of leave hash values
+     * @param algorithm hash algorithm
+     */
+    public MerkleTreeCompact(List<byte[]> hashes, String algorithm) {
+        this(hashes, algorithm, hashes != null && hashes.size() >= PARALLEL_THRESHOLD ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * create a merkle tree based on list of hashes
+     *
+     * @param hashes List of leave hash values
+     * @param algorithm hash algorithm
+     * @param pool pool for parallel calculation, null for sequential calculation
+     */
+    public MerkleTreeCompact(List<byte[]> hashes, String algorithm, ForkJoinPool pool) {
+        Validate.notNull(hashes);
+        Validate.isTrue(hashes.size() > 0);
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        hashSize = md.getDigestLength();
+
+        // level sizes, each level has half the node count (rounded up)
+        int levels = 1;
+        for (int size = hashes.size(); size > 1; size = (size + 1) / 2) {
+            levels++;
+        }
+        levelOffsets = new int[levels];
+        levelSizes = new int[levels];
+        long nodeCount = 0;
+        int size = hashes.size();
+        for (int level = 0; level < levels; level++) {
+            levelOffsets[level] = (int) nodeCount;
+            levelSizes[level] = size;
+            nodeCount += size;
+            size = (size + 1) / 2;
+        }
+        Validate.isTrue(nodeCount * hashSize <= Integer.MAX_VALUE, "too many hashes: " + hashes.size());
+        data = new byte[(int) nodeCount * hashSize];
+
+        // leave nodes
+        int pos = 0;
+        for (byte[] hash : hashes) {
+            // validate that hash size is correct.
+            Validate.isTrue(hash.length == hashSize, "got wrong hash size:" + hash.length + " required is:" + hashSize);
+            System.arraycopy(hash, 0, data, pos, hashSize);
+            pos += hashSize;
+        }
+
+        for (int level = 1; level < levels; level++) {
+            int pairs = levelSizes[level - 1] / 2;
+            if (pool != null && pairs > TASK_SIZE) {
+                pool.invoke(new LevelTask(level, 0, pairs, md));
+            }
+            else {
+                hashPairs(level, 0, pairs, md);
+            }
+            promote(level);
+        }
+        rootHash = getHash(levels - 1, 0);
+    }
+
+    // calculate node hashes of level from pairs of previous level
+    private void hashPairs(int level, int from, int to, MessageDigest md) {
+        int childOffset = levelOffsets[level - 1] * hashSize;
+        int offset = levelOffsets[level] * hashSize;
+        try {
+            for (int i = from; i < to; i++) {
+                // same as MerkleTree.getNodeHash
+                md.update(data, childOffset + 2 * i * hashSize, 2 * hashSize);
+                md.digest(data, offset + i * hashSize, hashSize);
+            }
+        }
+        catch (DigestException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // copy odd last node of previous level
+    private void promote(int level) {
+        int childOffset = levelOffsets[level - 1] * hashSize;
+        int childSize = levelSizes[level - 1];
+        int offset = levelOffsets[level] * hashSize;
+        int pairs = childSize / 2;
+        if (childSize % 2 == 1) {
+            // odd number: single node remains, promote it
+            System.arraycopy(data, childOffset + (childSize - 1) * hashSize, data, offset + pairs * hashSize, hashSize);
+        }
+    }
+
+    /**
+     * @return the final root hash value
+     */
+    public byte[] getRootHash() {
+        return rootHash;
+    }
+
+    /**
+     * @return number of leaves
+     */
+    public int getLeaveCount() {
+        return levelSizes[0];
+    }
+
+    /**
+     * get leave node hash (convenience function, same hash as provided to constructor)
+     *
+     * @param index index of node
+     * @return according hash value
+     */
+    public byte[] getLeaveHash(int index) {
+        Validate.isTrue(index >= 0 && index < levelSizes[0], "invalid index: " + index);
+        return getHash(0, index);
+    }
+
+    /**
+     * get list of hashes needed to prove that leave hash is correct, see {@link MerkleTree#validateProveList}.
+     * <p>
+     * the size of the list is limited by the count of levels.
+     *
+     * @param index position in hash list
+     * @return list af hashes for prove
+     */
+    public List<MerkleTree.Prove> getProveList(int index) {
+        Validate.isTrue(index >= 0 && index < levelSizes[0], "invalid index: " + index);
+        List<MerkleTree.Prove> proveList = new ArrayList<>(levelSizes.length - 1);
+        int position = index;
+        // walk "Up" merkle tree (till root node).
+        for (int level = 0; level < levelSizes.length - 1; level++) {
+            if (position % 2 == 1) {
+                proveList.add(new MerkleTree.Prove(false, getHash(level, position - 1)));
+            }
+            else if (position + 1 < levelSizes[level]) {
+                proveList.add(new MerkleTree.Prove(true, getHash(level, position + 1)));
+            }
+            // else: promoted node, no prove on this level
+            position /= 2;
+        }
+        return proveList;
+    }
+
+    /**
+     * get one prove for a set of leaves.
+     * <p>
+     * hashes shared by the paths of the leaves (or calculated from the leaves) are contained once only,
+     * see {@link #validateMultiProve}.
+     *
+     * @param indices positions in hash list (any order, duplicates are ignored)
+     * @return multi prove for the sorted distinct indices
+     */
+    public MultiProve getMultiProve(int[] indices) {
+        Validate.notNull(indices);
+        int[] known = Arrays.stream(indices).sorted().distinct().toArray();
+        Validate.isTrue(known.length > 0, "no index.");
+        Validate.isTrue(known[0] >= 0 && known[known.length - 1] < levelSizes[0], "invalid index.");
+        int[] sortedIndices = known.clone();
+        List<byte[]> hashes = new ArrayList<>();
+        for (int level = 0; level < levelSizes.length - 1; level++) {
+            int count = 0;
+            int i = 0;
+            while (i < known.length) {
+                int position = known[i];
+                if (position % 2 == 0 && i + 1 < known.length && known[i + 1] == position + 1) {
+                    // both children known
+                    i += 2;
+                }
+                else {
+                    int sibling = position ^ 1;
+                    if (sibling < levelSizes[level]) {
+                        hashes.add(getHash(level, sibling));
+                    }
+                    // else: promoted node
+                    i++;
+                }
+                known[count++] = position / 2;
+            }
+            known = Arrays.copyOf(known, count);
+        }
+        return new MultiProve(levelSizes[0], sortedIndices, hashes);
+    }
+
+    /**
+     * validates a multi prove
+     * <p>
+     * the check will prove that all leave hashes belong to the root hash, each inner hash is calculated once.
+     *
+     * @param prove multi prove
+     * @param leaveHashes leave hashes in order of {@link MultiProve#getIndices()}
+     * @param rootHash the root hash of tree
+     * @param digest the digest to use
+     * @return true if validation is OK
+     */
+    public static boolean validateMultiProve(MultiProve prove, List<byte[]> leaveHashes, byte[] rootHash, MessageDigest digest) {
+        int[] known = prove.getIndices().clone();
+        if (known.length == 0 || known.length != leaveHashes.size()) {
+            return false;
+        }
+        for (int i = 0; i < known.length; i++) {
+            boolean ascending = i == 0 || known[i] > known[i - 1];
+            if (!ascending || known[i] < 0 || known[i] >= prove.getLeaveCount()) {
+                return false;
+            }
+        }
+        byte[][] hashes = leaveHashes.toArray(new byte[known.length][]);
+        Iterator<byte[]> proveHashes = prove.getHashes().iterator();
+        for (int size = prove.getLeaveCount(); size > 1; size = (size + 1) / 2) {
+            int count = 0;
+            int i = 0;
+            while (i < known.length) {
+                int position = known[i];
+                byte[] hash;
+                if (position % 2 == 0 && i + 1 < known.length && known[i + 1] == position + 1) {
+                    hash = MerkleTree.getNodeHash(hashes[i], hashes[i + 1], digest);
+                    i += 2;
+                }
+                else {
+                    int sibling = position ^ 1;
+                    if (sibling >= size) {
+                        // promoted node
+                        hash = hashes[i];
+                    }
+                    else if (!proveHashes.hasNext()) {
+                        return false;
+                    }
+                    else if (position % 2 == 0) {
+                        hash = MerkleTree.getNodeHash(hashes[i], proveHashes.next(), digest);
+                    }
+                    else {
+                        hash = MerkleTree.getNodeHash(proveHashes.next(), hashes[i], digest);
+                    }
+                    i++;
+                }
+                hashes[count] = hash;
+                known[count++] = position / 2;
+            }
+            known = Arrays.copyOf(known, count);
+        }
+        // all prove hashes must be used
+        return !proveHashes.hasNext() && Arrays.equals(hashes[0], rootHash);
+    }
+
+    private byte[] getHash(int level, int index) {
+        int from = (levelOffsets[level] + index) * hashSize;
+        return Arrays.copyOfRange(data, from, from + hashSize);
+    }
+
+    /**
+     * prove for multiple leaves of a tree, see {@link #getMultiProve(int[])}
+     */
+    public static class MultiProve {
+        private int leaveCount;
+        private int[] indices;
+        private List<byte[]> hashes;
+
+        /**
+         * @param leaveCount number of leaves in tree
+         * @param indices sorted distinct positions of proved leaves
+         * @param hashes hashes required for prove, level by level in order of position
+         */
+        public MultiProve(int leaveCount, int[] indices, List<byte[]> hashes) {
+            this.leaveCount = leaveCount;
+            this.indices = indices;
+            this.hashes = hashes;
+        }
+
+        public int getLeaveCount() {
+            return leaveCount;
+        }
+
+        public int[] getIndices() {
+            return indices;
+        }
+
+        public List<byte[]> getHashes() {
+            return hashes;
+        }
+    }
+
+    // hash range of pairs of a level, tasks write distinct parts of data
+    private class LevelTask extends RecursiveAction {
+
+        private int level;
+        private int from;
+        private int to;
+        private MessageDigest prototype;
+
+        LevelTask(int level, int from, int to, MessageDigest prototype) {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+            this.prototype = prototype;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LevelTask(level, from, middle, prototype), new LevelTask(level, middle, to, prototype));
+                return;
+            }
+            hashPairs(level, from, to, copyDigest(prototype));
+        }
+    }
+
+    // digest with same algorithm and provider (digest is not thread safe)
+    private static MessageDigest copyDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        }
+        catch (CloneNotSupportedException e) {
+            try {
+                return MessageDigest.getInstance(digest.getAlgorithm(), digest.getProvider());
+            }
+            catch (NoSuchAlgorithmException e2) {
+                throw new RuntimeException(e2);
+            }
+        }
+    }
+}
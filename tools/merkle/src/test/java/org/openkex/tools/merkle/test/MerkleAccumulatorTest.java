@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.tools.merkle.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.tools.RandomTool;
+import org.openkex.tools.merkle.MerkleAccumulator;
+import org.openkex.tools.merkle.MerkleTree;
+import org.openkex.tools.merkle.MerkleTreeCompact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MerkleAccumulatorTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MerkleAccumulatorTest.class);
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_SIZE = 32;
+
+    @Test
+    public void testSameAsMerkleTree() {
+        RandomTool randomTool = new RandomTool(4711);
+        MerkleAccumulator accumulator = new MerkleAccumulator(HASH_ALGORITHM);
+        List<byte[]> hashes = new ArrayList<>();
+        // intermediate roots, appending continues after getRootHash
+        for (int size = 1; size <= 300; size++) {
+            byte[] hash = randomTool.getBytes(HASH_SIZE);
+            hashes.add(hash.clone());
+            accumulator.append(hash);
+            // accumulator must not reference the hash
+            hash[0] ^= 1;
+            Assert.assertEquals(size, accumulator.getCount());
+            Assert.assertArrayEquals("size=" + size, new MerkleTree(hashes, HASH_ALGORITHM).getRootHash(), accumulator.getRootHash());
+        }
+        for (int i = 0; i < 5000; i++) {
+            byte[] hash = randomTool.getBytes(HASH_SIZE);
+            hashes.add(hash);
+            accumulator.append(hash);
+        }
+        Assert.assertArrayEquals(new MerkleTreeCompact(hashes, HASH_ALGORITHM).getRootHash(), accumulator.getRootHash());
+
+        accumulator.reset();
+        Assert.assertEquals(0, accumulator.getCount());
+        accumulator.append(hashes.get(0));
+        Assert.assertArrayEquals(hashes.get(0), accumulator.getRootHash());
+    }
+
+    @Test
+    public void testBadInput() {
+        MerkleAccumulator accumulator = new MerkleAccumulator(HASH_ALGORITHM);
+        try {
+            accumulator.getRootHash();
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+        try {
+            accumulator.append(new byte[33]);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+        try {
+            new MerkleAccumulator("sha-nix");
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 openKex. All rights reserved.
+ *
+ * This file is subject to the terms and conditions defined in
+ * file 'LICENSE.txt', which is part of this source code package.
+ */
+package org.openkex.tools.merkle.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openkex.tools.RandomTool;
+import org.openkex.tools.Timer;
+import org.openkex.tools.merkle.MerkleTree;
+import org.openkex.tools.merkle.MerkleTreeCompact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class MerkleTreeCompactTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MerkleTreeCompactTest.class);
+
+    private static final long SEED = 47111213;
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_SIZE = 32;
+
+    @Test
+    public void testSameAsMerkleTree() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        // include all small sizes (odd nodes on different levels)
+        for (int size = 1; size <= 70; size++) {
+            compare(getHashes(size), digest);
+        }
+        compare(getHashes(4000), digest);
+        compare(getHashes(4097), digest);
+    }
+
+    private void compare(List<byte[]> hashes, MessageDigest digest) {
+        MerkleTree tree = new MerkleTree(hashes, HASH_ALGORITHM);
+        MerkleTreeCompact compact = new MerkleTreeCompact(hashes, HASH_ALGORITHM);
+        Assert.assertArrayEquals(tree.getRootHash(), compact.getRootHash());
+        Assert.assertEquals(hashes.size(), compact.getLeaveCount());
+        for (int i = 0; i < hashes.size(); i++) {
+            Assert.assertArrayEquals(hashes.get(i), compact.getLeaveHash(i));
+            List<MerkleTree.Prove> expected = tree.getProveList(i);
+            List<MerkleTree.Prove> prove = compact.getProveList(i);
+            Assert.assertEquals(expected.size(), prove.size());
+            for (int j = 0; j < prove.size(); j++) {
+                Assert.assertEquals(expected.get(j).isLeft(), prove.get(j).isLeft());
+                Assert.assertArrayEquals(expected.get(j).getHash(), prove.get(j).getHash());
+            }
+            Assert.assertTrue(MerkleTree.validateProveList(prove, hashes.get(i), compact.getRootHash(), digest));
+        }
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // sizes with odd nodes on upper levels
+            for (int size : new int[] {2049, 4096, 4097, 65535, 100001}) {
+                List<byte[]> hashes = getHashes(size);
+                MerkleTreeCompact sequential = new MerkleTreeCompact(hashes, HASH_ALGORITHM, null);
+                MerkleTreeCompact parallel = new MerkleTreeCompact(hashes, HASH_ALGORITHM, pool);
+                Assert.assertArrayEquals(sequential.getRootHash(), parallel.getRootHash());
+                Assert.assertArrayEquals(sequential.getRootHash(), new MerkleTreeCompact(hashes, HASH_ALGORITHM).getRootHash());
+                for (int i = 0; i < size; i += 997) {
+                    Assert.assertArrayEquals(sequential.getProveList(i).get(0).getHash(), parallel.getProveList(i).get(0).getHash());
+                }
+            }
+            List<byte[]> hashes = getHashes(4097);
+            Assert.assertArrayEquals(new MerkleTree(hashes, HASH_ALGORITHM).getRootHash(),
+                new MerkleTreeCompact(hashes, HASH_ALGORITHM, pool).getRootHash());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMultiProve() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        Random random = new Random(4711);
+        for (int size : new int[] {1, 2, 3, 7, 64, 1000, 4097}) {
+            List<byte[]> hashes = getHashes(size);
+            MerkleTreeCompact tree = new MerkleTreeCompact(hashes, HASH_ALGORITHM);
+            for (int count : new int[] {1, 2, 10, 100}) {
+                int[] indices = new int[count];
+                for (int i = 0; i < count; i++) {
+                    indices[i] = random.nextInt(size);
+                }
+                MerkleTreeCompact.MultiProve prove = tree.getMultiProve(indices);
+                int[] sorted = prove.getIndices();
+                List<byte[]> leaves = new ArrayList<>();
+                int singleSize = 0;
+                for (int i = 0; i < sorted.length; i++) {
+                    Assert.assertTrue(i == 0 || sorted[i] > sorted[i - 1]);
+                    leaves.add(hashes.get(sorted[i]));
+                    singleSize += tree.getProveList(sorted[i]).size();
+                }
+                Assert.assertTrue(prove.getHashes().size() <= singleSize);
+                Assert.assertTrue(MerkleTreeCompact.validateMultiProve(prove, leaves, tree.getRootHash(), digest));
+
+                // wrong leave
+                List<byte[]> wrong = new ArrayList<>(leaves);
+                byte[] changed = wrong.get(wrong.size() - 1).clone();
+                changed[3] ^= 1;
+                wrong.set(wrong.size() - 1, changed);
+                Assert.assertFalse(MerkleTreeCompact.validateMultiProve(prove, wrong, tree.getRootHash(), digest));
+                if (prove.getHashes().size() > 0) {
+                    // missing or additional hash
+                    List<byte[]> proveHashes = new ArrayList<>(prove.getHashes());
+                    proveHashes.remove(0);
+                    MerkleTreeCompact.MultiProve shorter = new MerkleTreeCompact.MultiProve(size, sorted, proveHashes);
+                    Assert.assertFalse(MerkleTreeCompact.validateMultiProve(shorter, leaves, tree.getRootHash(), digest));
+                    proveHashes = new ArrayList<>(prove.getHashes());
+                    proveHashes.add(proveHashes.get(0));
+                    MerkleTreeCompact.MultiProve longer = new MerkleTreeCompact.MultiProve(size, sorted, proveHashes);
+                    Assert.assertFalse(MerkleTreeCompact.validateMultiProve(longer, leaves, tree.getRootHash(), digest));
+                }
+            }
+        }
+        // all leaves, no hash required
+        List<byte[]> hashes = getHashes(13);
+        MerkleTreeCompact tree = new MerkleTreeCompact(hashes, HASH_ALGORITHM);
+        int[] all = new int[13];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = 12 - i;
+        }
+        MerkleTreeCompact.MultiProve prove = tree.getMultiProve(all);
+        Assert.assertEquals(0, prove.getHashes().size());
+        Assert.assertTrue(MerkleTreeCompact.validateMultiProve(prove, hashes, tree.getRootHash(), digest));
+        try {
+            tree.getMultiProve(new int[] {13});
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+    }
+
+    @Test
+    public void testSpeed() {
+        int size = 100000;
+        List<byte[]> hashes = getHashes(size);
+        for (int i = 0; i < 3; i++) {
+            Timer timer = new Timer("merkle tree with size " + size, false);
+            new MerkleTree(hashes, HASH_ALGORITHM);
+            timer.stop(true);
+            timer = new Timer("compact merkle tree with size " + size, false);
+            new MerkleTreeCompact(hashes, HASH_ALGORITHM, null);
+            timer.stop(true);
+            timer = new Timer("parallel compact merkle tree with size " + size, false);
+            new MerkleTreeCompact(hashes, HASH_ALGORITHM, ForkJoinPool.commonPool());
+            timer.stop(true);
+        }
+    }
+
+    @Test
+    public void testBadInput() {
+        try {
+            new MerkleTreeCompact(new ArrayList<>(), HASH_ALGORITHM);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+        List<byte[]> hashes = getHashes(3);
+        hashes.add(new byte[33]);  // too large
+        try {
+            new MerkleTreeCompact(hashes, HASH_ALGORITHM);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+        MerkleTreeCompact tree = new MerkleTreeCompact(getHashes(3), HASH_ALGORITHM);
+        try {
+            tree.getProveList(3);
+            Assert.fail();
+        }
+        catch (Exception e) {
+            LOG.info("expected: " + e);
+        }
+    }
+
+    private List<byte[]> getHashes(int size) {
+        RandomTool randomTool = new RandomTool(SEED);
+        List<byte[]> hashes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            hashes.add(randomTool.getBytes(HASH_SIZE));
+        }
+        return hashes;
+    }
+}